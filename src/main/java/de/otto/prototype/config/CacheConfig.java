@@ -0,0 +1,43 @@
+package de.otto.prototype.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.otto.prototype.model.CountedGroup;
+import de.otto.prototype.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Bounded caches in front of the single entity lookups. Entries expire after a fixed time, which also limits
+ * how long writes that bypass the services, e.g. from other instances, stay invisible.
+ */
+@Configuration
+public class CacheConfig {
+
+	@Bean
+	public Cache<String, User> userCache(final MeterRegistry meterRegistry,
+										 final @Value("${user.cache.max-size}") long maxSize,
+										 final @Value("${user.cache.expire-after-write-seconds}") long expireAfterWriteSeconds) {
+		return GuavaCacheMetrics.monitor(meterRegistry, buildCache(maxSize, expireAfterWriteSeconds), "user");
+	}
+
+	@Bean
+	public Cache<String, CountedGroup> groupCache(final MeterRegistry meterRegistry,
+										   final @Value("${group.cache.max-size}") long maxSize,
+										   final @Value("${group.cache.expire-after-write-seconds}") long expireAfterWriteSeconds) {
+		return GuavaCacheMetrics.monitor(meterRegistry, buildCache(maxSize, expireAfterWriteSeconds), "group");
+	}
+
+	private static <V> Cache<String, V> buildCache(final long maxSize, final long expireAfterWriteSeconds) {
+		return CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(expireAfterWriteSeconds, SECONDS)
+				.recordStats()
+				.build();
+	}
+}
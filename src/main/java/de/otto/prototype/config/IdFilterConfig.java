@@ -0,0 +1,57 @@
+package de.otto.prototype.config;
+
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.repository.GroupRepository;
+import de.otto.prototype.repository.UserRepository;
+import de.otto.prototype.service.IdFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Filters of the existing user and group ids, rebuilt every id-filter.rebuild-interval-ms. Since deleted ids stay in
+ * a filter until its rebuild and ids created by other instances only arrive through the change stream eviction,
+ * they are opt-in.
+ */
+@Configuration
+@EnableScheduling
+public class IdFilterConfig {
+
+	public static final String USER_ID_FILTER = "userIdFilter";
+
+	public static final String GROUP_ID_FILTER = "groupIdFilter";
+
+	@Bean(USER_ID_FILTER)
+	public IdFilter userIdFilter(final UserRepository userRepository, final MeterRegistry meterRegistry,
+								 final @Value("${id-filter.enabled}") boolean enabled,
+								 final @Value("${id-filter.false-positive-probability}") double falsePositiveProbability) {
+		return monitor(meterRegistry, new IdFilter(() -> userRepository.streamAllIds().map(IdOnly::getId),
+				userRepository::count, enabled, falsePositiveProbability), "user");
+	}
+
+	@Bean(GROUP_ID_FILTER)
+	public IdFilter groupIdFilter(final GroupRepository groupRepository, final MeterRegistry meterRegistry,
+								  final @Value("${id-filter.enabled}") boolean enabled,
+								  final @Value("${id-filter.false-positive-probability}") double falsePositiveProbability) {
+		return monitor(meterRegistry, new IdFilter(() -> groupRepository.streamAllIds().map(IdOnly::getId),
+				groupRepository::count, enabled, falsePositiveProbability), "group");
+	}
+
+	private static IdFilter monitor(final MeterRegistry meterRegistry, final IdFilter idFilter, final String name) {
+		Gauge.builder("id.filter.false.positive.probability", idFilter, IdFilter::expectedFalsePositiveProbability)
+				.tag("filter", name)
+				.register(meterRegistry);
+		Gauge.builder("id.filter.size", idFilter, IdFilter::sizeInBytes)
+				.tag("filter", name)
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		FunctionCounter.builder("id.filter.rejections", idFilter, IdFilter::rejections)
+				.tag("filter", name)
+				.register(meterRegistry);
+		return idFilter;
+	}
+}
@@ -1,35 +1,287 @@
 package de.otto.prototype.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.HashCode;
+import de.otto.prototype.controller.representation.BulkItemRepresentation;
+import de.otto.prototype.controller.representation.BulkRepresentation;
+import de.otto.prototype.controller.representation.ValidationEntryRepresentation;
+import de.otto.prototype.controller.representation.ValidationRepresentation;
+import de.otto.prototype.exceptions.ConcurrentModificationException;
+import de.otto.prototype.exceptions.InvalidGroupException;
+import de.otto.prototype.exceptions.InvalidUserException;
+import de.otto.prototype.exceptions.NotFoundException;
+import de.otto.prototype.model.BulkItem;
 import de.otto.prototype.model.Hashable;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.Neighbours;
+import de.otto.prototype.model.Versioned;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.hateoas.Identifiable;
 import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.hash.Hashing.sha256;
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpStatus.*;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
 
 public abstract class BaseController {
 
-	List<Link> determineLinks(final Identifiable data, List<? extends Identifiable> listOfAllData, Class relativePath) {
+	static final int DEFAULT_PAGE_SIZE = 20;
+
+	static final String HAL_OBJECT_MAPPER = "_halObjectMapper";
+
+	static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
+	static final String NDJSON_VALUE = "application/x-ndjson";
+
+	static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+	private final MessageSource messageSource;
+
+	BaseController(final MessageSource messageSource) {
+		this.messageSource = messageSource;
+	}
+
+	List<Link> determineLinks(final Identifiable data, final Neighbours neighbours, Class relativePath) {
 		final List<Link> links = new ArrayList<>();
 		links.add(linkTo(relativePath).slash(data).withSelfRel());
-		links.add(linkTo(relativePath).slash(listOfAllData.get(0)).withRel("start"));
-		int indexOfUser = listOfAllData.indexOf(data);
-		if (indexOfUser > 0)
-			links.add(linkTo(relativePath).slash(listOfAllData.get(indexOfUser - 1)).withRel("prev"));
-		if (indexOfUser < (listOfAllData.size() - 1))
-			links.add(linkTo(relativePath).slash(listOfAllData.get(indexOfUser + 1)).withRel("next"));
+		links.add(linkTo(relativePath).slash(neighbours.getFirstId()).withRel("start"));
+		neighbours.getPrevId().ifPresent(prevId -> links.add(linkTo(relativePath).slash(prevId).withRel("prev")));
+		neighbours.getNextId().ifPresent(nextId -> links.add(linkTo(relativePath).slash(nextId).withRel("next")));
 
 		return links;
 	}
 
+	List<Link> determinePageLinks(final KeysetPage<?> page, final int limit, Class relativePath) {
+		return determinePageLinks(page, limit, linkTo(relativePath));
+	}
+
+	/**
+	 * @param relativePath link builder for the paged resource, e.g. a sub resource of a single entity
+	 */
+	List<Link> determinePageLinks(final KeysetPage<?> page, final int limit, final ControllerLinkBuilder relativePath) {
+		final List<Link> links = new ArrayList<>();
+		links.add(new Link(fromCurrentRequest().toUriString()));
+		links.add(pageLink(relativePath, null, null, limit, "start"));
+		if (page.isEmpty())
+			return links;
+		if (page.hasPrev())
+			links.add(pageLink(relativePath, "before", page.getFirstId(), limit, "prev"));
+		if (page.hasNext())
+			links.add(pageLink(relativePath, "after", page.getLastId(), limit, "next"));
+
+		return links;
+	}
+
+	private Link pageLink(final ControllerLinkBuilder relativePath, final String cursorName, final String cursor, final int limit, final String rel) {
+		final UriComponentsBuilder uriBuilder = relativePath.toUriComponentsBuilder();
+		if (cursorName != null)
+			uriBuilder.queryParam(cursorName, cursor);
+		return new Link(uriBuilder.queryParam("limit", limit).toUriString(), rel);
+	}
+
+	/**
+	 * Reads one entity per line, as sent by a client that streams a batch.
+	 *
+	 * @throws JsonProcessingException if a line holds no entity
+	 */
+	<T> List<T> readLines(final InputStream lines, final Class<T> type, final ObjectMapper objectMapper) throws IOException {
+		try (MappingIterator<T> entities = objectMapper.readerFor(type).readValues(lines)) {
+			return entities.readAll();
+		}
+	}
+
+	/**
+	 * Rejects a batch above the configured maximum with the same error as a page limit out of range.
+	 *
+	 * @param attribute the rejected parameter, named like a constraint violation of a handler parameter
+	 */
+	ResponseEntity<ValidationRepresentation<Object>> batchTooLarge(final String attribute) {
+		return ResponseEntity.badRequest().body(ValidationRepresentation.builder()
+				.error(ValidationEntryRepresentation.builder().attribute(attribute).errorMessage(messageOf("error.limit.invalid")).build())
+				.build());
+	}
+
+	/**
+	 * @param requested the entities as requested, those without id count as created once stored
+	 */
+	<T extends Identifiable<String> & Versioned> BulkRepresentation bulkRepresentationOf(final List<BulkItem<T>> items, final List<T> requested,
+																						 final Class relativePath) {
+		final List<BulkItemRepresentation> itemRepresentations = items.stream().map(item -> item.isSucceeded()
+				? BulkItemRepresentation.builder()
+				.index(item.getIndex())
+				.status((requested.get(item.getIndex()).getId() == null ? CREATED : OK).value())
+				.entityId(item.getEntity().getId())
+				.eTag(item.getEntity().getETag())
+				.link(linkTo(relativePath).slash(item.getEntity()).withSelfRel())
+				.build()
+				: BulkItemRepresentation.builder()
+				.index(item.getIndex())
+				.status(statusOf(item.getError()).value())
+				.entityId(item.getEntity().getId())
+				.errors(errorsOf(item.getError()))
+				.build()).collect(toList());
+		final int succeeded = (int) items.stream().filter(BulkItem::isSucceeded).count();
+		return BulkRepresentation.builder()
+				.succeeded(succeeded)
+				.failed(items.size() - succeeded)
+				.items(itemRepresentations)
+				.build();
+	}
+
+	private static HttpStatus statusOf(final RuntimeException error) {
+		if (error instanceof NotFoundException)
+			return NOT_FOUND;
+		if (error instanceof ConcurrentModificationException)
+			return PRECONDITION_FAILED;
+		if (error instanceof DataIntegrityViolationException)
+			return CONFLICT;
+		return BAD_REQUEST;
+	}
+
+	/**
+	 * Same errors as the validation handler reports for a single entity. A rejected write gets a message of its own
+	 * instead of the one of the database driver, which would expose indexes and values.
+	 */
+	private List<ValidationEntryRepresentation> errorsOf(final RuntimeException error) {
+		if (error instanceof ConstraintViolationException)
+			return ((ConstraintViolationException) error).getConstraintViolations().stream()
+					.map(violation -> ValidationEntryRepresentation.builder()
+							.attribute(violation.getPropertyPath().toString())
+							.errorMessage(messageOf(violation.getMessage())).build())
+					.sorted(comparing(ValidationEntryRepresentation::getAttribute).thenComparing(ValidationEntryRepresentation::getErrorMessage))
+					.collect(toList());
+		if (error instanceof InvalidUserException)
+			return singletonList(ValidationEntryRepresentation.builder()
+					.attribute(((InvalidUserException) error).getErrorCause())
+					.errorMessage(((InvalidUserException) error).getErrorMsg()).build());
+		if (error instanceof InvalidGroupException)
+			return singletonList(ValidationEntryRepresentation.builder()
+					.attribute(((InvalidGroupException) error).getErrorCause())
+					.errorMessage(((InvalidGroupException) error).getErrorMsg()).build());
+		if (error instanceof NotFoundException || error instanceof ConcurrentModificationException)
+			return singletonList(ValidationEntryRepresentation.builder().attribute("id").errorMessage(error.getMessage()).build());
+		return singletonList(ValidationEntryRepresentation.builder().attribute("write")
+				.errorMessage(messageOf(error instanceof DuplicateKeyException ? "error.write.duplicate" : "error.write.failed")).build());
+	}
+
+	/**
+	 * @return the translated message, the code itself if there is none
+	 */
+	private String messageOf(final String messageCode) {
+		return messageSource.getMessage(messageCode, null, messageCode, LocaleContextHolder.getLocale());
+	}
+
+	/**
+	 * Writes the representation straight to the response output stream once the handler has returned,
+	 * leaving the stream open for the servlet container.
+	 */
+	StreamingResponseBody streamOf(final Object representation, final ObjectMapper objectMapper) {
+		return outputStream -> objectMapper.writer().without(AUTO_CLOSE_TARGET).writeValue(outputStream, representation);
+	}
+
+	/**
+	 * Writes a long running body on an async thread with a timeout of its own, as the default async request timeout
+	 * would cut it off; unlike a returned {@link StreamingResponseBody}, a {@link WebAsyncTask} carries its timeout.
+	 * The body is only created once the task runs, so a cursor it opens is opened and closed on that thread and never
+	 * left open by a request that ended before.
+	 *
+	 * @param head status and headers of the response, without body
+	 */
+	WebAsyncTask<Void> writeAsync(final HttpServletResponse response, final ResponseEntity<?> head, final long timeoutMillis,
+								  final Supplier<StreamingResponseBody> body) {
+		writeHead(response, head);
+		return new WebAsyncTask<>(timeoutMillis, () -> {
+			body.get().writeTo(response.getOutputStream());
+			return null;
+		});
+	}
+
+	/**
+	 * Answers a request of a handler that writes its body itself by {@link #writeAsync} without any body.
+	 *
+	 * @return no task, so the request completes right away
+	 */
+	WebAsyncTask<Void> writeWithoutBody(final HttpServletResponse response, final ResponseEntity<?> head) {
+		writeHead(response, head);
+		return null;
+	}
+
+	private static void writeHead(final HttpServletResponse response, final ResponseEntity<?> head) {
+		response.setStatus(head.getStatusCodeValue());
+		head.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+	}
+
+	/**
+	 * Writes one entity per line like {@link #streamOf}, without null values and, if properties are given, reduced to
+	 * these and the id. The entities are closed once written.
+	 */
+	StreamingResponseBody linesOf(final Stream<?> entities, final Set<String> properties, final ObjectMapper objectMapper) {
+		final ObjectMapper lineMapper = objectMapper.copy()
+				.setSerializationInclusion(NON_NULL)
+				.disable(FLUSH_AFTER_WRITE_VALUE);
+		final Set<String> retainedProperties = ImmutableSet.<String>builder().addAll(properties).add("id").build();
+		return outputStream -> {
+			try (Stream<?> lines = entities;
+				 JsonGenerator generator = lineMapper.getFactory().createGenerator(outputStream)
+						 .disable(AUTO_CLOSE_TARGET)
+						 .setRootValueSeparator(null)) {
+				for (final Iterator<?> iterator = lines.iterator(); iterator.hasNext(); ) {
+					if (properties.isEmpty()) {
+						lineMapper.writeValue(generator, iterator.next());
+					} else {
+						final JsonNode line = lineMapper.valueToTree(iterator.next());
+						if (line.isObject())
+							((ObjectNode) line).retain(retainedProperties);
+						lineMapper.writeTree(generator, line);
+					}
+					generator.writeRaw('\n');
+				}
+			}
+		};
+	}
+
+	boolean eTagMatches(final String ETagHeader, final String eTag) {
+		return ETagHeader.equals(eTag) || ETagHeader.equals("\"" + eTag + "\"");
+	}
+
 	MultiValueMap<String, String> getETagHeader(final Hashable data) {
 		MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
 		headers.add(ETAG, data.getETag());
@@ -39,7 +291,8 @@ public abstract class BaseController {
 	/**
 	 * Generates an order-independent ETag for a list of hashable entities.
 	 * The ETag remains consistent regardless of the order of items in the list,
-	 * as long as the same set of items is present.
+	 * as long as the same set of items is present. Each item contributes its id
+	 * along with its ETag, as versions alone are shared by different entities.
 	 * 
 	 * Performance optimizations:
 	 * - Sorts ETags to ensure order independence
@@ -49,7 +302,7 @@ public abstract class BaseController {
 	 * @param data List of hashable entities
 	 * @return MultiValueMap containing the ETag header
 	 */
-	MultiValueMap<String, String> getETagHeader(final List<? extends Hashable> data) {
+	<T extends Identifiable<String> & Hashable> MultiValueMap<String, String> getETagHeader(final List<T> data) {
 		MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
 		
 		if (data.isEmpty()) {
@@ -62,7 +315,7 @@ public abstract class BaseController {
 		// Use String.join() for better performance than reduce() with concatenation
 		final String combinedETags = String.join(",", 
 			data.stream()
-				.map(Hashable::getETag)
+				.map(entity -> entity.getId() + "=" + entity.getETag())
 				.sorted() // Key optimization: sort ETags before combining
 				.toArray(String[]::new));
 		
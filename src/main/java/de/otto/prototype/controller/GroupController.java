@@ -1,30 +1,65 @@
 package de.otto.prototype.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.otto.prototype.controller.representation.StreamingListRepresentation;
 import de.otto.prototype.controller.representation.group.GroupListEntryRepresentation;
 import de.otto.prototype.controller.representation.group.GroupListRepresentation;
 import de.otto.prototype.controller.representation.group.GroupRepresentation;
+import de.otto.prototype.controller.representation.user.UserListRepresentation;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.CountedGroup;
 import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.model.VersionOnly;
 import de.otto.prototype.service.GroupService;
+import de.otto.prototype.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static de.otto.prototype.controller.GroupController.URL_GROUP;
+import static de.otto.prototype.controller.representation.user.UserListEntryRepresentation.userListEntryRepresentationOf;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.http.HttpHeaders.*;
 import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.ResponseEntity.*;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
 
 @RestController
 @RequestMapping(URL_GROUP)
@@ -35,23 +70,55 @@ public class GroupController extends BaseController {
 
     private final GroupService groupService;
 
+	private final UserService userService;
+
+	private final ObjectMapper objectMapper;
+
+	private final int maxPageSize;
+
+	private final int exportBatchSize;
+
+	private final long exportTimeoutMillis;
+
+	private final int maxBatchSize;
+
 	@Autowired
-	public GroupController(final GroupService groupService) {
+	public GroupController(final GroupService groupService, final UserService userService,
+						   final @Qualifier(HAL_OBJECT_MAPPER) ObjectMapper objectMapper, final @Value("${group.page.max-size}") int maxPageSize,
+						   final @Value("${group.export.batch-size}") int exportBatchSize,
+						   final @Value("${group.export.timeout-seconds}") long exportTimeoutSeconds,
+						   final @Value("${group.bulk.max-size}") int maxBatchSize, final MessageSource messageSource) {
+		super(messageSource);
 		this.groupService = groupService;
+		this.userService = userService;
+		this.objectMapper = objectMapper;
+		this.maxPageSize = maxPageSize;
+		this.exportBatchSize = exportBatchSize;
+		this.exportTimeoutMillis = SECONDS.toMillis(exportTimeoutSeconds);
+		this.maxBatchSize = maxBatchSize;
 	}
 
 	@RequestMapping(method = GET, produces = APPLICATION_JSON_VALUE)
-	public ResponseEntity<GroupListRepresentation> getAll(final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
+	public ResponseEntity<GroupListRepresentation> getAll(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+														  @RequestParam(value = "after", required = false) String after,
+														  final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+														  @RequestParam(value = "before", required = false) String before,
+														  final @Min(value = 1, message = "error.limit.invalid")
+														  @RequestParam(value = "limit", required = false) Integer limit,
+														  final @RequestParam(value = "includeUserIds", defaultValue = "true") boolean includeUserIds,
+														  final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
+		if (after != null || before != null || limit != null)
+			return getPage(after, before, limit == null ? DEFAULT_PAGE_SIZE : limit, includeUserIds, ETagHeader);
+
+		final CollectionVersion collectionVersion = groupService.findCollectionVersion();
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, collectionVersion.getETag()))
+			return ResponseEntity.status(NOT_MODIFIED).eTag(collectionVersion.getETag()).build();
+
 		final List<Group> allGroups = groupService.findAll().collect(toList());
 
 		if (allGroups.isEmpty())
 			return noContent().build();
 
-		final MultiValueMap<String, String> header = getETagHeader(allGroups);
-		final String groupListETag = header.getFirst(ETAG);
-		if (!isNullOrEmpty(ETagHeader) && groupListETag.equals(ETagHeader))
-			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, groupListETag).build();
-
 		final GroupListRepresentation listOfGroups = GroupListRepresentation.builder()
 				.groups(allGroups.stream().map(group -> GroupListEntryRepresentation.builder()
 						.link(linkTo(GroupController.class).slash(group).withSelfRel())
@@ -62,6 +129,66 @@ public class GroupController extends BaseController {
 				.total(allGroups.size())
 				.build();
 
+		return new ResponseEntity<>(listOfGroups, getETagHeader(collectionVersion), OK);
+	}
+
+	@RequestMapping(method = GET, params = "stream=true", produces = APPLICATION_JSON_VALUE)
+	public WebAsyncTask<Void> streamAll(final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader,
+										final HttpServletResponse response) {
+		final CollectionVersion collectionVersion = groupService.findCollectionVersion();
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, collectionVersion.getETag()))
+			return writeWithoutBody(response, ResponseEntity.status(NOT_MODIFIED).eTag(collectionVersion.getETag()).build());
+
+		final Optional<String> firstId = groupService.findFirstId();
+		if (!firstId.isPresent())
+			return writeWithoutBody(response, noContent().build());
+
+		final ControllerLinkBuilder groupLinks = linkTo(GroupController.class);
+		final Link selfLink = new Link(fromCurrentRequest().toUriString());
+		final Link startLink = groupLinks.slash(firstId.get()).withRel("start");
+		final long total = groupService.count();
+
+		return writeAsync(response, ok().eTag(collectionVersion.getETag()).contentType(APPLICATION_JSON).build(), exportTimeoutMillis,
+				() -> streamOf(StreamingListRepresentation.<GroupListEntryRepresentation>builder()
+						.link(selfLink)
+						.link(startLink)
+						.total(total)
+						.content(groupService.findAll().map(group -> GroupListEntryRepresentation.builder()
+								.link(groupLinks.slash(group).withSelfRel())
+								.group(group)
+								.build()))
+						.build(), objectMapper));
+	}
+
+	@RequestMapping(value = "/_export", method = GET, produces = NDJSON_VALUE)
+	public WebAsyncTask<Void> exportAll(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+										@RequestParam(value = "after", required = false) String after,
+										final @RequestParam(value = "fields", required = false) Set<String> fields,
+										final HttpServletResponse response) {
+		final Set<String> properties = fields == null ? emptySet() : fields;
+		return writeAsync(response, ok().contentType(NDJSON).build(), exportTimeoutMillis,
+				() -> linesOf(groupService.exportAll(after, properties, exportBatchSize), properties, objectMapper));
+	}
+
+	private ResponseEntity<GroupListRepresentation> getPage(final String after, final String before, final int limit,
+															final boolean includeUserIds, final String ETagHeader) {
+		final int pageSize = min(limit, maxPageSize);
+		final KeysetPage<Group> page = groupService.findPage(after, before, pageSize, includeUserIds);
+
+		final MultiValueMap<String, String> header = getETagHeader(page.getContent());
+		final String pageETag = header.getFirst(ETAG);
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, pageETag))
+			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, pageETag).build();
+
+		final GroupListRepresentation listOfGroups = GroupListRepresentation.builder()
+				.groups(page.getContent().stream().map(group -> GroupListEntryRepresentation.builder()
+						.link(linkTo(GroupController.class).slash(group).withSelfRel())
+						.group(group)
+						.build()).collect(toList()))
+				.links(determinePageLinks(page, pageSize, GroupController.class))
+				.total(toIntExact(groupService.count()))
+				.build();
+
 		return new ResponseEntity<>(listOfGroups, header, OK);
 	}
 
@@ -69,19 +196,26 @@ public class GroupController extends BaseController {
 	public ResponseEntity<GroupRepresentation> getOne(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
 													  @PathVariable("groupId") String groupId,
 													  final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
-		final Optional<Group> foundGroup = groupService.findOne(groupId);
+		if (!isNullOrEmpty(ETagHeader)) {
+			final Optional<String> storedETag = groupService.findETag(groupId);
+			if (storedETag.filter(eTag -> eTagMatches(ETagHeader, eTag)).isPresent())
+				return ResponseEntity.status(NOT_MODIFIED).header(ETAG, storedETag.get()).build();
+		}
+
+		final Optional<CountedGroup> foundGroup = groupService.findOne(groupId);
 
 		if (!foundGroup.isPresent())
 			return notFound().build();
 
-		final Group group = foundGroup.get();
+		final Group group = foundGroup.get().getGroup();
 		final String groupETag = group.getETag();
-		if (!isNullOrEmpty(ETagHeader) && groupETag.equals(ETagHeader))
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, groupETag))
 			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, groupETag).build();
 
 		return new ResponseEntity<>(GroupRepresentation.builder()
 				.group(group)
-				.links(determineLinks(group, groupService.findAll().collect(toList()), GroupController.class))
+				.memberCount(foundGroup.get().getMemberCount())
+				.links(determineGroupLinks(group))
 				.build(), getETagHeader(group), OK);
 	}
 
@@ -92,10 +226,31 @@ public class GroupController extends BaseController {
 				.header(ETAG, persistedGroup.getETag())
 				.body(GroupRepresentation.builder()
 						.group(persistedGroup)
-						.links(determineLinks(persistedGroup, groupService.findAll().collect(toList()), GroupController.class))
+						.memberCount(persistedGroup.getUserIds().size())
+						.links(determineGroupLinks(persistedGroup))
 						.build());
 	}
 
+	@RequestMapping(value = "/_bulk", method = POST, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity saveAll(final @RequestBody List<Group> groups) {
+		if (groups.isEmpty())
+			return badRequest().build();
+		if (groups.size() > maxBatchSize)
+			return batchTooLarge("saveAll.groups");
+		return ok(bulkRepresentationOf(groupService.saveAll(groups), groups, GroupController.class));
+	}
+
+	@RequestMapping(value = "/_bulk", method = POST, consumes = NDJSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity saveAllOfLines(final HttpServletRequest request) throws IOException {
+		final List<Group> groups;
+		try {
+			groups = readLines(request.getInputStream(), Group.class, objectMapper);
+		} catch (JsonProcessingException e) {
+			return badRequest().build();
+		}
+		return saveAll(groups);
+	}
+
 	@RequestMapping(value = "/{groupId}", method = PUT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
 	public ResponseEntity<GroupRepresentation> update(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("groupId") String groupId,
 													  final @Validated(Group.Existing.class) @RequestBody Group group,
@@ -105,13 +260,83 @@ public class GroupController extends BaseController {
 		final Group updatedGroup = groupService.update(group, ETagHeader);
 		return new ResponseEntity<>(GroupRepresentation.builder()
 				.group(updatedGroup)
-				.links(determineLinks(updatedGroup, groupService.findAll().collect(toList()), GroupController.class))
+				.memberCount(updatedGroup.getUserIds().size())
+				.links(determineGroupLinks(updatedGroup))
 				.build(), getETagHeader(updatedGroup), OK);
 	}
 
+	@RequestMapping(value = "/{groupId}", method = PATCH, consumes = MERGE_PATCH_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity<GroupRepresentation> patch(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("groupId") String groupId,
+													 final @RequestBody JsonNode patch,
+													 final @RequestHeader(value = IF_MATCH, required = false) String ETagHeader) {
+		if (!patch.isObject())
+			return badRequest().build();
+		final Group patchedGroup = groupService.patch(groupId, patch, ETagHeader);
+		return new ResponseEntity<>(GroupRepresentation.builder()
+				.group(patchedGroup)
+				.memberCount(patchedGroup.getUserIds().size())
+				.links(determineGroupLinks(patchedGroup))
+				.build(), getETagHeader(patchedGroup), OK);
+	}
+
+	@RequestMapping(value = "/{groupId}/members", method = GET, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity<UserListRepresentation> getMembers(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @PathVariable("groupId") String groupId,
+															 final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @RequestParam(value = "after", required = false) String after,
+															 final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @RequestParam(value = "before", required = false) String before,
+															 final @Min(value = 1, message = "error.limit.invalid")
+															 @RequestParam(value = "limit", required = false) Integer limit,
+															 final @RequestParam(value = "includeUsers", defaultValue = "false") boolean includeUsers) {
+		final Optional<Integer> memberCount = groupService.countMembers(groupId);
+		if (!memberCount.isPresent())
+			return notFound().build();
+
+		final int pageSize = min(limit == null ? DEFAULT_PAGE_SIZE : limit, maxPageSize);
+		final KeysetPage<IdOnly> page = groupService.findMembers(groupId, after, before, pageSize);
+		final List<String> memberIds = page.getContent().stream().map(IdOnly::getId).collect(toList());
+		final Map<String, UserSummary> summaries = includeUsers && !memberIds.isEmpty()
+				? userService.findSummaries(memberIds).stream().collect(toMap(UserSummary::getId, identity()))
+				: emptyMap();
+
+		final ControllerLinkBuilder groupLink = linkTo(GroupController.class).slash(groupId);
+		final UserListRepresentation listOfMembers = UserListRepresentation.builder()
+				.users(memberIds.stream().map(memberId -> userListEntryRepresentationOf(
+						summaries.getOrDefault(memberId, new UserSummary(memberId, null, null, null)))).collect(toList()))
+				.links(determinePageLinks(page, pageSize, groupLink.slash("members")))
+				.link(groupLink.withRel("group"))
+				.total(memberCount.get())
+				.build();
+
+		return ok(listOfMembers);
+	}
+
+	@RequestMapping(value = "/{groupId}/members", method = POST, consumes = APPLICATION_JSON_VALUE)
+	public ResponseEntity addMembers(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("groupId") String groupId,
+									 final @NotEmpty(message = "error.userlist.empty") @RequestBody List<String> userIds,
+									 final @RequestHeader(value = IF_MATCH, required = false) String ETagHeader) {
+		final VersionOnly version = groupService.addMembers(groupId, userIds, ETagHeader);
+		return noContent().header(ETAG, version.getETag()).build();
+	}
+
+	@RequestMapping(value = "/{groupId}/members/{userIds}", method = DELETE)
+	public ResponseEntity removeMembers(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("groupId") String groupId,
+										final @PathVariable("userIds") List<@Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") String> userIds,
+										final @RequestHeader(value = IF_MATCH, required = false) String ETagHeader) {
+		final VersionOnly version = groupService.removeMembers(groupId, userIds, ETagHeader);
+		return noContent().header(ETAG, version.getETag()).build();
+	}
+
 	@RequestMapping(value = "/{groupId}", method = DELETE)
 	public ResponseEntity delete(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("groupId") String groupId) {
 		groupService.delete(groupId);
 		return noContent().build();
 	}
+
+	private List<Link> determineGroupLinks(final Group group) {
+		final List<Link> links = determineLinks(group, groupService.findNeighbours(group.getId()), GroupController.class);
+		links.add(linkTo(GroupController.class).slash(group).slash("members").withRel("members"));
+		return links;
+	}
 }
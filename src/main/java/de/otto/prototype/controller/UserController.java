@@ -1,30 +1,59 @@
 package de.otto.prototype.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.otto.prototype.controller.representation.StreamingListRepresentation;
+import de.otto.prototype.controller.representation.group.GroupListEntryRepresentation;
+import de.otto.prototype.controller.representation.group.GroupListRepresentation;
 import de.otto.prototype.controller.representation.user.UserListEntryRepresentation;
 import de.otto.prototype.controller.representation.user.UserListRepresentation;
 import de.otto.prototype.controller.representation.user.UserRepresentation;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.KeysetPage;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.service.GroupService;
 import de.otto.prototype.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static de.otto.prototype.controller.UserController.URL_USER;
+import static de.otto.prototype.controller.representation.user.UserListEntryRepresentation.userListEntryRepresentationOf;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.http.HttpHeaders.*;
 import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.ResponseEntity.*;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
 
 @RestController
 @RequestMapping(URL_USER)
@@ -35,23 +64,54 @@ public class UserController extends BaseController {
 
 	private final UserService userService;
 
+	private final GroupService groupService;
+
+	private final ObjectMapper objectMapper;
+
+	private final int maxPageSize;
+
+	private final int exportBatchSize;
+
+	private final long exportTimeoutMillis;
+
+	private final int maxBatchSize;
+
 	@Autowired
-	public UserController(final UserService userService) {
+	public UserController(final UserService userService, final GroupService groupService,
+						  final @Qualifier(HAL_OBJECT_MAPPER) ObjectMapper objectMapper, final @Value("${user.page.max-size}") int maxPageSize,
+						  final @Value("${user.export.batch-size}") int exportBatchSize,
+						  final @Value("${user.export.timeout-seconds}") long exportTimeoutSeconds,
+						  final @Value("${user.bulk.max-size}") int maxBatchSize, final MessageSource messageSource) {
+		super(messageSource);
 		this.userService = userService;
+		this.groupService = groupService;
+		this.objectMapper = objectMapper;
+		this.maxPageSize = maxPageSize;
+		this.exportBatchSize = exportBatchSize;
+		this.exportTimeoutMillis = SECONDS.toMillis(exportTimeoutSeconds);
+		this.maxBatchSize = maxBatchSize;
 	}
 
 	@RequestMapping(method = GET, produces = APPLICATION_JSON_VALUE)
-	public ResponseEntity<UserListRepresentation> getAll(final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
-		final List<User> allUsers = userService.findAll().collect(toList());
+	public ResponseEntity<UserListRepresentation> getAll(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+														 @RequestParam(value = "after", required = false) String after,
+														 final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+														 @RequestParam(value = "before", required = false) String before,
+														 final @Min(value = 1, message = "error.limit.invalid")
+														 @RequestParam(value = "limit", required = false) Integer limit,
+														 final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
+		if (after != null || before != null || limit != null)
+			return getPage(after, before, limit == null ? DEFAULT_PAGE_SIZE : limit, ETagHeader);
+
+		final CollectionVersion collectionVersion = userService.findCollectionVersion();
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, collectionVersion.getETag()))
+			return ResponseEntity.status(NOT_MODIFIED).eTag(collectionVersion.getETag()).build();
+
+		final List<UserSummary> allUsers = userService.findAllSummaries().collect(toList());
 
 		if (allUsers.isEmpty())
 			return noContent().build();
 
-		final MultiValueMap<String, String> header = getETagHeader(allUsers);
-		final String userListETag = header.getFirst(ETAG);
-		if (!isNullOrEmpty(ETagHeader) && userListETag.equals(ETagHeader))
-			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, userListETag).build();
-
 		final UserListRepresentation listOfUser = UserListRepresentation.builder()
 				.users(allUsers.stream().map(UserListEntryRepresentation::userListEntryRepresentationOf).collect(toList()))
 				.link(linkTo(UserController.class).withSelfRel())
@@ -59,6 +119,59 @@ public class UserController extends BaseController {
 				.total(allUsers.size())
 				.build();
 
+		return new ResponseEntity<>(listOfUser, getETagHeader(collectionVersion), OK);
+	}
+
+	@RequestMapping(method = GET, params = "stream=true", produces = APPLICATION_JSON_VALUE)
+	public WebAsyncTask<Void> streamAll(final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader,
+										final HttpServletResponse response) {
+		final CollectionVersion collectionVersion = userService.findCollectionVersion();
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, collectionVersion.getETag()))
+			return writeWithoutBody(response, ResponseEntity.status(NOT_MODIFIED).eTag(collectionVersion.getETag()).build());
+
+		final Optional<String> firstId = userService.findFirstId();
+		if (!firstId.isPresent())
+			return writeWithoutBody(response, noContent().build());
+
+		final ControllerLinkBuilder userLinks = linkTo(UserController.class);
+		final Link selfLink = new Link(fromCurrentRequest().toUriString());
+		final Link startLink = userLinks.slash(firstId.get()).withRel("start");
+		final long total = userService.count();
+
+		return writeAsync(response, ok().eTag(collectionVersion.getETag()).contentType(APPLICATION_JSON).build(), exportTimeoutMillis,
+				() -> streamOf(StreamingListRepresentation.<UserListEntryRepresentation>builder()
+						.link(selfLink)
+						.link(startLink)
+						.total(total)
+						.content(userService.findAllSummaries().map(user -> userListEntryRepresentationOf(user, userLinks)))
+						.build(), objectMapper));
+	}
+
+	@RequestMapping(value = "/_export", method = GET, produces = NDJSON_VALUE)
+	public WebAsyncTask<Void> exportAll(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+										@RequestParam(value = "after", required = false) String after,
+										final @RequestParam(value = "fields", required = false) Set<String> fields,
+										final HttpServletResponse response) {
+		final Set<String> properties = fields == null ? emptySet() : fields;
+		return writeAsync(response, ok().contentType(NDJSON).build(), exportTimeoutMillis,
+				() -> linesOf(userService.exportAll(after, properties, exportBatchSize), properties, objectMapper));
+	}
+
+	private ResponseEntity<UserListRepresentation> getPage(final String after, final String before, final int limit, final String ETagHeader) {
+		final int pageSize = min(limit, maxPageSize);
+		final KeysetPage<UserSummary> page = userService.findPage(after, before, pageSize);
+
+		final MultiValueMap<String, String> header = getETagHeader(page.getContent());
+		final String pageETag = header.getFirst(ETAG);
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, pageETag))
+			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, pageETag).build();
+
+		final UserListRepresentation listOfUser = UserListRepresentation.builder()
+				.users(page.getContent().stream().map(UserListEntryRepresentation::userListEntryRepresentationOf).collect(toList()))
+				.links(determinePageLinks(page, pageSize, UserController.class))
+				.total(toIntExact(userService.count()))
+				.build();
+
 		return new ResponseEntity<>(listOfUser, header, OK);
 	}
 
@@ -66,6 +179,12 @@ public class UserController extends BaseController {
 	public ResponseEntity<UserRepresentation> getOne(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
 													 @PathVariable("userId") String userId,
 													 final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
+		if (!isNullOrEmpty(ETagHeader)) {
+			final Optional<String> storedETag = userService.findETag(userId);
+			if (storedETag.filter(eTag -> eTagMatches(ETagHeader, eTag)).isPresent())
+				return ResponseEntity.status(NOT_MODIFIED).header(ETAG, storedETag.get()).build();
+		}
+
 		final Optional<User> foundUser = userService.findOne(userId);
 
 		if (!foundUser.isPresent())
@@ -73,15 +192,49 @@ public class UserController extends BaseController {
 
 		final User user = foundUser.get();
 		final String userETag = user.getETag();
-		if (!isNullOrEmpty(ETagHeader) && userETag.equals(ETagHeader))
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, userETag))
 			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, userETag).build();
 
 		return new ResponseEntity<>(UserRepresentation.builder()
 				.user(user)
-				.links(determineLinks(user, userService.findAll().collect(toList()), UserController.class))
+				.links(determineLinks(user, userService.findNeighbours(user.getId()), UserController.class))
 				.build(), getETagHeader(user), OK);
 	}
 
+	@RequestMapping(value = "/{userId}/groups", method = GET, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity<GroupListRepresentation> getGroups(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @PathVariable("userId") String userId,
+															 final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @RequestParam(value = "after", required = false) String after,
+															 final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid")
+															 @RequestParam(value = "before", required = false) String before,
+															 final @Min(value = 1, message = "error.limit.invalid")
+															 @RequestParam(value = "limit", required = false) Integer limit,
+															 final @RequestHeader(value = IF_NONE_MATCH, required = false) String ETagHeader) {
+		final int pageSize = min(limit == null ? DEFAULT_PAGE_SIZE : limit, maxPageSize);
+		final KeysetPage<Group> page = groupService.findPageByMember(userId, after, before, pageSize);
+		if (page.isEmpty() && !userService.findETag(userId).isPresent())
+			return notFound().build();
+
+		final MultiValueMap<String, String> header = getETagHeader(page.getContent());
+		final String pageETag = header.getFirst(ETAG);
+		if (!isNullOrEmpty(ETagHeader) && eTagMatches(ETagHeader, pageETag))
+			return ResponseEntity.status(NOT_MODIFIED).header(ETAG, pageETag).build();
+
+		final ControllerLinkBuilder userLink = linkTo(UserController.class).slash(userId);
+		final GroupListRepresentation listOfGroups = GroupListRepresentation.builder()
+				.groups(page.getContent().stream().map(group -> GroupListEntryRepresentation.builder()
+						.link(linkTo(GroupController.class).slash(group).withSelfRel())
+						.group(group)
+						.build()).collect(toList()))
+				.links(determinePageLinks(page, pageSize, userLink.slash("groups")))
+				.link(userLink.withRel("user"))
+				.total(toIntExact(groupService.countByMember(userId)))
+				.build();
+
+		return new ResponseEntity<>(listOfGroups, header, OK);
+	}
+
 	@RequestMapping(method = POST, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
 	public ResponseEntity<UserRepresentation> create(final @Validated(User.New.class) @RequestBody User user) {
 		final User persistedUser = userService.create(user);
@@ -89,10 +242,30 @@ public class UserController extends BaseController {
 				.header(ETAG, persistedUser.getETag())
 				.body(UserRepresentation.builder()
 						.user(persistedUser)
-						.links(determineLinks(persistedUser, userService.findAll().collect(toList()), UserController.class))
+						.links(determineLinks(persistedUser, userService.findNeighbours(persistedUser.getId()), UserController.class))
 						.build());
 	}
 
+	@RequestMapping(value = "/_bulk", method = POST, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity createAll(final @RequestBody List<User> users) {
+		if (users.isEmpty())
+			return badRequest().build();
+		if (users.size() > maxBatchSize)
+			return batchTooLarge("createAll.users");
+		return ok(bulkRepresentationOf(userService.createAll(users), users, UserController.class));
+	}
+
+	@RequestMapping(value = "/_bulk", method = POST, consumes = NDJSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity createAllOfLines(final HttpServletRequest request) throws IOException {
+		final List<User> users;
+		try {
+			users = readLines(request.getInputStream(), User.class, objectMapper);
+		} catch (JsonProcessingException e) {
+			return badRequest().build();
+		}
+		return createAll(users);
+	}
+
 	@RequestMapping(value = "/{userId}", method = PUT, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
 	public ResponseEntity<UserRepresentation> update(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("userId") String userId,
 													 final @Validated(User.Existing.class) @RequestBody User user,
@@ -102,12 +275,28 @@ public class UserController extends BaseController {
 		final User updatedUser = userService.update(user, ETagHeader);
 		return new ResponseEntity<>(UserRepresentation.builder()
 				.user(updatedUser)
-				.links(determineLinks(updatedUser, userService.findAll().collect(toList()), UserController.class))
+				.links(determineLinks(updatedUser, userService.findNeighbours(updatedUser.getId()), UserController.class))
 				.build(), getETagHeader(updatedUser), OK);
 	}
 
+	@RequestMapping(value = "/{userId}", method = PATCH, consumes = MERGE_PATCH_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+	public ResponseEntity<UserRepresentation> patch(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("userId") String userId,
+													final @RequestBody JsonNode patch,
+													final @RequestHeader(value = IF_MATCH, required = false) String ETagHeader) {
+		if (!patch.isObject())
+			return badRequest().build();
+		final User patchedUser = userService.patch(userId, patch, ETagHeader);
+		return new ResponseEntity<>(UserRepresentation.builder()
+				.user(patchedUser)
+				.links(determineLinks(patchedUser, userService.findNeighbours(patchedUser.getId()), UserController.class))
+				.build(), getETagHeader(patchedUser), OK);
+	}
+
 	@RequestMapping(value = "/{userId}", method = DELETE)
 	public ResponseEntity delete(final @Pattern(regexp = "^\\w{24}$", message = "error.id.invalid") @PathVariable("userId") String userId) {
+		if (!userService.findOne(userId).isPresent())
+			return notFound().build();
+		groupService.removeMemberFromAllGroups(userId);
 		userService.delete(userId);
 		return noContent().build();
 	}
@@ -0,0 +1,199 @@
+package de.otto.prototype.controller.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Outcome of a single entity of a bulk request: its status as it would have been answered on its own,
+ * the id, link and ETag of the stored entity or the errors it was rejected with.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class BulkItemRepresentation extends ResourceSupport {
+
+	private final List<Link> links;
+
+	private final int index;
+
+	private final int status;
+
+	private final String entityId;
+
+	private final String eTag;
+
+	private final List<ValidationEntryRepresentation> errors;
+
+	@java.beans.ConstructorProperties({"links", "index", "status", "entityId", "eTag", "errors"})
+	BulkItemRepresentation(List<Link> links, int index, int status, String entityId, String eTag, List<ValidationEntryRepresentation> errors) {
+		this.links = links;
+		this.index = index;
+		this.status = status;
+		this.entityId = entityId;
+		this.eTag = eTag;
+		this.errors = errors;
+	}
+
+	public static BulkItemRepresentationBuilder builder() {
+		return new BulkItemRepresentationBuilder();
+	}
+
+	public List<Link> getLinks() {
+		return this.links;
+	}
+
+	@JsonInclude(JsonInclude.Include.ALWAYS)
+	public int getIndex() {
+		return this.index;
+	}
+
+	public int getStatus() {
+		return this.status;
+	}
+
+	@JsonProperty("id")
+	public String getEntityId() {
+		return this.entityId;
+	}
+
+	@JsonProperty("eTag")
+	public String getETag() {
+		return this.eTag;
+	}
+
+	public List<ValidationEntryRepresentation> getErrors() {
+		return this.errors;
+	}
+
+	public String toString() {
+		return "BulkItemRepresentation(links=" + this.getLinks() + ", index=" + this.getIndex() + ", status=" + this.getStatus() + ", entityId=" + this.getEntityId() + ", eTag=" + this.getETag() + ", errors=" + this.getErrors() + ")";
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof BulkItemRepresentation)) return false;
+		final BulkItemRepresentation other = (BulkItemRepresentation) o;
+		if (!other.canEqual(this)) return false;
+		if (!super.equals(o)) return false;
+		final Object this$links = this.getLinks();
+		final Object other$links = other.getLinks();
+		if (this$links == null ? other$links != null : !this$links.equals(other$links)) return false;
+		if (this.getIndex() != other.getIndex()) return false;
+		if (this.getStatus() != other.getStatus()) return false;
+		final Object this$entityId = this.getEntityId();
+		final Object other$entityId = other.getEntityId();
+		if (this$entityId == null ? other$entityId != null : !this$entityId.equals(other$entityId)) return false;
+		final Object this$eTag = this.getETag();
+		final Object other$eTag = other.getETag();
+		if (this$eTag == null ? other$eTag != null : !this$eTag.equals(other$eTag)) return false;
+		final Object this$errors = this.getErrors();
+		final Object other$errors = other.getErrors();
+		return this$errors == null ? other$errors == null : this$errors.equals(other$errors);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + super.hashCode();
+		final Object $links = this.getLinks();
+		result = result * PRIME + ($links == null ? 43 : $links.hashCode());
+		result = result * PRIME + this.getIndex();
+		result = result * PRIME + this.getStatus();
+		final Object $entityId = this.getEntityId();
+		result = result * PRIME + ($entityId == null ? 43 : $entityId.hashCode());
+		final Object $eTag = this.getETag();
+		result = result * PRIME + ($eTag == null ? 43 : $eTag.hashCode());
+		final Object $errors = this.getErrors();
+		result = result * PRIME + ($errors == null ? 43 : $errors.hashCode());
+		return result;
+	}
+
+	protected boolean canEqual(Object other) {
+		return other instanceof BulkItemRepresentation;
+	}
+
+	public static class BulkItemRepresentationBuilder {
+		private ArrayList<Link> links;
+		private int index;
+		private int status;
+		private String entityId;
+		private String eTag;
+		private ArrayList<ValidationEntryRepresentation> errors;
+
+		BulkItemRepresentationBuilder() {
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder link(Link link) {
+			if (this.links == null) this.links = new ArrayList<Link>();
+			this.links.add(link);
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder index(int index) {
+			this.index = index;
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder status(int status) {
+			this.status = status;
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder entityId(String entityId) {
+			this.entityId = entityId;
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder eTag(String eTag) {
+			this.eTag = eTag;
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder error(ValidationEntryRepresentation error) {
+			if (this.errors == null) this.errors = new ArrayList<ValidationEntryRepresentation>();
+			this.errors.add(error);
+			return this;
+		}
+
+		public BulkItemRepresentation.BulkItemRepresentationBuilder errors(Collection<? extends ValidationEntryRepresentation> errors) {
+			if (this.errors == null) this.errors = new ArrayList<ValidationEntryRepresentation>();
+			this.errors.addAll(errors);
+			return this;
+		}
+
+		public BulkItemRepresentation build() {
+			List<Link> links;
+			switch (this.links == null ? 0 : this.links.size()) {
+				case 0:
+					links = java.util.Collections.emptyList();
+					break;
+				case 1:
+					links = java.util.Collections.singletonList(this.links.get(0));
+					break;
+				default:
+					links = java.util.Collections.unmodifiableList(new ArrayList<Link>(this.links));
+			}
+			List<ValidationEntryRepresentation> errors;
+			switch (this.errors == null ? 0 : this.errors.size()) {
+				case 0:
+					errors = java.util.Collections.emptyList();
+					break;
+				case 1:
+					errors = java.util.Collections.singletonList(this.errors.get(0));
+					break;
+				default:
+					errors = java.util.Collections.unmodifiableList(new ArrayList<ValidationEntryRepresentation>(this.errors));
+			}
+
+			return new BulkItemRepresentation(links, index, status, entityId, eTag, errors);
+		}
+
+		public String toString() {
+			return "BulkItemRepresentation.BulkItemRepresentationBuilder(links=" + this.links + ", index=" + this.index + ", status=" + this.status + ", entityId=" + this.entityId + ", eTag=" + this.eTag + ", errors=" + this.errors + ")";
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package de.otto.prototype.controller.representation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class BulkRepresentation {
+
+	private final Integer succeeded;
+
+	private final Integer failed;
+
+	@JsonProperty("content")
+	private final List<BulkItemRepresentation> items;
+
+	@java.beans.ConstructorProperties({"succeeded", "failed", "items"})
+	BulkRepresentation(Integer succeeded, Integer failed, List<BulkItemRepresentation> items) {
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.items = items;
+	}
+
+	public static BulkRepresentationBuilder builder() {
+		return new BulkRepresentationBuilder();
+	}
+
+	public Integer getSucceeded() {
+		return this.succeeded;
+	}
+
+	public Integer getFailed() {
+		return this.failed;
+	}
+
+	public List<BulkItemRepresentation> getItems() {
+		return this.items;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof BulkRepresentation)) return false;
+		final BulkRepresentation other = (BulkRepresentation) o;
+		final Object this$succeeded = this.getSucceeded();
+		final Object other$succeeded = other.getSucceeded();
+		if (this$succeeded == null ? other$succeeded != null : !this$succeeded.equals(other$succeeded)) return false;
+		final Object this$failed = this.getFailed();
+		final Object other$failed = other.getFailed();
+		if (this$failed == null ? other$failed != null : !this$failed.equals(other$failed)) return false;
+		final Object this$items = this.getItems();
+		final Object other$items = other.getItems();
+		return this$items == null ? other$items == null : this$items.equals(other$items);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		final Object $succeeded = this.getSucceeded();
+		result = result * PRIME + ($succeeded == null ? 43 : $succeeded.hashCode());
+		final Object $failed = this.getFailed();
+		result = result * PRIME + ($failed == null ? 43 : $failed.hashCode());
+		final Object $items = this.getItems();
+		result = result * PRIME + ($items == null ? 43 : $items.hashCode());
+		return result;
+	}
+
+	public String toString() {
+		return "BulkRepresentation(succeeded=" + this.getSucceeded() + ", failed=" + this.getFailed() + ", items=" + this.getItems() + ")";
+	}
+
+	public static class BulkRepresentationBuilder {
+		private Integer succeeded;
+		private Integer failed;
+		private ArrayList<BulkItemRepresentation> items;
+
+		BulkRepresentationBuilder() {
+		}
+
+		public BulkRepresentation.BulkRepresentationBuilder succeeded(Integer succeeded) {
+			this.succeeded = succeeded;
+			return this;
+		}
+
+		public BulkRepresentation.BulkRepresentationBuilder failed(Integer failed) {
+			this.failed = failed;
+			return this;
+		}
+
+		public BulkRepresentation.BulkRepresentationBuilder item(BulkItemRepresentation item) {
+			if (this.items == null) this.items = new ArrayList<BulkItemRepresentation>();
+			this.items.add(item);
+			return this;
+		}
+
+		public BulkRepresentation.BulkRepresentationBuilder items(Collection<? extends BulkItemRepresentation> items) {
+			if (this.items == null) this.items = new ArrayList<BulkItemRepresentation>();
+			this.items.addAll(items);
+			return this;
+		}
+
+		public BulkRepresentation build() {
+			List<BulkItemRepresentation> items;
+			switch (this.items == null ? 0 : this.items.size()) {
+				case 0:
+					items = java.util.Collections.emptyList();
+					break;
+				case 1:
+					items = java.util.Collections.singletonList(this.items.get(0));
+					break;
+				default:
+					items = java.util.Collections.unmodifiableList(new ArrayList<BulkItemRepresentation>(this.items));
+			}
+
+			return new BulkRepresentation(succeeded, failed, items);
+		}
+
+		public String toString() {
+			return "BulkRepresentation.BulkRepresentationBuilder(succeeded=" + this.succeeded + ", failed=" + this.failed + ", items=" + this.items + ")";
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package de.otto.prototype.controller.representation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * List envelope whose entries are serialized one by one while the underlying stream is consumed,
+ * so a list is never held in memory as a whole. The stream is closed once it has been written.
+ */
+public class StreamingListRepresentation<T> extends ResourceSupport {
+
+	private final List<Link> links;
+
+	private final Long total;
+
+	@JsonSerialize(using = ContentSerializer.class)
+	private final Stream<T> content;
+
+	@java.beans.ConstructorProperties({"links", "total", "content"})
+	StreamingListRepresentation(List<Link> links, Long total, Stream<T> content) {
+		this.links = links;
+		this.total = total;
+		this.content = content;
+	}
+
+	public static <T> StreamingListRepresentationBuilder<T> builder() {
+		return new StreamingListRepresentationBuilder<T>();
+	}
+
+	public List<Link> getLinks() {
+		return this.links;
+	}
+
+	public Long getTotal() {
+		return this.total;
+	}
+
+	public Stream<T> getContent() {
+		return this.content;
+	}
+
+	public String toString() {
+		return "StreamingListRepresentation(links=" + this.getLinks() + ", total=" + this.getTotal() + ")";
+	}
+
+	static class ContentSerializer extends StdSerializer<Stream<?>> {
+
+		ContentSerializer() {
+			super(Stream.class, false);
+		}
+
+		@Override
+		public void serialize(final Stream<?> content, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+			generator.writeStartArray();
+			try (Stream<?> entries = content) {
+				final Iterator<?> iterator = entries.iterator();
+				while (iterator.hasNext())
+					provider.defaultSerializeValue(iterator.next(), generator);
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	public static class StreamingListRepresentationBuilder<T> {
+		private ArrayList<Link> links;
+		private Long total;
+		private Stream<T> content;
+
+		StreamingListRepresentationBuilder() {
+		}
+
+		public StreamingListRepresentation.StreamingListRepresentationBuilder<T> link(Link link) {
+			if (this.links == null) this.links = new ArrayList<Link>();
+			this.links.add(link);
+			return this;
+		}
+
+		public StreamingListRepresentation.StreamingListRepresentationBuilder<T> links(Collection<? extends Link> links) {
+			if (this.links == null) this.links = new ArrayList<Link>();
+			this.links.addAll(links);
+			return this;
+		}
+
+		public StreamingListRepresentation.StreamingListRepresentationBuilder<T> total(Long total) {
+			this.total = total;
+			return this;
+		}
+
+		public StreamingListRepresentation.StreamingListRepresentationBuilder<T> content(Stream<T> content) {
+			this.content = content;
+			return this;
+		}
+
+		public StreamingListRepresentation<T> build() {
+			List<Link> links;
+			switch (this.links == null ? 0 : this.links.size()) {
+				case 0:
+					links = java.util.Collections.emptyList();
+					break;
+				case 1:
+					links = java.util.Collections.singletonList(this.links.get(0));
+					break;
+				default:
+					links = java.util.Collections.unmodifiableList(new ArrayList<Link>(this.links));
+			}
+
+			return new StreamingListRepresentation<T>(links, total, content);
+		}
+
+		public String toString() {
+			return "StreamingListRepresentation.StreamingListRepresentationBuilder(links=" + this.links + ", total=" + this.total + ")";
+		}
+	}
+}
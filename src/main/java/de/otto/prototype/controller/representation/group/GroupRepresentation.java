@@ -1,5 +1,6 @@
 package de.otto.prototype.controller.representation.group;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import de.otto.prototype.model.Group;
 import org.springframework.hateoas.Link;
@@ -14,12 +15,19 @@ public class GroupRepresentation extends ResourceSupport {
 	private final List<Link> links;
 
 	@JsonProperty("content")
+	@JsonIgnoreProperties("userIds")
 	private final Group group;
 
-	@java.beans.ConstructorProperties({"links", "group"})
-	GroupRepresentation(List<Link> links, Group group) {
+	/**
+	 * Size of the member list, which itself is left out and paged through separately.
+	 */
+	private final Integer memberCount;
+
+	@java.beans.ConstructorProperties({"links", "group", "memberCount"})
+	GroupRepresentation(List<Link> links, Group group, Integer memberCount) {
 		this.links = links;
 		this.group = group;
+		this.memberCount = memberCount;
 	}
 
 	public static GroupRepresentationBuilder builder() {
@@ -34,8 +42,12 @@ public class GroupRepresentation extends ResourceSupport {
 		return this.group;
 	}
 
+	public Integer getMemberCount() {
+		return this.memberCount;
+	}
+
 	public String toString() {
-		return "GroupRepresentation(links=" + this.getLinks() + ", group=" + this.getGroup() + ")";
+		return "GroupRepresentation(links=" + this.getLinks() + ", group=" + this.getGroup() + ", memberCount=" + this.getMemberCount() + ")";
 	}
 
 	public boolean equals(Object o) {
@@ -49,7 +61,10 @@ public class GroupRepresentation extends ResourceSupport {
 		if (this$links == null ? other$links != null : !this$links.equals(other$links)) return false;
 		final Object this$group = this.getGroup();
 		final Object other$group = other.getGroup();
-		return this$group == null ? other$group == null : this$group.equals(other$group);
+		if (this$group == null ? other$group != null : !this$group.equals(other$group)) return false;
+		final Object this$memberCount = this.getMemberCount();
+		final Object other$memberCount = other.getMemberCount();
+		return this$memberCount == null ? other$memberCount == null : this$memberCount.equals(other$memberCount);
 	}
 
 	public int hashCode() {
@@ -60,6 +75,8 @@ public class GroupRepresentation extends ResourceSupport {
 		result = result * PRIME + ($links == null ? 43 : $links.hashCode());
 		final Object $group = this.getGroup();
 		result = result * PRIME + ($group == null ? 43 : $group.hashCode());
+		final Object $memberCount = this.getMemberCount();
+		result = result * PRIME + ($memberCount == null ? 43 : $memberCount.hashCode());
 		return result;
 	}
 
@@ -70,6 +87,7 @@ public class GroupRepresentation extends ResourceSupport {
 	public static class GroupRepresentationBuilder {
 		private ArrayList<Link> links;
 		private Group group;
+		private Integer memberCount;
 
 		GroupRepresentationBuilder() {
 		}
@@ -98,6 +116,11 @@ public class GroupRepresentation extends ResourceSupport {
 			return this;
 		}
 
+		public GroupRepresentation.GroupRepresentationBuilder memberCount(Integer memberCount) {
+			this.memberCount = memberCount;
+			return this;
+		}
+
 		public GroupRepresentation build() {
 			List<Link> links;
 			switch (this.links == null ? 0 : this.links.size()) {
@@ -111,11 +134,11 @@ public class GroupRepresentation extends ResourceSupport {
 					links = java.util.Collections.unmodifiableList(new ArrayList<Link>(this.links));
 			}
 
-			return new GroupRepresentation(links, group);
+			return new GroupRepresentation(links, group, memberCount);
 		}
 
 		public String toString() {
-			return "GroupRepresentation.GroupRepresentationBuilder(links=" + this.links + ", group=" + this.group + ")";
+			return "GroupRepresentation.GroupRepresentationBuilder(links=" + this.links + ", group=" + this.group + ", memberCount=" + this.memberCount + ")";
 		}
 	}
 }
@@ -1,10 +1,12 @@
 package de.otto.prototype.controller.representation.user;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import de.otto.prototype.controller.UserController;
-import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,9 +27,16 @@ public class UserListEntryRepresentation extends ResourceSupport {
 		this.userListEntryContent = userListEntryContent;
 	}
 
-	public static UserListEntryRepresentation userListEntryRepresentationOf(final User user) {
+	public static UserListEntryRepresentation userListEntryRepresentationOf(final UserSummary user) {
+		return userListEntryRepresentationOf(user, linkTo(UserController.class));
+	}
+
+	/**
+	 * @param userLinks link builder for the user resource, resolved up front where no request is bound to the thread
+	 */
+	public static UserListEntryRepresentation userListEntryRepresentationOf(final UserSummary user, final ControllerLinkBuilder userLinks) {
 		return UserListEntryRepresentation.builder()
-				.link(linkTo(UserController.class).slash(user).withSelfRel())
+				.link(userLinks.slash(user).withSelfRel())
 				.userListEntryContent(UserListEntryContent.builder()
 						.id(user.getId())
 						.firstName(user.getFirstName())
@@ -79,6 +88,7 @@ public class UserListEntryRepresentation extends ResourceSupport {
 		return other instanceof UserListEntryRepresentation;
 	}
 
+	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private static class UserListEntryContent {
 
 		private final String id;
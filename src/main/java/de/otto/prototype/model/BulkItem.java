@@ -0,0 +1,80 @@
+package de.otto.prototype.model;
+
+/**
+ * Outcome of a single entity of a bulk write, identified by its position in the batch: either the stored entity
+ * or the error it was rejected with, while the other entities of the batch are written regardless.
+ */
+public class BulkItem<T> {
+
+	private final int index;
+
+	private final T entity;
+
+	private final RuntimeException error;
+
+	BulkItem(int index, T entity, RuntimeException error) {
+		this.index = index;
+		this.entity = entity;
+		this.error = error;
+	}
+
+	public static <T> BulkItem<T> succeeded(final int index, final T storedEntity) {
+		return new BulkItem<>(index, storedEntity, null);
+	}
+
+	/**
+	 * @param entity the rejected entity as given
+	 */
+	public static <T> BulkItem<T> failed(final int index, final T entity, final RuntimeException error) {
+		return new BulkItem<>(index, entity, error);
+	}
+
+	public int getIndex() {
+		return this.index;
+	}
+
+	public T getEntity() {
+		return this.entity;
+	}
+
+	public RuntimeException getError() {
+		return this.error;
+	}
+
+	public boolean isSucceeded() {
+		return this.error == null;
+	}
+
+	/**
+	 * @return the same outcome at the given position, for results of a part of a batch
+	 */
+	public BulkItem<T> at(final int index) {
+		return new BulkItem<>(index, entity, error);
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof BulkItem)) return false;
+		final BulkItem other = (BulkItem) o;
+		if (this.index != other.index) return false;
+		final Object this$entity = this.entity;
+		final Object other$entity = other.entity;
+		if (this$entity == null ? other$entity != null : !this$entity.equals(other$entity)) return false;
+		final Object this$error = this.error;
+		final Object other$error = other.error;
+		return this$error == null ? other$error == null : this$error.equals(other$error);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + this.index;
+		result = result * PRIME + (this.entity == null ? 43 : this.entity.hashCode());
+		result = result * PRIME + (this.error == null ? 43 : this.error.hashCode());
+		return result;
+	}
+
+	public String toString() {
+		return "BulkItem(index=" + this.index + ", entity=" + this.entity + ", error=" + this.error + ")";
+	}
+}
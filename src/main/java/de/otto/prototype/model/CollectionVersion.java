@@ -0,0 +1,76 @@
+package de.otto.prototype.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.hash.Hashing.sha256;
+
+/**
+ * Version of a whole collection, raised on every write to it, so a list ETag is known without reading the entities.
+ * The epoch is drawn when the document is created and keeps ETags of a recreated counter from colliding with old ones.
+ */
+@Document
+public class CollectionVersion implements Hashable {
+
+	@Id
+	private final String id;
+
+	private final String epoch;
+
+	private final long version;
+
+	@java.beans.ConstructorProperties({"id", "epoch", "version"})
+	public CollectionVersion(String id, String epoch, long version) {
+		this.id = id;
+		this.epoch = epoch;
+		this.version = version;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public String getEpoch() {
+		return this.epoch;
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	@Override
+	public String getETag() {
+		return sha256().newHasher()
+				.putString(this.id, UTF_8)
+				.putString(this.epoch, UTF_8)
+				.putLong(this.version)
+				.hash().toString();
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof CollectionVersion)) return false;
+		final CollectionVersion other = (CollectionVersion) o;
+		final Object this$id = this.id;
+		final Object other$id = other.id;
+		if (this$id == null ? other$id != null : !this$id.equals(other$id)) return false;
+		final Object this$epoch = this.epoch;
+		final Object other$epoch = other.epoch;
+		if (this$epoch == null ? other$epoch != null : !this$epoch.equals(other$epoch)) return false;
+		return this.version == other.version;
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.id == null ? 43 : this.id.hashCode());
+		result = result * PRIME + (this.epoch == null ? 43 : this.epoch.hashCode());
+		result = result * PRIME + (int) (this.version >>> 32 ^ this.version);
+		return result;
+	}
+
+	public String toString() {
+		return "CollectionVersion(id=" + this.id + ", epoch=" + this.epoch + ", version=" + this.version + ")";
+	}
+}
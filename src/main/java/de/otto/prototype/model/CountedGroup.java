@@ -0,0 +1,45 @@
+package de.otto.prototype.model;
+
+/**
+ * A group without its user ids together with the number of its members, both read by a single aggregation.
+ */
+public class CountedGroup {
+
+	private final Group group;
+
+	private final int memberCount;
+
+	@java.beans.ConstructorProperties({"group", "memberCount"})
+	public CountedGroup(Group group, int memberCount) {
+		this.group = group;
+		this.memberCount = memberCount;
+	}
+
+	public Group getGroup() {
+		return this.group;
+	}
+
+	public int getMemberCount() {
+		return this.memberCount;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof CountedGroup)) return false;
+		final CountedGroup other = (CountedGroup) o;
+		if (this.group == null ? other.group != null : !this.group.equals(other.group)) return false;
+		return this.memberCount == other.memberCount;
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.group == null ? 43 : this.group.hashCode());
+		result = result * PRIME + this.memberCount;
+		return result;
+	}
+
+	public String toString() {
+		return "CountedGroup(group=" + this.group + ", memberCount=" + this.memberCount + ")";
+	}
+}
@@ -1,8 +1,11 @@
 package de.otto.prototype.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.google.common.hash.HashFunction;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.hateoas.Identifiable;
 
@@ -15,10 +18,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static com.google.common.hash.Hashing.sha256;
-
 @Document
-public class Group implements Identifiable<String>, Hashable {
+@CompoundIndex(name = "userIds_id", def = "{ 'userIds' : 1, '_id' : 1 }")
+public class Group implements Identifiable<String>, Versioned {
 
     @Id
     @NotNull(groups = Group.Existing.class, message = "error.id.existing")
@@ -27,13 +29,19 @@ public class Group implements Identifiable<String>, Hashable {
 
     @NotEmpty(message = "error.name.empty")
     @Size(min = 3, max = 30, message = "error.name.range")
+    @Indexed(unique = true)
     private final String name;
 
     private final boolean vip;
 
     @NotEmpty(message = "error.userlist.empty")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private final List<String> userIds;
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @java.beans.ConstructorProperties({"id", "name", "vip", "userIds"})
     Group(String id, String name, boolean vip, List<String> userIds) {
         this.id = id;
@@ -46,14 +54,6 @@ public class Group implements Identifiable<String>, Hashable {
         return new GroupBuilder();
     }
 
-    @JsonIgnore
-    public String getETag() {
-        HashFunction hashFunction = sha256();
-        return hashFunction.newHasher()
-                .putObject(this, GroupFunnel.INSTANCE)
-                .hash().toString();
-    }
-
     public String getId() {
         return this.id;
     }
@@ -70,6 +70,11 @@ public class Group implements Identifiable<String>, Hashable {
         return this.userIds;
     }
 
+    @JsonIgnore
+    public Long getVersion() {
+        return this.version;
+    }
+
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof Group)) return false;
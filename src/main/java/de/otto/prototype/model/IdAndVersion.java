@@ -0,0 +1,48 @@
+package de.otto.prototype.model;
+
+import org.springframework.hateoas.Identifiable;
+
+/**
+ * Projection of a stored entity onto its id and version, enough to check a batch of entities to overwrite
+ * against the stored ones.
+ */
+public class IdAndVersion implements Identifiable<String>, Versioned {
+
+	private final String id;
+
+	private final Long version;
+
+	@java.beans.ConstructorProperties({"id", "version"})
+	public IdAndVersion(String id, Long version) {
+		this.id = id;
+		this.version = version;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof IdAndVersion)) return false;
+		final IdAndVersion other = (IdAndVersion) o;
+		if (this.id == null ? other.id != null : !this.id.equals(other.id)) return false;
+		return this.version == null ? other.version == null : this.version.equals(other.version);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.id == null ? 43 : this.id.hashCode());
+		result = result * PRIME + (this.version == null ? 43 : this.version.hashCode());
+		return result;
+	}
+
+	public String toString() {
+		return "IdAndVersion(id=" + this.id + ", version=" + this.version + ")";
+	}
+}
@@ -0,0 +1,37 @@
+package de.otto.prototype.model;
+
+import org.springframework.hateoas.Identifiable;
+
+/**
+ * Projection of a stored entity onto its id. Repositories return it from queries that only need to know
+ * which entity matches, so no other field is transferred or mapped.
+ */
+public class IdOnly implements Identifiable<String> {
+
+	private final String id;
+
+	@java.beans.ConstructorProperties({"id"})
+	public IdOnly(String id) {
+		this.id = id;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof IdOnly)) return false;
+		final IdOnly other = (IdOnly) o;
+		return this.id == null ? other.id == null : this.id.equals(other.id);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		return PRIME + (this.id == null ? 43 : this.id.hashCode());
+	}
+
+	public String toString() {
+		return "IdOnly(id=" + this.id + ")";
+	}
+}
@@ -0,0 +1,99 @@
+package de.otto.prototype.model;
+
+import org.springframework.hateoas.Identifiable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A page of entities cut out of a collection by an id range instead of an offset.
+ * Repositories fetch one entity more than requested, so the existence of a following page is known without a count.
+ */
+public class KeysetPage<T extends Identifiable<String>> {
+
+	private final List<T> content;
+
+	private final boolean hasPrev;
+
+	private final boolean hasNext;
+
+	KeysetPage(List<T> content, boolean hasPrev, boolean hasNext) {
+		this.content = content;
+		this.hasPrev = hasPrev;
+		this.hasNext = hasNext;
+	}
+
+	/**
+	 * @param fetched   up to limit + 1 entities with an id greater than the cursor, ascending
+	 * @param limit     requested page size
+	 * @param hasCursor whether the page starts after a given id
+	 */
+	public static <T extends Identifiable<String>> KeysetPage<T> forward(final List<T> fetched, final int limit, final boolean hasCursor) {
+		final boolean hasNext = fetched.size() > limit;
+		final List<T> content = hasNext ? fetched.subList(0, limit) : fetched;
+		return new KeysetPage<>(Collections.unmodifiableList(new ArrayList<>(content)), hasCursor, hasNext);
+	}
+
+	/**
+	 * @param fetched     up to limit + 1 entities with an id less than the cursor, descending
+	 * @param limit       requested page size
+	 * @param existsAfter whether an entity with an id greater than the given last id of the page exists, as the cursor
+	 *                    itself may have been deleted meanwhile
+	 */
+	public static <T extends Identifiable<String>> KeysetPage<T> backward(final List<T> fetched, final int limit,
+																		  final Predicate<String> existsAfter) {
+		final boolean hasPrev = fetched.size() > limit;
+		final List<T> content = new ArrayList<>(hasPrev ? fetched.subList(0, limit) : fetched);
+		Collections.reverse(content);
+		final boolean hasNext = !content.isEmpty() && existsAfter.test(content.get(content.size() - 1).getId());
+		return new KeysetPage<>(Collections.unmodifiableList(content), hasPrev, hasNext);
+	}
+
+	public List<T> getContent() {
+		return this.content;
+	}
+
+	public boolean hasPrev() {
+		return this.hasPrev;
+	}
+
+	public boolean hasNext() {
+		return this.hasNext;
+	}
+
+	public boolean isEmpty() {
+		return this.content.isEmpty();
+	}
+
+	public String getFirstId() {
+		return this.content.get(0).getId();
+	}
+
+	public String getLastId() {
+		return this.content.get(this.content.size() - 1).getId();
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof KeysetPage)) return false;
+		final KeysetPage other = (KeysetPage) o;
+		if (this.hasPrev() != other.hasPrev()) return false;
+		if (this.hasNext() != other.hasNext()) return false;
+		return this.getContent().equals(other.getContent());
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + this.getContent().hashCode();
+		result = result * PRIME + (this.hasPrev() ? 79 : 97);
+		result = result * PRIME + (this.hasNext() ? 79 : 97);
+		return result;
+	}
+
+	public String toString() {
+		return "KeysetPage(content=" + this.getContent() + ", hasPrev=" + this.hasPrev() + ", hasNext=" + this.hasNext() + ")";
+	}
+}
@@ -0,0 +1,62 @@
+package de.otto.prototype.model;
+
+import java.util.Optional;
+
+/**
+ * Ids of the entities surrounding a given one in id order, used to render start, prev and next links
+ * without loading the whole collection.
+ */
+public class Neighbours {
+
+	private final String firstId;
+
+	private final String prevId;
+
+	private final String nextId;
+
+	public Neighbours(String firstId, String prevId, String nextId) {
+		this.firstId = firstId;
+		this.prevId = prevId;
+		this.nextId = nextId;
+	}
+
+	public String getFirstId() {
+		return this.firstId;
+	}
+
+	public Optional<String> getPrevId() {
+		return Optional.ofNullable(this.prevId);
+	}
+
+	public Optional<String> getNextId() {
+		return Optional.ofNullable(this.nextId);
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof Neighbours)) return false;
+		final Neighbours other = (Neighbours) o;
+		final Object this$firstId = this.firstId;
+		final Object other$firstId = other.firstId;
+		if (this$firstId == null ? other$firstId != null : !this$firstId.equals(other$firstId)) return false;
+		final Object this$prevId = this.prevId;
+		final Object other$prevId = other.prevId;
+		if (this$prevId == null ? other$prevId != null : !this$prevId.equals(other$prevId)) return false;
+		final Object this$nextId = this.nextId;
+		final Object other$nextId = other.nextId;
+		return this$nextId == null ? other$nextId == null : this$nextId.equals(other$nextId);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.firstId == null ? 43 : this.firstId.hashCode());
+		result = result * PRIME + (this.prevId == null ? 43 : this.prevId.hashCode());
+		result = result * PRIME + (this.nextId == null ? 43 : this.nextId.hashCode());
+		return result;
+	}
+
+	public String toString() {
+		return "Neighbours(firstId=" + this.firstId + ", prevId=" + this.prevId + ", nextId=" + this.nextId + ")";
+	}
+}
@@ -1,9 +1,10 @@
 package de.otto.prototype.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.google.common.hash.HashFunction;
 import org.hibernate.validator.constraints.SafeHtml;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.hateoas.Identifiable;
 
@@ -15,7 +16,8 @@ import static com.google.common.hash.Hashing.sha256;
 import static org.hibernate.validator.constraints.SafeHtml.WhiteListType.NONE;
 
 @Document
-public class User implements Identifiable<String>, Hashable {
+@CompoundIndex(name = "contentHash", def = "{ 'contentHash' : 1 }")
+public class User implements Identifiable<String>, Versioned {
 
     private static final int AGE_YOUNGEST = 18;
     private static final int AGE_OLDEST = 150;
@@ -49,6 +51,10 @@ public class User implements Identifiable<String>, Hashable {
 	@SafeHtml(whitelistType = NONE, message = "error.bio.invalid")
 	private final String bio;
 
+	@Version
+	@JsonIgnore
+	private Long version;
+
 	@java.beans.ConstructorProperties({"id", "firstName", "secondName", "lastName", "age", "vip", "login", "bio"})
 	User(String id, String firstName, String secondName, String lastName, int age, boolean vip, Login login, String bio) {
 		this.id = id;
@@ -65,14 +71,21 @@ public class User implements Identifiable<String>, Hashable {
 		return new UserBuilder();
 	}
 
+	/**
+	 * Hash over all fields but the id, identical for all users sharing the same data.
+	 */
 	@JsonIgnore
-	public String getETag() {
-		HashFunction hashFunction = sha256();
-		return hashFunction.newHasher()
-				.putObject(this, UserFunnel.INSTANCE)
+	public String getContentHash() {
+		return sha256().newHasher()
+				.putObject(toBuilder().id("").build(), UserFunnel.INSTANCE)
 				.hash().toString();
 	}
 
+	@JsonIgnore
+	public Long getVersion() {
+		return this.version;
+	}
+
 	public String getId() {
 		return this.id;
 	}
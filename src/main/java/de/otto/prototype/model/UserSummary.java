@@ -0,0 +1,78 @@
+package de.otto.prototype.model;
+
+import org.springframework.hateoas.Identifiable;
+
+/**
+ * Projection of a stored user onto the fields shown in a user list, leaving login and bio in the database.
+ * The version is only read where the ETag of a list is derived from it.
+ */
+public class UserSummary implements Identifiable<String>, Versioned {
+
+	private final String id;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final Long version;
+
+	@java.beans.ConstructorProperties({"id", "firstName", "lastName", "version"})
+	public UserSummary(String id, String firstName, String lastName, Long version) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.version = version;
+	}
+
+	public static UserSummary summaryOf(final User user) {
+		return new UserSummary(user.getId(), user.getFirstName(), user.getLastName(), user.getVersion());
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof UserSummary)) return false;
+		final UserSummary other = (UserSummary) o;
+		final Object this$id = this.id;
+		final Object other$id = other.id;
+		if (this$id == null ? other$id != null : !this$id.equals(other$id)) return false;
+		final Object this$firstName = this.firstName;
+		final Object other$firstName = other.firstName;
+		if (this$firstName == null ? other$firstName != null : !this$firstName.equals(other$firstName)) return false;
+		final Object this$lastName = this.lastName;
+		final Object other$lastName = other.lastName;
+		if (this$lastName == null ? other$lastName != null : !this$lastName.equals(other$lastName)) return false;
+		final Object this$version = this.version;
+		final Object other$version = other.version;
+		return this$version == null ? other$version == null : this$version.equals(other$version);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.id == null ? 43 : this.id.hashCode());
+		result = result * PRIME + (this.firstName == null ? 43 : this.firstName.hashCode());
+		result = result * PRIME + (this.lastName == null ? 43 : this.lastName.hashCode());
+		result = result * PRIME + (this.version == null ? 43 : this.version.hashCode());
+		return result;
+	}
+
+	public String toString() {
+		return "UserSummary(id=" + this.id + ", firstName=" + this.firstName + ", lastName=" + this.lastName + ", version=" + this.version + ")";
+	}
+}
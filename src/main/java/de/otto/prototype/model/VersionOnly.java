@@ -0,0 +1,34 @@
+package de.otto.prototype.model;
+
+/**
+ * Projection of a stored entity onto its version, enough to answer a conditional request.
+ */
+public class VersionOnly implements Versioned {
+
+	private final Long version;
+
+	@java.beans.ConstructorProperties({"version"})
+	public VersionOnly(Long version) {
+		this.version = version;
+	}
+
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof VersionOnly)) return false;
+		final VersionOnly other = (VersionOnly) o;
+		return this.version == null ? other.version == null : this.version.equals(other.version);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		return PRIME + (this.version == null ? 43 : this.version.hashCode());
+	}
+
+	public String toString() {
+		return "VersionOnly(version=" + this.version + ")";
+	}
+}
@@ -0,0 +1,42 @@
+package de.otto.prototype.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import static com.google.common.base.CharMatcher.is;
+
+/**
+ * Entity carrying a version that the database raises on every write. Its ETag is derived from the version alone,
+ * weak because the links of a representation may change while the entity does not.
+ */
+public interface Versioned extends Hashable {
+
+	/**
+	 * Version matching no stored entity, used for ETags that have not been issued by {@link #getETag()}.
+	 */
+	long UNKNOWN_VERSION = -1;
+
+	@JsonIgnore
+	Long getVersion();
+
+	/**
+	 * @return the version as weak ETag, documents stored before versioning count as version 0
+	 */
+	@Override
+	@JsonIgnore
+	default String getETag() {
+		return "W/\"" + (getVersion() == null ? 0 : getVersion()) + "\"";
+	}
+
+	/**
+	 * @param eTag weak, strong or unquoted ETag
+	 * @return the version it was derived from, {@link #UNKNOWN_VERSION} if it is none of ours
+	 */
+	static long versionOf(final String eTag) {
+		final String version = is('"').trimFrom(eTag.startsWith("W/") ? eTag.substring(2) : eTag);
+		try {
+			return Long.parseLong(version);
+		} catch (NumberFormatException e) {
+			return UNKNOWN_VERSION;
+		}
+	}
+}
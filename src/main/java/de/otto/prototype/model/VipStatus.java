@@ -0,0 +1,47 @@
+package de.otto.prototype.model;
+
+import org.springframework.hateoas.Identifiable;
+
+/**
+ * Projection of a stored user onto its id and vip flag, which is all a group needs to validate its members.
+ */
+public class VipStatus implements Identifiable<String> {
+
+	private final String id;
+
+	private final boolean vip;
+
+	@java.beans.ConstructorProperties({"id", "vip"})
+	public VipStatus(String id, boolean vip) {
+		this.id = id;
+		this.vip = vip;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public boolean isVip() {
+		return this.vip;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof VipStatus)) return false;
+		final VipStatus other = (VipStatus) o;
+		if (this.vip != other.vip) return false;
+		return this.id == null ? other.id == null : this.id.equals(other.id);
+	}
+
+	public int hashCode() {
+		final int PRIME = 59;
+		int result = 1;
+		result = result * PRIME + (this.id == null ? 43 : this.id.hashCode());
+		result = result * PRIME + (this.vip ? 79 : 97);
+		return result;
+	}
+
+	public String toString() {
+		return "VipStatus(id=" + this.id + ", vip=" + this.vip + ")";
+	}
+}
@@ -0,0 +1,203 @@
+package de.otto.prototype.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.Versioned;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.hateoas.Identifiable;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
+import static de.otto.prototype.repository.ConditionalUpdateRepository.updateOf;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Writes a batch of entities with a single unordered bulk write, so a rejected entity does not stop the others.
+ * It publishes the same mapping events ahead of the write as a save, so the listeners add the content hash,
+ * but raises the version of the collection once for the whole batch instead of once per entity.
+ */
+@Repository
+public class BulkWriteRepository {
+
+	private static final String ID = "_id";
+
+	private static final int DUPLICATE_KEY = 11000;
+
+	private final MongoTemplate mongoTemplate;
+
+	private final CollectionVersionRepository collectionVersionRepository;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	public BulkWriteRepository(final MongoTemplate mongoTemplate, final CollectionVersionRepository collectionVersionRepository,
+							   final ApplicationEventPublisher eventPublisher) {
+		this.mongoTemplate = mongoTemplate;
+		this.collectionVersionRepository = collectionVersionRepository;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Inserts the entities without id and overwrites the stored ones with the ids of the others regardless of their
+	 * version, see {@link #writeAll(List, Map, Class)}.
+	 */
+	public <T extends Identifiable<String> & Versioned> List<BulkItem<T>> writeAll(final List<T> entities, final Class<T> entityClass) {
+		return writeAll(entities, Collections.emptyMap(), entityClass);
+	}
+
+	/**
+	 * Inserts the entities without id and overwrites the stored ones with the ids of the others, as a save would do.
+	 * An entity with an expected version only overwrites the stored one if its version still matches, checked by the
+	 * database as part of the write. The bulk write only tells how many updates matched, not which ones, so the
+	 * versions of the updated entities are read back with one query if fewer matched than were sent or if any of
+	 * them had no expected version.
+	 *
+	 * @param expectedVersions versions the stored entities must have by their id, any for the ids left out or mapped to null
+	 * @return the outcome of every entity in the given order, the inserted ones with their new id and initial version,
+	 * the overwritten ones with their raised version. An overwritten entity fails with an
+	 * {@link EmptyResultDataAccessException} if it does not exist and an {@link OptimisticLockingFailureException}
+	 * if its version differs.
+	 */
+	public <T extends Identifiable<String> & Versioned> List<BulkItem<T>> writeAll(final List<T> entities, final Map<String, Long> expectedVersions,
+																				   final Class<T> entityClass) {
+		if (entities.isEmpty())
+			return Collections.emptyList();
+		final String collectionName = mongoTemplate.getCollectionName(entityClass);
+		final MongoPersistentEntity<?> persistentEntity =
+				mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+		final String versionField = persistentEntity.getRequiredVersionProperty().getFieldName();
+		final List<Document> documents = new ArrayList<>();
+		final List<WriteModel<Document>> writes = new ArrayList<>();
+		for (final T entity : entities) {
+			eventPublisher.publishEvent(new BeforeConvertEvent<>(entity, collectionName));
+			final Document document = new Document();
+			mongoTemplate.getConverter().write(entity, document);
+			if (entity.getId() == null) {
+				document.put(ID, new ObjectId());
+				document.put(versionField, 0L);
+			}
+			eventPublisher.publishEvent(new BeforeSaveEvent<>(entity, document, collectionName));
+			documents.add(document);
+			if (entity.getId() == null) {
+				writes.add(new InsertOneModel<>(document));
+			} else {
+				final Document filter = new Document(ID, document.remove(ID));
+				final Long expectedVersion = expectedVersions.get(entity.getId());
+				if (expectedVersion != null)
+					filter.append(versionField, expectedVersion);
+				document.remove(versionField);
+				writes.add(new UpdateOneModel<>(filter, updateOf(persistentEntity, document, versionField, null)));
+				document.put(ID, filter.get(ID));
+			}
+		}
+		final BulkWriteOutcome outcome = bulkWrite(collectionName, writes);
+
+		final List<Integer> updates = IntStream.range(0, entities.size())
+				.filter(index -> entities.get(index).getId() != null && !outcome.writeErrors.containsKey(index))
+				.boxed().collect(toList());
+		final boolean allUpdatesMatched = outcome.matchedCount == updates.size()
+				&& updates.stream().allMatch(index -> expectedVersions.get(entities.get(index).getId()) != null);
+		final Map<Object, Long> storedVersions = allUpdatesMatched
+				? Collections.emptyMap()
+				: findVersions(collectionName, versionField, updates.stream().map(index -> documents.get(index).get(ID)).collect(toList()));
+
+		final List<BulkItem<T>> items = new ArrayList<>();
+		for (int index = 0; index < entities.size(); index++) {
+			final T entity = entities.get(index);
+			final Document document = documents.get(index);
+			final BulkWriteError writeError = outcome.writeErrors.get(index);
+			if (writeError != null) {
+				items.add(BulkItem.failed(index, entity, exceptionOf(writeError)));
+				continue;
+			}
+			if (entity.getId() != null) {
+				final Long expectedVersion = expectedVersions.get(entity.getId());
+				final Long storedVersion = allUpdatesMatched ? Long.valueOf(expectedVersion + 1) : storedVersions.get(document.get(ID));
+				if (storedVersion == null) {
+					items.add(BulkItem.failed(index, entity, new EmptyResultDataAccessException("no stored entity with id " + entity.getId(), 1)));
+					continue;
+				}
+				if (expectedVersion != null && storedVersion != expectedVersion + 1) {
+					items.add(BulkItem.failed(index, entity, new OptimisticLockingFailureException(
+							"stored entity with id " + entity.getId() + " is no longer at version " + expectedVersion)));
+					continue;
+				}
+				document.put(versionField, storedVersion);
+			}
+			items.add(BulkItem.succeeded(index, mongoTemplate.getConverter().read(entityClass, document)));
+		}
+		if (items.stream().anyMatch(BulkItem::isSucceeded))
+			collectionVersionRepository.increment(entityClass);
+		return items;
+	}
+
+	private BulkWriteOutcome bulkWrite(final String collectionName, final List<WriteModel<Document>> writes) {
+		return mongoTemplate.execute(collectionName, collection -> {
+			try {
+				return new BulkWriteOutcome(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)), Collections.emptyList());
+			} catch (MongoBulkWriteException e) {
+				return new BulkWriteOutcome(e.getWriteResult(), e.getWriteErrors());
+			}
+		});
+	}
+
+	/**
+	 * @return the stored versions by id, documents stored before versioning count as version 0
+	 */
+	private Map<Object, Long> findVersions(final String collectionName, final String versionField, final List<Object> ids) {
+		if (ids.isEmpty())
+			return Collections.emptyMap();
+		return mongoTemplate.execute(collectionName, collection -> collection.find(in(ID, ids)).projection(include(versionField))
+				.into(new ArrayList<>()).stream()
+				.collect(toMap(document -> document.get(ID), document -> document.get(versionField) == null
+						? 0L
+						: ((Number) document.get(versionField)).longValue())));
+	}
+
+	private static RuntimeException exceptionOf(final BulkWriteError writeError) {
+		return writeError.getCode() == DUPLICATE_KEY
+				? new DuplicateKeyException(writeError.getMessage())
+				: new DataIntegrityViolationException(writeError.getMessage());
+	}
+
+	/**
+	 * Rejected writes by their position in the batch and the number of updates that matched a stored document.
+	 */
+	private static final class BulkWriteOutcome {
+
+		private final Map<Integer, BulkWriteError> writeErrors;
+
+		private final int matchedCount;
+
+		private BulkWriteOutcome(final BulkWriteResult result, final List<BulkWriteError> writeErrors) {
+			this.writeErrors = writeErrors.stream().collect(toMap(BulkWriteError::getIndex, identity()));
+			this.matchedCount = result != null && result.wasAcknowledged() ? result.getMatchedCount() : -1;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.Hashable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Raises the version of a collection after any of its entities got saved or deleted,
+ * so the version also follows writes bypassing the services.
+ */
+@Component
+public class CollectionVersionListener extends AbstractMongoEventListener<Hashable> {
+
+	private final CollectionVersionRepository collectionVersionRepository;
+
+	@Autowired
+	public CollectionVersionListener(final CollectionVersionRepository collectionVersionRepository) {
+		this.collectionVersionRepository = collectionVersionRepository;
+	}
+
+	@Override
+	public void onAfterSave(final AfterSaveEvent<Hashable> event) {
+		collectionVersionRepository.increment(event.getSource().getClass());
+	}
+
+	@Override
+	public void onAfterDelete(final AfterDeleteEvent<Hashable> event) {
+		collectionVersionRepository.increment(event.getType());
+	}
+}
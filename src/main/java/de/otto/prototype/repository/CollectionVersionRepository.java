@@ -0,0 +1,44 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.CollectionVersion;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps one {@link CollectionVersion} per entity collection, raised atomically on the database.
+ */
+@Repository
+public class CollectionVersionRepository {
+
+	static final String EPOCH = "epoch";
+
+	static final String VERSION = "version";
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public CollectionVersionRepository(final MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	public CollectionVersion find(final Class<?> entityClass) {
+		final CollectionVersion collectionVersion =
+				mongoTemplate.findById(mongoTemplate.getCollectionName(entityClass), CollectionVersion.class);
+		return collectionVersion != null ? collectionVersion : increment(entityClass);
+	}
+
+	public CollectionVersion increment(final Class<?> entityClass) {
+		return mongoTemplate.findAndModify(
+				query(where("id").is(mongoTemplate.getCollectionName(entityClass))),
+				new Update().inc(VERSION, 1L).setOnInsert(EPOCH, new ObjectId().toHexString()),
+				options().upsert(true).returnNew(true),
+				CollectionVersion.class);
+	}
+}
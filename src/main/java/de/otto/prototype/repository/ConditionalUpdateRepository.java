@@ -0,0 +1,106 @@
+package de.otto.prototype.repository;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import de.otto.prototype.model.Versioned;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.hateoas.Identifiable;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static com.mongodb.client.model.ReturnDocument.AFTER;
+
+/**
+ * Overwrites stored entities only if their stored version still matches, checked, written and raised by the
+ * database in one step. It publishes the same mapping events as a save, so the listeners keep the content hash
+ * and the collection version up to date.
+ */
+@Repository
+public class ConditionalUpdateRepository {
+
+	private static final String ID = "_id";
+
+	private final MongoTemplate mongoTemplate;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	public ConditionalUpdateRepository(final MongoTemplate mongoTemplate, final ApplicationEventPublisher eventPublisher) {
+		this.mongoTemplate = mongoTemplate;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * @param entity          entity with the id of the document to overwrite
+	 * @param expectedVersion version the stored document must have, any if null
+	 * @return the stored entity with its raised version, empty if it does not exist or its version differs
+	 */
+	public <T extends Identifiable<String> & Versioned> Optional<T> update(final T entity, final Long expectedVersion) {
+		return update(entity, expectedVersion, null);
+	}
+
+	/**
+	 * Writes only the given properties and the fields added by the listeners, such as the content hash,
+	 * all other fields are left as stored.
+	 *
+	 * @param entity          entity with the id of the document to update
+	 * @param expectedVersion version the stored document must have, any if null
+	 * @param properties      names of the properties to write, all if null
+	 * @return the stored entity with its raised version, empty if it does not exist or its version differs
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Identifiable<String> & Versioned> Optional<T> update(final T entity, final Long expectedVersion,
+																		   final Set<String> properties) {
+		final Class<T> entityClass = (Class<T>) entity.getClass();
+		final MongoPersistentEntity<?> persistentEntity =
+				mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+		final String collectionName = mongoTemplate.getCollectionName(entityClass);
+		eventPublisher.publishEvent(new BeforeConvertEvent<>(entity, collectionName));
+		final Document document = new Document();
+		mongoTemplate.getConverter().write(entity, document);
+		eventPublisher.publishEvent(new BeforeSaveEvent<>(entity, document, collectionName));
+
+		final String versionField = persistentEntity.getRequiredVersionProperty().getFieldName();
+		final Document filter = new Document(ID, document.remove(ID));
+		if (expectedVersion != null)
+			filter.append(versionField, expectedVersion);
+		document.remove(versionField);
+		final Document storedDocument = mongoTemplate.execute(collectionName, collection -> collection.findOneAndUpdate(filter,
+				updateOf(persistentEntity, document, versionField, properties), new FindOneAndUpdateOptions().returnDocument(AFTER)));
+		if (storedDocument == null)
+			return Optional.empty();
+
+		final T storedEntity = mongoTemplate.getConverter().read(entityClass, storedDocument);
+		eventPublisher.publishEvent(new AfterSaveEvent<>(storedEntity, storedDocument, collectionName));
+		return Optional.of(storedEntity);
+	}
+
+	/**
+	 * Sets every written field of the given properties and removes the ones left out for being null, as a replacement would do.
+	 */
+	static Document updateOf(final MongoPersistentEntity<?> persistentEntity, final Document document, final String versionField,
+									 final Set<String> properties) {
+		final Document set = new Document(document);
+		final Document unset = new Document();
+		persistentEntity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+			if (property.isIdProperty() || property.isVersionProperty())
+				return;
+			if (properties != null && !properties.contains(property.getName()))
+				set.remove(property.getFieldName());
+			else if (!document.containsKey(property.getFieldName()))
+				unset.append(property.getFieldName(), "");
+		});
+		final Document update = new Document("$set", set).append("$inc", new Document(versionField, 1L));
+		return unset.isEmpty() ? update : update.append("$unset", unset);
+	}
+}
@@ -0,0 +1,79 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.Streams;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Streams whole collections in the order of their ids from a single cursor, which fetches a batch of entities per
+ * round trip, so an export holds one batch in memory regardless of the size of the collection.
+ */
+@Repository
+public class ExportRepository {
+
+	private static final String ID = "_id";
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public ExportRepository(final MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/**
+	 * Properties left out are not read, as far as the entity can be built without them, so the id and primitive
+	 * properties are always read. The stream holds the cursor and must be closed.
+	 *
+	 * @param after        the id to resume after, from the first entity on if null
+	 * @param properties   the properties to read, all if empty
+	 * @param hiddenFields the fields never to read, as dotted paths
+	 * @param batchSize    the number of entities fetched per round trip
+	 */
+	public <T> Stream<T> streamAll(final Class<T> entityClass, final String after, final Set<String> properties,
+								   final Set<String> hiddenFields, final int batchSize) {
+		final MongoPersistentEntity<?> persistentEntity =
+				mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+		final Document filter = isNullOrEmpty(after)
+				? new Document()
+				: new Document(ID, new Document("$gt", new QueryMapper(mongoTemplate.getConverter()).convertId(after)));
+		final Document projection = projectionOf(persistentEntity, properties, hiddenFields);
+
+		final MongoCursor<Document> cursor = mongoTemplate.execute(entityClass, collection -> collection.find(filter)
+				.projection(projection)
+				.sort(new Document(ID, 1))
+				.batchSize(batchSize)
+				.iterator());
+		return Streams.stream(cursor)
+				.onClose(cursor::close)
+				.map(document -> mongoTemplate.getConverter().read(entityClass, document));
+	}
+
+	/**
+	 * Excludes rather than includes the fields, as the hidden ones may be part of a read property.
+	 */
+	private static Document projectionOf(final MongoPersistentEntity<?> persistentEntity, final Set<String> properties,
+										 final Set<String> hiddenFields) {
+		final Document projection = new Document();
+		persistentEntity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+			if (properties.isEmpty() || properties.contains(property.getName()) || property.isIdProperty() || property.getType().isPrimitive())
+				return;
+			projection.append(property.getFieldName(), 0);
+		});
+		hiddenFields.stream()
+				.filter(field -> !projection.containsKey(field.split("\\.")[0]))
+				.forEach(field -> projection.append(field, 0));
+		return projection;
+	}
+}
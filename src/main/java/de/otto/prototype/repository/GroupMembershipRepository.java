@@ -0,0 +1,168 @@
+package de.otto.prototype.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import de.otto.prototype.model.CountedGroup;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.VersionOnly;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static de.otto.prototype.repository.VersionInitializer.VERSION;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.ROOT;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Changes the members of a group in place, so large groups are never read or rewritten as a whole.
+ * Every change raises the version of the group and of its collection, as a save would do.
+ */
+@Repository
+public class GroupMembershipRepository {
+
+	static final String USER_IDS = "userIds";
+
+	static final String VIP = "vip";
+
+	static final String MEMBER_COUNT = "memberCount";
+
+	static final String GROUP = "group";
+
+	private final MongoTemplate mongoTemplate;
+
+	private final CollectionVersionRepository collectionVersionRepository;
+
+	@Autowired
+	public GroupMembershipRepository(final MongoTemplate mongoTemplate, final CollectionVersionRepository collectionVersionRepository) {
+		this.mongoTemplate = mongoTemplate;
+		this.collectionVersionRepository = collectionVersionRepository;
+	}
+
+	/**
+	 * @param expectedVersion   version the stored group must have, any if null
+	 * @param standardGroupOnly whether the group must not be a vip group, as some of the users are no vips
+	 * @return the raised version, empty if the group does not exist or does not match the conditions
+	 */
+	public Optional<VersionOnly> addMembers(final String groupId, final Collection<String> userIds, final Long expectedVersion,
+											final boolean standardGroupOnly) {
+		final Query query = groupQuery(groupId, expectedVersion);
+		if (standardGroupOnly)
+			query.addCriteria(where(VIP).is(false));
+		return modify(query, new Update().addToSet(USER_IDS).each(userIds.toArray()));
+	}
+
+	/**
+	 * @param expectedVersion version the stored group must have, any if null
+	 * @return the raised version, empty if the group does not exist, its version differs, none of the users is a member
+	 * or it would lose all of its members
+	 */
+	public Optional<VersionOnly> removeMembers(final String groupId, final Collection<String> userIds, final Long expectedVersion) {
+		final Query query = groupQuery(groupId, expectedVersion)
+				.addCriteria(where(USER_IDS).elemMatch(new Criteria().nin(userIds)).in(userIds));
+		return modify(query, new Update().pullAll(USER_IDS, userIds.toArray()));
+	}
+
+	/**
+	 * Pulls the user from every group it is member of with a single multi update, found by the index on the user ids.
+	 * The versions of all changed groups are raised in the same update. Groups the user is the last member of are not
+	 * matched and left unchanged, as a group must keep at least one user.
+	 *
+	 * @return the number of matched groups
+	 */
+	public long removeMemberFromAllGroups(final String userId) {
+		final UpdateResult result = mongoTemplate.updateMulti(query(where(USER_IDS).is(userId).and(USER_IDS + ".1").exists(true)),
+				new Update().pull(USER_IDS, userId).inc(VERSION, 1L), Group.class);
+		if (result.getModifiedCount() > 0)
+			collectionVersionRepository.increment(Group.class);
+		return result.getMatchedCount();
+	}
+
+	/**
+	 * Pages through the members of a group in id order, unwinding them on the database so only the page is transferred.
+	 *
+	 * @param after  id the members have to follow, ascending order, ignored if null
+	 * @param before id the members have to precede, descending order, taking precedence over after if not null
+	 * @param limit  maximum number of member ids
+	 */
+	public List<IdOnly> findMemberIds(final String groupId, final String after, final String before, final int limit) {
+		final List<AggregationOperation> operations = new ArrayList<>();
+		operations.add(match(where("_id").is(groupId)));
+		operations.add(project(USER_IDS));
+		operations.add(unwind(USER_IDS));
+		if (before != null) {
+			operations.add(match(where(USER_IDS).lt(before)));
+			operations.add(sort(DESC, USER_IDS));
+		} else {
+			if (after != null)
+				operations.add(match(where(USER_IDS).gt(after)));
+			operations.add(sort(ASC, USER_IDS));
+		}
+		operations.add(limit(limit));
+		return mongoTemplate.aggregate(newAggregation(Group.class, operations), Document.class).getMappedResults().stream()
+				.map(member -> new IdOnly(member.getString(USER_IDS)))
+				.collect(toList());
+	}
+
+	/**
+	 * @return the number of members, counted on the database, empty if the group does not exist
+	 */
+	public Optional<Integer> countMembers(final String groupId) {
+		final Document memberCount = mongoTemplate.aggregate(newAggregation(Group.class,
+				match(where("_id").is(groupId)),
+				project().and(USER_IDS).size().as(MEMBER_COUNT)), Document.class).getUniqueMappedResult();
+		return Optional.ofNullable(memberCount).map(count -> count.getInteger(MEMBER_COUNT));
+	}
+
+	/**
+	 * Reads the group together with its member count, counted on the database. The user ids are dropped on the database
+	 * as well, so they are never transferred; the exclusion is written as a raw stage, as the aggregation builder only
+	 * allows to exclude the id.
+	 *
+	 * @return the group without its user ids and its member count, empty if the group does not exist
+	 */
+	public Optional<CountedGroup> findWithMemberCount(final String groupId) {
+		return Optional.ofNullable(mongoTemplate.aggregate(newAggregation(Group.class,
+				match(where("_id").is(groupId)),
+				project().and(ROOT).as(GROUP).and(USER_IDS).size().as(MEMBER_COUNT),
+				context -> new Document("$project", new Document(GROUP + "." + USER_IDS, 0))),
+				CountedGroup.class).getUniqueMappedResult());
+	}
+
+	private Optional<VersionOnly> modify(final Query query, final Update update) {
+		query.fields().include(VERSION);
+		final VersionOnly version = mongoTemplate.findAndModify(query, update.inc(VERSION, 1L), options().returnNew(true),
+				VersionOnly.class, mongoTemplate.getCollectionName(Group.class));
+		if (version == null)
+			return Optional.empty();
+		collectionVersionRepository.increment(Group.class);
+		return Optional.of(version);
+	}
+
+	private static Query groupQuery(final String groupId, final Long expectedVersion) {
+		final Query query = query(where("_id").is(groupId));
+		if (expectedVersion != null)
+			query.addCriteria(where(VERSION).is(expectedVersion));
+		return query;
+	}
+}
@@ -1,10 +1,17 @@
 package de.otto.prototype.repository;
 
 import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdAndVersion;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.VersionOnly;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 @Repository
@@ -12,4 +19,57 @@ public interface GroupRepository extends MongoRepository<Group, String> {
 
 	@Query("{}")
 	Stream<Group> streamAll();
-}
\ No newline at end of file
+
+	@Query(value = "{}", fields = "{ '_id' : 1 }")
+	Stream<IdOnly> streamAllIds();
+
+	@Query("{}")
+	List<Group> findPage(Pageable pageable);
+
+	List<Group> findByIdGreaterThan(String id, Pageable pageable);
+
+	List<Group> findByIdLessThan(String id, Pageable pageable);
+
+	@Query(value = "{}", fields = "{ 'userIds' : 0 }")
+	List<Group> findPageWithoutUserIds(Pageable pageable);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByIdGreaterThan(String id, Pageable pageable);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByIdLessThan(String id, Pageable pageable);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByUserIds(String userId, Pageable pageable);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByUserIdsAndIdGreaterThan(String userId, String id, Pageable pageable);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByUserIdsAndIdLessThan(String userId, String id, Pageable pageable);
+
+	long countByUserIds(String userId);
+
+	Optional<VersionOnly> findVersionById(String id);
+
+	List<IdAndVersion> findVersionsByIdIn(Collection<String> ids);
+
+	@Query(fields = "{ 'userIds' : 0 }")
+	List<Group> findWithoutUserIdsByNameIn(Collection<String> names);
+
+	Optional<IdOnly> findFirstByOrderByIdAsc();
+
+	Optional<IdOnly> findFirstByIdLessThanOrderByIdDesc(String id);
+
+	Optional<IdOnly> findFirstByIdGreaterThanOrderByIdAsc(String id);
+
+	boolean existsByIdGreaterThan(String id);
+
+	boolean existsByUserIdsAndIdGreaterThan(String userId, String id);
+
+	boolean existsByIdAndUserIdsIn(String id, Collection<String> userIds);
+
+	boolean existsByName(String name);
+
+	boolean existsByNameAndIdNot(String name, String id);
+}
@@ -0,0 +1,40 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Stores the content hash of every user next to the document, so duplicates can be found through its index.
+ * Documents written before the hash existed are completed once the application is ready.
+ */
+@Component
+public class UserContentHashListener extends AbstractMongoEventListener<User> {
+
+	static final String CONTENT_HASH = "contentHash";
+
+	private final UserRepository userRepository;
+
+	@Autowired
+	public UserContentHashListener(final UserRepository userRepository) {
+		this.userRepository = userRepository;
+	}
+
+	@Override
+	public void onBeforeSave(final BeforeSaveEvent<User> event) {
+		event.getDocument().put(CONTENT_HASH, event.getSource().getContentHash());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfillContentHashes() {
+		try (Stream<User> usersWithoutContentHash = userRepository.streamWithoutContentHash()) {
+			usersWithoutContentHash.forEach(userRepository::save);
+		}
+	}
+}
@@ -1,10 +1,18 @@
 package de.otto.prototype.repository;
 
+import de.otto.prototype.model.IdOnly;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.model.VersionOnly;
+import de.otto.prototype.model.VipStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 @Repository
@@ -12,4 +20,47 @@ public interface UserRepository extends MongoRepository<User, String> {
 
 	@Query("{}")
 	Stream<User> streamAll();
+
+	@Query(value = "{}", fields = "{ 'login.password' : 0 }")
+	Stream<User> streamAllWithoutPasswords();
+
+	@Query(value = "{ '_id' : ?0 }", fields = "{ 'login.password' : 0 }")
+	Optional<User> findWithoutPasswordById(String id);
+
+	@Query(value = "{}", fields = "{ '_id' : 1 }")
+	Stream<IdOnly> streamAllIds();
+
+	@Query(value = "{}", fields = "{ 'firstName' : 1, 'lastName' : 1 }")
+	Stream<UserSummary> streamAllSummaries();
+
+	@Query(value = "{}", fields = "{ 'firstName' : 1, 'lastName' : 1, 'version' : 1 }")
+	List<UserSummary> findSummaryPage(Pageable pageable);
+
+	List<UserSummary> findSummariesByIdGreaterThan(String id, Pageable pageable);
+
+	List<UserSummary> findSummariesByIdLessThan(String id, Pageable pageable);
+
+	Optional<VersionOnly> findVersionById(String id);
+
+	Optional<IdOnly> findFirstByOrderByIdAsc();
+
+	Optional<IdOnly> findFirstByIdLessThanOrderByIdDesc(String id);
+
+	Optional<IdOnly> findFirstByIdGreaterThanOrderByIdAsc(String id);
+
+	boolean existsByIdGreaterThan(String id);
+
+	List<VipStatus> findByIdIn(Collection<String> ids);
+
+	@Query(value = "{ '_id' : { $in : ?0 } }", fields = "{ 'firstName' : 1, 'lastName' : 1 }")
+	List<UserSummary> findSummariesByIdIn(Collection<String> ids);
+
+	@Query(value = "{ 'contentHash' : ?0 }", exists = true)
+	boolean existsByContentHash(String contentHash);
+
+	@Query("{ 'contentHash' : { $in : ?0 } }")
+	List<User> findWithContentHashIn(Collection<String> contentHashes);
+
+	@Query("{ 'contentHash' : { $exists : false } }")
+	Stream<User> streamWithoutContentHash();
 }
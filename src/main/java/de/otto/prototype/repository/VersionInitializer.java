@@ -0,0 +1,39 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.core.Ordered.HIGHEST_PRECEDENCE;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Gives documents stored before users and groups got versioned their initial version once the application is ready,
+ * ahead of every other listener, as saving an entity without a version would insert it again.
+ */
+@Component
+public class VersionInitializer {
+
+	static final String VERSION = "version";
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public VersionInitializer(final MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	@Order(HIGHEST_PRECEDENCE)
+	@EventListener(ApplicationReadyEvent.class)
+	public void initializeVersions() {
+		for (final Class<?> entityClass : new Class<?>[]{User.class, Group.class})
+			mongoTemplate.updateMulti(query(where(VERSION).exists(false)), new Update().set(VERSION, 0L), entityClass);
+	}
+}
@@ -0,0 +1,116 @@
+package de.otto.prototype.service;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.User;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps the in-process caches of every instance coherent by evicting each user and group changed on any instance,
+ * as reported by the change streams of their collections. Change streams require a replica set, so this is opt-in.
+ * Whenever a stream is reopened after it failed or ended, changes in between are unknown and the whole cache is dropped.
+ * The first open needs no such resync, as the caches are kept coherent by this instance until then.
+ */
+@Component
+@ConditionalOnProperty(value = "cache.change-streams.enabled", havingValue = "true")
+public class ChangeStreamCacheInvalidator {
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeStreamCacheInvalidator.class);
+
+	private static final long RETRY_DELAY_SECONDS = 1;
+
+	private final MongoTemplate mongoTemplate;
+
+	private final UserService userService;
+
+	private final GroupService groupService;
+
+	private final List<Thread> watchers = new CopyOnWriteArrayList<>();
+
+	private final Map<String, MongoCursor<?>> openCursors = new ConcurrentHashMap<>();
+
+	private volatile boolean running = true;
+
+	@Autowired
+	public ChangeStreamCacheInvalidator(final MongoTemplate mongoTemplate, final UserService userService, final GroupService groupService) {
+		this.mongoTemplate = mongoTemplate;
+		this.userService = userService;
+		this.groupService = groupService;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		startWatching(mongoTemplate.getCollectionName(User.class), userService::evict, userService::evictAll);
+		startWatching(mongoTemplate.getCollectionName(Group.class), groupService::evict, groupService::evictAll);
+	}
+
+	@PreDestroy
+	public void stop() {
+		running = false;
+		openCursors.values().forEach(MongoCursor::close);
+		watchers.forEach(Thread::interrupt);
+	}
+
+	static void dispatch(final ChangeStreamDocument<Document> change, final Consumer<String> evict, final Runnable evictAll) {
+		final BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+		if (id == null)
+			evictAll.run();
+		else
+			evict.accept(id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue());
+	}
+
+	private void startWatching(final String collectionName, final Consumer<String> evict, final Runnable evictAll) {
+		final Thread watcher = new Thread(() -> watch(collectionName, evict, evictAll), "change-stream-cache-invalidator-" + collectionName);
+		watcher.setDaemon(true);
+		watchers.add(watcher);
+		watcher.start();
+	}
+
+	private void watch(final String collectionName, final Consumer<String> evict, final Runnable evictAll) {
+		boolean resync = false;
+		while (running) {
+			try (MongoCursor<ChangeStreamDocument<Document>> cursor = mongoTemplate.getCollection(collectionName).watch().iterator()) {
+				openCursors.put(collectionName, cursor);
+				if (resync)
+					evictAll.run();
+				resync = true;
+				while (running && cursor.hasNext())
+					dispatch(cursor.next(), evict, evictAll);
+			} catch (RuntimeException e) {
+				if (!running)
+					return;
+				log.warn("change stream on {} interrupted, reopening", collectionName, e);
+				resync = true;
+				sleepBeforeRetry();
+			}
+		}
+	}
+
+	private void sleepBeforeRetry() {
+		try {
+			SECONDS.sleep(RETRY_DELAY_SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package de.otto.prototype.service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A single id remembered for a limited time. Evictions only reach it from writes on this instance, or through change
+ * streams if enabled, so the time to live bounds how long it may point to an entity deleted elsewhere.
+ */
+class ExpiringId {
+
+	private final long timeToLiveNanos;
+
+	private final LongSupplier nanoClock;
+
+	private final AtomicReference<Entry> entry = new AtomicReference<>(Entry.none());
+
+	ExpiringId(final long timeToLive, final TimeUnit unit) {
+		this(timeToLive, unit, System::nanoTime);
+	}
+
+	ExpiringId(final long timeToLive, final TimeUnit unit, final LongSupplier nanoClock) {
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Loads the id outside of any lock if it is unknown or expired. A loaded id is only kept if the entry was not
+	 * changed in the meantime, so it never overrides a concurrent eviction.
+	 */
+	Optional<String> get(final Supplier<Optional<String>> loader) {
+		final Entry current = entry.get();
+		if (current.id != null && nanoClock.getAsLong() - current.loadedAt < timeToLiveNanos)
+			return Optional.of(current.id);
+		final Optional<String> loaded = loader.get();
+		loaded.ifPresent(id -> entry.compareAndSet(current, new Entry(id, nanoClock.getAsLong())));
+		return loaded;
+	}
+
+	void set(final String id) {
+		entry.set(new Entry(id, nanoClock.getAsLong()));
+	}
+
+	void evict(final String id) {
+		entry.updateAndGet(current -> id.equals(current.id) ? Entry.none() : current);
+	}
+
+	void evictAll() {
+		entry.set(Entry.none());
+	}
+
+	/**
+	 * Compared by identity, every eviction creates a new empty entry.
+	 */
+	private static final class Entry {
+
+		private final String id;
+
+		private final long loadedAt;
+
+		private Entry(final String id, final long loadedAt) {
+			this.id = id;
+			this.loadedAt = loadedAt;
+		}
+
+		private static Entry none() {
+			return new Entry(null, 0);
+		}
+	}
+}
@@ -1,33 +1,113 @@
 package de.otto.prototype.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
 import de.otto.prototype.exceptions.InvalidGroupException;
 import de.otto.prototype.exceptions.NotFoundException;
 import de.otto.prototype.metrics.Counted;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.CountedGroup;
 import de.otto.prototype.model.Group;
-import de.otto.prototype.model.User;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.Neighbours;
+import de.otto.prototype.model.VersionOnly;
+import de.otto.prototype.repository.BulkWriteRepository;
+import de.otto.prototype.repository.CollectionVersionRepository;
+import de.otto.prototype.repository.ConditionalUpdateRepository;
+import de.otto.prototype.repository.ExportRepository;
+import de.otto.prototype.repository.GroupMembershipRepository;
 import de.otto.prototype.repository.GroupRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static de.otto.prototype.config.IdFilterConfig.GROUP_ID_FILTER;
+import static de.otto.prototype.model.Versioned.versionOf;
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 @Service
 public class GroupService {
 
+	private static final long FIRST_ID_TIME_TO_LIVE_SECONDS = 60;
+
+	private static final String LAST_MEMBER_RULE = "a group must keep at least one user";
+
 	private final GroupRepository groupRepository;
 
+	private final CollectionVersionRepository collectionVersionRepository;
+
+	private final ConditionalUpdateRepository conditionalUpdateRepository;
+
+	private final GroupMembershipRepository groupMembershipRepository;
+
+	private final BulkWriteRepository bulkWriteRepository;
+
+	private final ExportRepository exportRepository;
+
 	private final UserService userService;
 
+	private final ReadThroughCache<CountedGroup> groupCache;
+
+	private final IdFilter groupIdFilter;
+
+	private final Validator validator;
+
+	private final ObjectMapper objectMapper;
+
+	private final ExpiringId firstId = new ExpiringId(FIRST_ID_TIME_TO_LIVE_SECONDS, SECONDS);
+
 	@Autowired
-	public GroupService(final GroupRepository groupRepository, UserService userService) {
+	public GroupService(final GroupRepository groupRepository, final CollectionVersionRepository collectionVersionRepository,
+						final ConditionalUpdateRepository conditionalUpdateRepository, final GroupMembershipRepository groupMembershipRepository,
+						UserService userService, final Cache<String, CountedGroup> groupCache,
+						final @Qualifier(GROUP_ID_FILTER) IdFilter groupIdFilter, final Validator validator, final ObjectMapper objectMapper,
+						final BulkWriteRepository bulkWriteRepository, final ExportRepository exportRepository) {
 		this.groupRepository = groupRepository;
+		this.collectionVersionRepository = collectionVersionRepository;
+		this.conditionalUpdateRepository = conditionalUpdateRepository;
+		this.groupMembershipRepository = groupMembershipRepository;
 		this.userService = userService;
+		this.groupCache = new ReadThroughCache<>(groupCache);
+		this.groupIdFilter = groupIdFilter;
+		this.validator = validator;
+		this.objectMapper = objectMapper;
+		this.bulkWriteRepository = bulkWriteRepository;
+		this.exportRepository = exportRepository;
 	}
 
 	@Counted
@@ -35,25 +115,298 @@ public class GroupService {
 		return groupRepository.streamAll();
 	}
 
+	/**
+	 * Streams the groups straight from the database, see {@link ExportRepository#streamAll}.
+	 */
+	@Counted
+	public Stream<Group> exportAll(final String after, final Set<String> properties, final int batchSize) {
+		return exportRepository.streamAll(Group.class, after, properties, emptySet(), batchSize);
+	}
+
+	@Counted
+	public KeysetPage<Group> findPage(final String after, final String before, final int limit, final boolean includeUserIds) {
+		if (!isNullOrEmpty(before)) {
+			final Pageable pageable = PageRequest.of(0, limit + 1, DESC, "id");
+			return KeysetPage.backward(includeUserIds
+					? groupRepository.findByIdLessThan(before, pageable)
+					: groupRepository.findWithoutUserIdsByIdLessThan(before, pageable), limit, groupRepository::existsByIdGreaterThan);
+		}
+		final Pageable pageable = PageRequest.of(0, limit + 1, ASC, "id");
+		if (!isNullOrEmpty(after))
+			return KeysetPage.forward(includeUserIds
+					? groupRepository.findByIdGreaterThan(after, pageable)
+					: groupRepository.findWithoutUserIdsByIdGreaterThan(after, pageable), limit, true);
+		return KeysetPage.forward(includeUserIds
+				? groupRepository.findPage(pageable)
+				: groupRepository.findPageWithoutUserIds(pageable), limit, false);
+	}
+
+	@Counted
+	public long count() {
+		return groupRepository.count();
+	}
+
+	/**
+	 * Pages through the groups a user is member of, served by the index on the user ids of the groups.
+	 * The groups are returned without their user ids.
+	 */
+	@Counted
+	public KeysetPage<Group> findPageByMember(final String userId, final String after, final String before, final int limit) {
+		if (!isNullOrEmpty(before))
+			return KeysetPage.backward(groupRepository.findWithoutUserIdsByUserIdsAndIdLessThan(userId, before,
+					PageRequest.of(0, limit + 1, DESC, "id")), limit, lastId -> groupRepository.existsByUserIdsAndIdGreaterThan(userId, lastId));
+		final Pageable pageable = PageRequest.of(0, limit + 1, ASC, "id");
+		if (!isNullOrEmpty(after))
+			return KeysetPage.forward(groupRepository.findWithoutUserIdsByUserIdsAndIdGreaterThan(userId, after, pageable), limit, true);
+		return KeysetPage.forward(groupRepository.findWithoutUserIdsByUserIds(userId, pageable), limit, false);
+	}
+
+	@Counted
+	public long countByMember(final String userId) {
+		return groupRepository.countByUserIds(userId);
+	}
+
 	@Counted
-	public Optional<Group> findOne(final String groupId) {
-		return groupRepository.findById(groupId);
+	public CollectionVersion findCollectionVersion() {
+		return collectionVersionRepository.find(Group.class);
+	}
+
+	@Counted
+	public Neighbours findNeighbours(final String groupId) {
+		final Optional<String> prevId = groupRepository.findFirstByIdLessThanOrderByIdDesc(groupId).map(IdOnly::getId);
+		final Optional<String> nextId = groupRepository.findFirstByIdGreaterThanOrderByIdAsc(groupId).map(IdOnly::getId);
+		if (!prevId.isPresent()) {
+			firstId.set(groupId);
+			return new Neighbours(groupId, null, nextId.orElse(null));
+		}
+		return new Neighbours(findFirstId().orElse(null), prevId.get(), nextId.orElse(null));
+	}
+
+	@Counted
+	public Optional<String> findFirstId() {
+		return firstId.get(() -> groupRepository.findFirstByOrderByIdAsc().map(IdOnly::getId));
+	}
+
+	/**
+	 * @return the group without its user ids together with their number, the user ids are paged through by
+	 * {@link #findMembers}
+	 */
+	@Counted
+	public Optional<CountedGroup> findOne(final String groupId) {
+		if (!groupIdFilter.mightContain(groupId))
+			return Optional.empty();
+		return groupCache.get(groupId, groupMembershipRepository::findWithMemberCount);
+	}
+
+	/**
+	 * @return the number of members, empty if the group does not exist
+	 */
+	@Counted
+	public Optional<Integer> countMembers(final String groupId) {
+		if (!groupIdFilter.mightContain(groupId))
+			return Optional.empty();
+		return groupMembershipRepository.countMembers(groupId);
+	}
+
+	/**
+	 * Pages through the member ids of a group without reading the group as a whole, see {@link #findPage}.
+	 */
+	@Counted
+	public KeysetPage<IdOnly> findMembers(final String groupId, final String after, final String before, final int limit) {
+		if (!isNullOrEmpty(before))
+			return KeysetPage.backward(groupMembershipRepository.findMemberIds(groupId, null, before, limit + 1), limit,
+					lastId -> !groupMembershipRepository.findMemberIds(groupId, lastId, null, 1).isEmpty());
+		return KeysetPage.forward(groupMembershipRepository.findMemberIds(groupId, emptyToNull(after), null, limit + 1), limit, !isNullOrEmpty(after));
+	}
+
+	@Counted
+	public Optional<String> findETag(final String groupId) {
+		if (!groupIdFilter.mightContain(groupId))
+			return Optional.empty();
+		return groupRepository.findVersionById(groupId).map(VersionOnly::getETag);
 	}
 
 	@Counted
 	public Group create(final Group group) {
 		validateGroup(group, true);
-		return groupRepository.save(group);
+		final Group createdGroup = save(group);
+		groupIdFilter.put(createdGroup.getId());
+		return createdGroup;
 	}
 
+	/**
+	 * Checks the version and writes the group with a single conditional write, see {@link UserService#update}.
+	 */
 	@Counted
 	public Group update(final Group group, final String eTag) {
-		final Group foundGroup = groupRepository.findById(group.getId())
-				.orElseThrow(() -> new NotFoundException("group not found"));
-		if (!isNullOrEmpty(eTag) && !foundGroup.getETag().equals(eTag))
-			throw new ConcurrentModificationException("etags aren´t equal");
-		validateGroup(group, false);
-		return groupRepository.save(group);
+		try {
+			validateGroup(group, false);
+		} catch (InvalidGroupException e) {
+			if (group.getId() != null && !groupRepository.existsById(group.getId()))
+				throw new NotFoundException("group not found");
+			throw e;
+		}
+		final Group updatedGroup = update(group, isNullOrEmpty(eTag) ? null : versionOf(eTag))
+				.orElseThrow(() -> groupRepository.existsById(group.getId())
+						? new ConcurrentModificationException("etags aren´t equal")
+						: new NotFoundException("group not found"));
+		groupCache.invalidate(group.getId());
+		return updatedGroup;
+	}
+
+	/**
+	 * Creates the groups without id and updates the others, each one checked as on {@link #create} or {@link #update}
+	 * but the whole batch at once: one query for the versions of the updated groups, one for the taken names and one for
+	 * the members. Updated groups are only overwritten if they still have the version read by that query, so a group
+	 * changed or deleted in between is rejected as on {@link #update}. Rejected groups do not stop the others, which are
+	 * written with a single bulk write.
+	 *
+	 * @return the outcome of every group in the given order
+	 */
+	@Counted
+	public List<BulkItem<Group>> saveAll(final List<Group> groups) {
+		final Map<Integer, BulkItem<Group>> items = new HashMap<>();
+		final Map<String, Integer> indexOfName = new LinkedHashMap<>();
+		for (int index = 0; index < groups.size(); index++) {
+			final Group group = groups.get(index);
+			try {
+				final Set<ConstraintViolation<Group>> errors =
+						validator.validate(group, group.getId() == null ? Group.New.class : Group.Existing.class);
+				if (!errors.isEmpty())
+					throw new ConstraintViolationException(errors);
+				if (indexOfName.putIfAbsent(group.getName(), index) != null)
+					throw new InvalidGroupException(group, "business", "the group name is already taken");
+			} catch (ConstraintViolationException | InvalidGroupException e) {
+				items.put(index, BulkItem.failed(index, group, e));
+			}
+		}
+
+		final List<Integer> indices = new ArrayList<>();
+		final Map<String, Long> storedVersions = new HashMap<>();
+		if (!indexOfName.isEmpty()) {
+			final List<Group> validGroups = indexOfName.values().stream().map(groups::get).collect(toList());
+			final Set<String> updatedIds = validGroups.stream().map(Group::getId).filter(Objects::nonNull).collect(toSet());
+			if (!updatedIds.isEmpty())
+				groupRepository.findVersionsByIdIn(updatedIds).forEach(stored -> storedVersions.put(stored.getId(), stored.getVersion()));
+			final Map<String, String> idOfTakenName = groupRepository.findWithoutUserIdsByNameIn(indexOfName.keySet()).stream()
+					.collect(toMap(Group::getName, Group::getId));
+			final Map<String, Boolean> vipStatusOfMembers = userService.findVipStatus(validGroups.stream()
+					.flatMap(group -> group.getUserIds().stream()).collect(toSet()));
+			for (final int index : indexOfName.values()) {
+				final Group group = groups.get(index);
+				try {
+					if (group.getId() != null && !storedVersions.containsKey(group.getId()))
+						throw new NotFoundException("group not found");
+					final String idOfName = idOfTakenName.get(group.getName());
+					if (idOfName != null && !idOfName.equals(group.getId()))
+						throw new InvalidGroupException(group, "business", "the group name is already taken");
+					validateMembers(group, vipStatusOfMembers);
+					indices.add(index);
+				} catch (NotFoundException | InvalidGroupException e) {
+					items.put(index, BulkItem.failed(index, group, e));
+				}
+			}
+		}
+
+		final List<BulkItem<Group>> writtenItems =
+				bulkWriteRepository.writeAll(indices.stream().map(groups::get).collect(toList()), storedVersions, Group.class);
+		for (final BulkItem<Group> writtenItem : writtenItems) {
+			final int index = indices.get(writtenItem.getIndex());
+			final BulkItem<Group> item = writtenItem.isSucceeded()
+					? writtenItem.at(index)
+					: BulkItem.failed(index, groups.get(index), writeErrorOf(groups.get(index), writtenItem.getError()));
+			items.put(index, item);
+			if (!item.isSucceeded())
+				continue;
+			if (groups.get(index).getId() == null)
+				groupIdFilter.put(item.getEntity().getId());
+			else
+				groupCache.invalidate(item.getEntity().getId());
+		}
+		return IntStream.range(0, groups.size()).mapToObj(items::get).collect(toList());
+	}
+
+	/**
+	 * Applies a JSON merge patch to the stored group and writes only the touched properties, see {@link UserService#patch}.
+	 */
+	@Counted
+	public Group patch(final String groupId, final JsonNode patch, final String eTag) {
+		final MergePatch mergePatch = MergePatch.of(patch);
+		while (true) {
+			final Group storedGroup = groupRepository.findById(groupId).orElseThrow(() -> new NotFoundException("group not found"));
+			if (!isNullOrEmpty(eTag) && versionOf(eTag) != versionOf(storedGroup.getETag()))
+				throw new ConcurrentModificationException("etags aren´t equal");
+			if (mergePatch.isEmpty())
+				return storedGroup;
+
+			final Optional<Group> patchedGroup = patch(storedGroup, mergePatch);
+			if (patchedGroup.isPresent()) {
+				groupCache.invalidate(groupId);
+				return patchedGroup.get();
+			}
+		}
+	}
+
+	/**
+	 * Adds users to a group without reading it, only the added users are checked.
+	 *
+	 * @return the raised version of the group
+	 */
+	@Counted
+	public VersionOnly addMembers(final String groupId, final Collection<String> userIds, final String eTag) {
+		if (!groupIdFilter.mightContain(groupId))
+			throw new NotFoundException("group not found");
+		final Set<String> memberIds = ImmutableSet.copyOf(userIds);
+		final Group delta = Group.builder().id(groupId).userIds(memberIds).build();
+		final Map<String, Boolean> vipStatusOfMembers = userService.findVipStatus(memberIds);
+		if (!vipStatusOfMembers.keySet().containsAll(memberIds))
+			throw new InvalidGroupException(delta, "business", "the group contains unknown users");
+
+		final Long expectedVersion = isNullOrEmpty(eTag) ? null : versionOf(eTag);
+		final VersionOnly version = groupMembershipRepository.addMembers(groupId, memberIds, expectedVersion, vipStatusOfMembers.containsValue(false))
+				.orElseThrow(() -> membershipFailure(delta, expectedVersion, "vip groups must only contains vip users"));
+		groupCache.invalidate(groupId);
+		return version;
+	}
+
+	/**
+	 * Removes users from a group without reading it, as long as at least one member remains. Removing users who are no
+	 * members leaves the group and its version untouched.
+	 *
+	 * @return the raised version of the group, the stored one if nothing was removed
+	 */
+	@Counted
+	public VersionOnly removeMembers(final String groupId, final Collection<String> userIds, final String eTag) {
+		if (!groupIdFilter.mightContain(groupId))
+			throw new NotFoundException("group not found");
+		final Set<String> memberIds = ImmutableSet.copyOf(userIds);
+		final Group delta = Group.builder().id(groupId).userIds(memberIds).build();
+
+		final Long expectedVersion = isNullOrEmpty(eTag) ? null : versionOf(eTag);
+		final Optional<VersionOnly> version = groupMembershipRepository.removeMembers(groupId, memberIds, expectedVersion);
+		if (!version.isPresent())
+			return unchangedMembership(delta, expectedVersion);
+		groupCache.invalidate(groupId);
+		return version.get();
+	}
+
+	/**
+	 * Pulls a user about to be deleted from all of its groups with a single write, which leaves out the groups the user
+	 * is the last member of. Fewer matched groups than the user is member of reveal such a group, which has to get
+	 * another member or be deleted first; the user is only kept as member of these groups then.
+	 *
+	 * @throws InvalidGroupException if the user is the last member of any group
+	 */
+	@Counted
+	public void removeMemberFromAllGroups(final String userId) {
+		final long groupCount = groupRepository.countByUserIds(userId);
+		if (groupCount == 0)
+			return;
+		final long pulledCount = groupMembershipRepository.removeMemberFromAllGroups(userId);
+		if (pulledCount > 0)
+			groupCache.invalidateAll();
+		if (pulledCount < groupCount)
+			throw new InvalidGroupException(Group.builder().userId(userId).build(), "business", LAST_MEMBER_RULE);
 	}
 
 	@Counted
@@ -61,21 +414,129 @@ public class GroupService {
 		if (!groupRepository.findById(groupId).isPresent())
 			throw new NotFoundException("group not found");
 		groupRepository.deleteById(groupId);
+		forget(groupId);
+	}
+
+	/**
+	 * Evicts a group changed by any instance, adding its id to the id filter as it may have been created.
+	 */
+	@Counted
+	public void evict(final String groupId) {
+		forget(groupId);
+		groupIdFilter.put(groupId);
+	}
+
+	/**
+	 * Drops the group from the caches but not from the id filter, a deleted id only disappears with its next rebuild.
+	 */
+	private void forget(final String groupId) {
+		groupCache.invalidate(groupId);
+		firstId.evict(groupId);
+	}
+
+	@Counted
+	public void evictAll() {
+		groupCache.invalidateAll();
+		firstId.evictAll();
+		groupIdFilter.rebuild();
+	}
+
+	private Group save(final Group group) {
+		return withUniqueName(group, () -> groupRepository.save(group));
+	}
+
+	private Optional<Group> update(final Group group, final Long expectedVersion) {
+		return withUniqueName(group, () -> conditionalUpdateRepository.update(group, expectedVersion));
+	}
+
+	private <T> T withUniqueName(final Group group, final Supplier<T> write) {
+		try {
+			return write.get();
+		} catch (DuplicateKeyException e) {
+			throw new InvalidGroupException(group, "business", "the group name is already taken");
+		}
+	}
+
+	/**
+	 * @return the error a single write of the group would have been rejected with
+	 */
+	private static RuntimeException writeErrorOf(final Group group, final RuntimeException error) {
+		if (error instanceof DuplicateKeyException)
+			return new InvalidGroupException(group, "business", "the group name is already taken");
+		if (error instanceof EmptyResultDataAccessException)
+			return new NotFoundException("group not found");
+		if (error instanceof OptimisticLockingFailureException)
+			return new ConcurrentModificationException("the group was changed concurrently");
+		return error;
+	}
+
+	private Optional<Group> patch(final Group storedGroup, final MergePatch mergePatch) {
+		final Group patchedGroup;
+		try {
+			patchedGroup = mergePatch.applyTo(storedGroup, Group.class, objectMapper);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidGroupException(storedGroup, "patch", e.getMessage());
+		}
+		final Set<ConstraintViolation<?>> errors = mergePatch.validate(patchedGroup, validator);
+		if (!errors.isEmpty())
+			throw new ConstraintViolationException(errors);
+
+		final Set<String> properties = mergePatch.properties();
+		if (properties.contains("name"))
+			validateName(patchedGroup, false);
+		if (properties.contains("userIds") || properties.contains("vip") && patchedGroup.isVip())
+			validateMembers(patchedGroup);
+		return withUniqueName(patchedGroup, () -> conditionalUpdateRepository.update(patchedGroup, storedGroup.getVersion(), properties));
+	}
+
+	/**
+	 * Tells why a conditional membership change did not match the group, the business rule being the last option.
+	 */
+	private RuntimeException membershipFailure(final Group delta, final Long expectedVersion, final String violatedRule) {
+		final Optional<VersionOnly> storedVersion = groupRepository.findVersionById(delta.getId());
+		if (!storedVersion.isPresent())
+			return new NotFoundException("group not found");
+		if (expectedVersion != null && expectedVersion != versionOf(storedVersion.get().getETag()))
+			return new ConcurrentModificationException("etags aren´t equal");
+		return new InvalidGroupException(delta, "business", violatedRule);
+	}
+
+	private VersionOnly unchangedMembership(final Group delta, final Long expectedVersion) {
+		final VersionOnly storedVersion = groupRepository.findVersionById(delta.getId())
+				.orElseThrow(() -> new NotFoundException("group not found"));
+		if (expectedVersion != null && expectedVersion != versionOf(storedVersion.getETag()))
+			throw new ConcurrentModificationException("etags aren´t equal");
+		if (groupRepository.existsByIdAndUserIdsIn(delta.getId(), delta.getUserIds()))
+			throw new InvalidGroupException(delta, "business", LAST_MEMBER_RULE);
+		return storedVersion;
 	}
 
 	private void validateGroup(final Group groupToValidate, final Boolean newGroup) {
-		//TODO: optimize doubled line?
-		if (newGroup && findAll().anyMatch(group -> group.getName().equals(groupToValidate.getName())))
-			throw new InvalidGroupException(groupToValidate, "business", "the group name is already taken");
-		if (!newGroup && findAll().filter(group -> !group.getId().equals(groupToValidate.getId())).anyMatch(group -> group.getName().equals(groupToValidate.getName())))
+		validateName(groupToValidate, newGroup);
+		validateMembers(groupToValidate);
+	}
+
+	private void validateName(final Group groupToValidate, final Boolean newGroup) {
+		final boolean nameTaken = newGroup
+				? groupRepository.existsByName(groupToValidate.getName())
+				: groupRepository.existsByNameAndIdNot(groupToValidate.getName(), groupToValidate.getId());
+		if (nameTaken)
 			throw new InvalidGroupException(groupToValidate, "business", "the group name is already taken");
+	}
+
+	private void validateMembers(final Group groupToValidate) {
+		validateMembers(groupToValidate, userService.findVipStatus(new HashSet<>(groupToValidate.getUserIds())));
+	}
 
-		final List<User> fetchedUsers = userService.findAll().collect(toList());
-		final List<String> fetchedUserIds = fetchedUsers.stream().map(User::getId).collect(toList());
-		if (!fetchedUserIds.containsAll(groupToValidate.getUserIds())) {
+	/**
+	 * @param vipStatusOfMembers the vip status of at least all known members of the group
+	 */
+	private static void validateMembers(final Group groupToValidate, final Map<String, Boolean> vipStatusOfMembers) {
+		final Set<String> memberIds = new HashSet<>(groupToValidate.getUserIds());
+		if (!vipStatusOfMembers.keySet().containsAll(memberIds)) {
 			throw new InvalidGroupException(groupToValidate, "business", "the group contains unknown users");
 		}
-		if (groupToValidate.isVip() && groupToValidate.getUserIds().stream().anyMatch(userIdToValidate -> !fetchedUsers.get(fetchedUserIds.indexOf(userIdToValidate)).isVip())) {
+		if (groupToValidate.isVip() && memberIds.stream().anyMatch(memberId -> !vipStatusOfMembers.get(memberId))) {
 			throw new InvalidGroupException(groupToValidate, "business", "vip groups must only contains vip users");
 		}
 	}
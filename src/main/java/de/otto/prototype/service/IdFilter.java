@@ -0,0 +1,120 @@
+package de.otto.prototype.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.google.common.hash.Funnels.stringFunnel;
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Bloom filter over the ids of a collection, used to answer lookups of ids that certainly do not exist without a query.
+ * Created ids are added right away, deleted ones only disappear with the next rebuild. As long as no filter is built,
+ * or if it is disabled, every id might exist.
+ */
+public class IdFilter {
+
+	private static final long MIN_EXPECTED_IDS = 1024;
+
+	private final Supplier<Stream<String>> ids;
+
+	private final LongSupplier count;
+
+	private final boolean enabled;
+
+	private final double falsePositiveProbability;
+
+	private final AtomicLong rejections = new AtomicLong();
+
+	private volatile BloomFilter<String> filter;
+
+	private volatile BloomFilter<String> nextFilter;
+
+	private volatile long sizeInBytes;
+
+	/**
+	 * @param ids                      supplies a stream of all stored ids
+	 * @param count                    supplies the number of stored ids, used to size the filter on a rebuild
+	 * @param enabled                  whether the filter gets built at all
+	 * @param falsePositiveProbability desired probability that a missing id is reported as might exist
+	 */
+	public IdFilter(final Supplier<Stream<String>> ids, final LongSupplier count,
+					final boolean enabled, final double falsePositiveProbability) {
+		this.ids = ids;
+		this.count = count;
+		this.enabled = enabled;
+		this.falsePositiveProbability = falsePositiveProbability;
+	}
+
+	public boolean mightContain(final String id) {
+		final BloomFilter<String> currentFilter = filter;
+		if (currentFilter == null || currentFilter.mightContain(id))
+			return true;
+		rejections.incrementAndGet();
+		return false;
+	}
+
+	public void put(final String id) {
+		final BloomFilter<String> rebuildingFilter = nextFilter;
+		final BloomFilter<String> currentFilter = filter;
+		if (currentFilter != null)
+			currentFilter.put(id);
+		if (rebuildingFilter != null)
+			rebuildingFilter.put(id);
+	}
+
+	/**
+	 * Replaces the filter by one built from the stored ids, which forgets deleted ids and resizes it to twice the
+	 * current number of ids. Ids put while rebuilding are added to both filters.
+	 */
+	@Scheduled(fixedDelayString = "${id-filter.rebuild-interval-ms}")
+	public synchronized void rebuild() {
+		if (!enabled)
+			return;
+		final BloomFilter<String> rebuildingFilter = BloomFilter.create(stringFunnel(UTF_8),
+				max(MIN_EXPECTED_IDS, 2 * count.getAsLong()), falsePositiveProbability);
+		nextFilter = rebuildingFilter;
+		try (Stream<String> storedIds = ids.get()) {
+			storedIds.forEach(rebuildingFilter::put);
+			filter = rebuildingFilter;
+			sizeInBytes = sizeOf(rebuildingFilter);
+		} finally {
+			nextFilter = null;
+		}
+	}
+
+	/**
+	 * @return probability that a missing id is reported as might exist, given the ids added so far
+	 */
+	public double expectedFalsePositiveProbability() {
+		final BloomFilter<String> currentFilter = filter;
+		return currentFilter == null ? 0 : currentFilter.expectedFpp();
+	}
+
+	public long sizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public long rejections() {
+		return rejections.get();
+	}
+
+	private static long sizeOf(final BloomFilter<String> filter) {
+		final CountingOutputStream outputStream = new CountingOutputStream(ByteStreams.nullOutputStream());
+		try {
+			filter.writeTo(outputStream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return outputStream.getCount();
+	}
+}
@@ -0,0 +1,94 @@
+package de.otto.prototype.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.beans.BeanWrapperImpl;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JSON merge patch (RFC 7396) of an entity: members of the patch replace the ones of the entity, nested objects
+ * are merged and null members are removed. The id of the entity can not be patched.
+ */
+final class MergePatch {
+
+	private static final String ID = "id";
+
+	private final JsonNode patch;
+
+	private MergePatch(final JsonNode patch) {
+		this.patch = patch;
+	}
+
+	static MergePatch of(final JsonNode patch) {
+		if (patch == null || !patch.isObject())
+			throw new IllegalArgumentException("a merge patch must be an object");
+		return new MergePatch(patch);
+	}
+
+	/**
+	 * @return names of the top level properties the patch touches
+	 */
+	Set<String> properties() {
+		final Set<String> properties = new HashSet<>();
+		patch.fieldNames().forEachRemaining(properties::add);
+		properties.remove(ID);
+		return ImmutableSet.copyOf(properties);
+	}
+
+	boolean isEmpty() {
+		return properties().isEmpty();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the patched entity can not be read, e.g. for a value of a wrong type
+	 */
+	<T> T applyTo(final T entity, final Class<T> type, final ObjectMapper objectMapper) {
+		final ObjectNode patchedEntity = (ObjectNode) merge(objectMapper.valueToTree(entity), patch);
+		patchedEntity.set(ID, objectMapper.valueToTree(entity).get(ID));
+		try {
+			return objectMapper.treeToValue(patchedEntity, type);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException(e.getOriginalMessage(), e);
+		}
+	}
+
+	/**
+	 * Checks only the constraints of the touched properties, including the ones of nested objects they hold.
+	 */
+	<T> Set<ConstraintViolation<?>> validate(final T patchedEntity, final Validator validator) {
+		final Set<ConstraintViolation<?>> violations = new HashSet<>();
+		final BeanDescriptor beanDescriptor = validator.getConstraintsForClass(patchedEntity.getClass());
+		for (final String property : properties()) {
+			final PropertyDescriptor propertyDescriptor = beanDescriptor.getConstraintsForProperty(property);
+			if (propertyDescriptor == null)
+				continue;
+			violations.addAll(validator.validateProperty(patchedEntity, property));
+			final Object value = new BeanWrapperImpl(patchedEntity).getPropertyValue(property);
+			if (propertyDescriptor.isCascaded() && value != null)
+				violations.addAll(validator.validate(value));
+		}
+		return violations;
+	}
+
+	private static JsonNode merge(final JsonNode target, final JsonNode patch) {
+		if (!patch.isObject())
+			return patch;
+		final ObjectNode merged = target != null && target.isObject() ? ((ObjectNode) target).deepCopy() : ((ObjectNode) patch).objectNode();
+		patch.fields().forEachRemaining(member -> {
+			if (member.getValue().isNull())
+				merged.remove(member.getKey());
+			else
+				merged.set(member.getKey(), merge(merged.get(member.getKey()), member.getValue()));
+		});
+		return merged;
+	}
+}
@@ -0,0 +1,52 @@
+package de.otto.prototype.service;
+
+import com.google.common.cache.Cache;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Fills a cache with entities read from the database on a miss. A read that races with a write may return the entity
+ * as it was before, so loaded entities are only kept if no invalidation happened while they were read. Guava itself
+ * cannot tell, an invalidation during {@link Cache#get(Object, java.util.concurrent.Callable)} does not reach the
+ * loading entry.
+ */
+class ReadThroughCache<V> {
+
+	private final Cache<String, V> cache;
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	ReadThroughCache(final Cache<String, V> cache) {
+		this.cache = cache;
+	}
+
+	Optional<V> get(final String id, final Function<String, Optional<V>> loader) {
+		final V cachedEntity = cache.getIfPresent(id);
+		if (cachedEntity != null)
+			return Optional.of(cachedEntity);
+		final long invalidationsBeforeLoad = invalidations.get();
+		final Optional<V> entity = loader.apply(id);
+		if (entity.isPresent() && invalidations.get() == invalidationsBeforeLoad) {
+			cache.put(id, entity.get());
+			if (invalidations.get() != invalidationsBeforeLoad)
+				cache.invalidate(id);
+		}
+		return entity;
+	}
+
+	/**
+	 * Counts the invalidation before it is applied, so a load running concurrently either sees the count changed
+	 * or puts its entity before it is removed again.
+	 */
+	void invalidate(final String id) {
+		invalidations.incrementAndGet();
+		cache.invalidate(id);
+	}
+
+	void invalidateAll() {
+		invalidations.incrementAndGet();
+		cache.invalidateAll();
+	}
+}
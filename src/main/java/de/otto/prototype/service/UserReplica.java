@@ -0,0 +1,95 @@
+package de.otto.prototype.service;
+
+import de.otto.prototype.model.User;
+import de.otto.prototype.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Optional in-memory replica of the user collection for read heavy deployments, loaded once the application is ready.
+ * Writes of this instance are applied right after they got persisted; writes of other instances only arrive
+ * through the change stream eviction, so running several instances requires cache.change-streams.enabled.
+ * Passwords are never held in memory, users read from the replica come without them.
+ */
+@Component
+public class UserReplica {
+
+	private final UserRepository userRepository;
+
+	private final boolean enabled;
+
+	private final AtomicReference<UserSnapshot> snapshot = new AtomicReference<>();
+
+	private final AtomicLong modifications = new AtomicLong();
+
+	@Autowired
+	public UserReplica(final UserRepository userRepository, final @Value("${user.replica.enabled}") boolean enabled) {
+		this.userRepository = userRepository;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return the current snapshot, empty as long as the replica is disabled or still loading
+	 */
+	Optional<UserSnapshot> current() {
+		return Optional.ofNullable(snapshot.get());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		if (!enabled)
+			return;
+		long modificationsBeforeLoad;
+		do {
+			snapshot.set(null);
+			modificationsBeforeLoad = modifications.get();
+			final UserSnapshot loadedSnapshot;
+			try (Stream<User> users = userRepository.streamAllWithoutPasswords()) {
+				loadedSnapshot = UserSnapshot.of(users.collect(toList()));
+			}
+			snapshot.set(loadedSnapshot);
+		} while (modifications.get() != modificationsBeforeLoad);
+	}
+
+	void put(final User user) {
+		modify(current -> current.with(withoutPassword(user)));
+	}
+
+	void putAll(final Collection<User> users) {
+		if (users.isEmpty())
+			return;
+		final List<User> usersWithoutPasswords = users.stream().map(UserReplica::withoutPassword).collect(toList());
+		modify(current -> current.withAll(usersWithoutPasswords));
+	}
+
+	void refresh(final String userId) {
+		if (!enabled)
+			return;
+		final Optional<User> storedUser = userRepository.findWithoutPasswordById(userId);
+		modify(current -> storedUser.map(current::with).orElseGet(() -> current.without(userId)));
+	}
+
+	private static User withoutPassword(final User user) {
+		if (user.getLogin() == null || user.getLogin().getPassword() == null)
+			return user;
+		return user.toBuilder().login(user.getLogin().toBuilder().password(null).build()).build();
+	}
+
+	private void modify(final UnaryOperator<UserSnapshot> modification) {
+		modifications.incrementAndGet();
+		snapshot.updateAndGet(current -> current == null ? null : modification.apply(current));
+	}
+}
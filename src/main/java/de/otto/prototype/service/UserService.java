@@ -1,81 +1,392 @@
 package de.otto.prototype.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
 import de.otto.prototype.exceptions.InvalidUserException;
 import de.otto.prototype.exceptions.NotFoundException;
 import de.otto.prototype.metrics.Counted;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.Neighbours;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.model.VersionOnly;
+import de.otto.prototype.model.VipStatus;
+import de.otto.prototype.repository.BulkWriteRepository;
+import de.otto.prototype.repository.CollectionVersionRepository;
+import de.otto.prototype.repository.ConditionalUpdateRepository;
+import de.otto.prototype.repository.ExportRepository;
 import de.otto.prototype.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static de.otto.prototype.config.IdFilterConfig.USER_ID_FILTER;
+import static de.otto.prototype.model.Versioned.versionOf;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 @Service
 public class UserService {
 
+	private static final Set<String> HIDDEN_ON_EXPORT = ImmutableSet.of("login.password");
+
+	private static final long FIRST_ID_TIME_TO_LIVE_SECONDS = 60;
+
+	private static final int MAX_PATCH_ATTEMPTS = 3;
+
 	private final UserRepository userRepository;
 
+	private final CollectionVersionRepository collectionVersionRepository;
+
+	private final ConditionalUpdateRepository conditionalUpdateRepository;
+
 	private final Validator validator;
 
+	private final ReadThroughCache<User> userCache;
+
+	private final UserReplica userReplica;
+
+	private final IdFilter userIdFilter;
+
+	private final ObjectMapper objectMapper;
+
+	private final BulkWriteRepository bulkWriteRepository;
+
+	private final ExportRepository exportRepository;
+
+	private final ExpiringId firstId = new ExpiringId(FIRST_ID_TIME_TO_LIVE_SECONDS, SECONDS);
+
 	@Autowired
-	public UserService(final UserRepository userRepository, final Validator validator) {
+	public UserService(final UserRepository userRepository, final CollectionVersionRepository collectionVersionRepository,
+					   final ConditionalUpdateRepository conditionalUpdateRepository, final Validator validator, final Cache<String, User> userCache, final UserReplica userReplica,
+					   final @Qualifier(USER_ID_FILTER) IdFilter userIdFilter, final ObjectMapper objectMapper,
+					   final BulkWriteRepository bulkWriteRepository, final ExportRepository exportRepository) {
 		this.userRepository = userRepository;
+		this.collectionVersionRepository = collectionVersionRepository;
+		this.conditionalUpdateRepository = conditionalUpdateRepository;
 		this.validator = validator;
+		this.userCache = new ReadThroughCache<>(userCache);
+		this.userReplica = userReplica;
+		this.userIdFilter = userIdFilter;
+		this.objectMapper = objectMapper;
+		this.bulkWriteRepository = bulkWriteRepository;
+		this.exportRepository = exportRepository;
 	}
 
 	@Counted
 	public Stream<User> findAll() {
-		return userRepository.streamAll();
+		return userReplica.current().map(UserSnapshot::stream).orElseGet(userRepository::streamAll);
+	}
+
+	/**
+	 * Streams the users straight from the database rather than the replica, never with their passwords,
+	 * see {@link ExportRepository#streamAll}.
+	 */
+	@Counted
+	public Stream<User> exportAll(final String after, final Set<String> properties, final int batchSize) {
+		return exportRepository.streamAll(User.class, after, properties, HIDDEN_ON_EXPORT, batchSize);
+	}
+
+	@Counted
+	public Stream<UserSummary> findAllSummaries() {
+		return userReplica.current().map(snapshot -> snapshot.stream().map(UserSummary::summaryOf))
+				.orElseGet(userRepository::streamAllSummaries);
+	}
+
+	@Counted
+	public KeysetPage<UserSummary> findPage(final String after, final String before, final int limit) {
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent()) {
+			if (!isNullOrEmpty(before))
+				return KeysetPage.backward(summariesOf(snapshot.get().before(before, limit + 1)), limit,
+						lastId -> !snapshot.get().after(lastId, 1).isEmpty());
+			return KeysetPage.forward(summariesOf(snapshot.get().after(emptyToNull(after), limit + 1)), limit, !isNullOrEmpty(after));
+		}
+		if (!isNullOrEmpty(before))
+			return KeysetPage.backward(userRepository.findSummariesByIdLessThan(before, PageRequest.of(0, limit + 1, DESC, "id")), limit,
+					userRepository::existsByIdGreaterThan);
+		if (!isNullOrEmpty(after))
+			return KeysetPage.forward(userRepository.findSummariesByIdGreaterThan(after, PageRequest.of(0, limit + 1, ASC, "id")), limit, true);
+		return KeysetPage.forward(userRepository.findSummaryPage(PageRequest.of(0, limit + 1, ASC, "id")), limit, false);
+	}
+
+	@Counted
+	public long count() {
+		return userReplica.current().map(snapshot -> (long) snapshot.size()).orElseGet(userRepository::count);
+	}
+
+	@Counted
+	public CollectionVersion findCollectionVersion() {
+		return collectionVersionRepository.find(User.class);
+	}
+
+	@Counted
+	public Neighbours findNeighbours(final String userId) {
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent())
+			return snapshot.get().neighbours(userId);
+		final Optional<String> prevId = userRepository.findFirstByIdLessThanOrderByIdDesc(userId).map(IdOnly::getId);
+		final Optional<String> nextId = userRepository.findFirstByIdGreaterThanOrderByIdAsc(userId).map(IdOnly::getId);
+		if (!prevId.isPresent()) {
+			firstId.set(userId);
+			return new Neighbours(userId, null, nextId.orElse(null));
+		}
+		return new Neighbours(findFirstId().orElse(null), prevId.get(), nextId.orElse(null));
+	}
+
+	@Counted
+	public Optional<String> findFirstId() {
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent())
+			return snapshot.get().firstId();
+		return firstId.get(() -> userRepository.findFirstByOrderByIdAsc().map(IdOnly::getId));
+	}
+
+	@Counted
+	public Map<String, Boolean> findVipStatus(final Collection<String> userIds) {
+		return userRepository.findByIdIn(userIds).stream()
+				.collect(toMap(VipStatus::getId, VipStatus::isVip));
+	}
+
+	/**
+	 * Looks up the summaries of the given users at once, unknown users are left out.
+	 */
+	@Counted
+	public List<UserSummary> findSummaries(final Collection<String> userIds) {
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent())
+			return userIds.stream().map(snapshot.get()::find)
+					.filter(Optional::isPresent)
+					.map(user -> UserSummary.summaryOf(user.get()))
+					.collect(toList());
+		return userRepository.findSummariesByIdIn(userIds);
 	}
 
 	@Counted
 	public Optional<User> findOne(final String userId) {
-		return userRepository.findById(userId);
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent())
+			return snapshot.get().find(userId);
+		if (!userIdFilter.mightContain(userId))
+			return Optional.empty();
+		return userCache.get(userId, userRepository::findById);
+	}
+
+	@Counted
+	public Optional<String> findETag(final String userId) {
+		final Optional<UserSnapshot> snapshot = userReplica.current();
+		if (snapshot.isPresent())
+			return snapshot.get().find(userId).map(User::getETag);
+		if (!userIdFilter.mightContain(userId))
+			return Optional.empty();
+		return userRepository.findVersionById(userId).map(VersionOnly::getETag);
 	}
 
 	@Counted
 	public User create(final User user) {
 		validateUser(user);
-		return userRepository.save(user);
+		final User createdUser = userRepository.save(user);
+		userReplica.put(createdUser);
+		userIdFilter.put(createdUser.getId());
+		return createdUser;
+	}
+
+	/**
+	 * Creates a batch of users, each one checked as on {@link #create} but the whole batch at once: duplicates within
+	 * the batch are found by their content hash, duplicates of stored users by a single query for all hashes.
+	 * Rejected users do not stop the others, which are inserted with a single bulk write.
+	 *
+	 * @return the outcome of every user in the given order
+	 */
+	@Counted
+	public List<BulkItem<User>> createAll(final List<User> users) {
+		final Map<Integer, BulkItem<User>> items = new HashMap<>();
+		final Map<String, Integer> indexOfContentHash = new LinkedHashMap<>();
+		for (int index = 0; index < users.size(); index++) {
+			final User user = users.get(index);
+			try {
+				final Set<ConstraintViolation<User>> errors = validator.validate(user, User.New.class);
+				if (!errors.isEmpty())
+					throw new ConstraintViolationException(errors);
+				validateMail(user);
+				if (indexOfContentHash.putIfAbsent(user.getContentHash(), index) != null)
+					throw new InvalidUserException(user, "business", "this user does already exist");
+			} catch (ConstraintViolationException | InvalidUserException e) {
+				items.put(index, BulkItem.failed(index, user, e));
+			}
+		}
+		if (!indexOfContentHash.isEmpty())
+			userRepository.findWithContentHashIn(indexOfContentHash.keySet()).forEach(storedUser -> {
+				final Integer index = indexOfContentHash.remove(storedUser.getContentHash());
+				if (index != null)
+					items.put(index, BulkItem.failed(index, users.get(index),
+							new InvalidUserException(users.get(index), "business", "this user does already exist")));
+			});
+
+		final List<Integer> indices = new ArrayList<>(indexOfContentHash.values());
+		final List<BulkItem<User>> insertedItems =
+				bulkWriteRepository.writeAll(indices.stream().map(users::get).collect(toList()), User.class);
+		final List<User> insertedUsers = new ArrayList<>(insertedItems.size());
+		for (final BulkItem<User> insertedItem : insertedItems) {
+			final int index = indices.get(insertedItem.getIndex());
+			items.put(index, insertedItem.at(index));
+			if (insertedItem.isSucceeded()) {
+				insertedUsers.add(insertedItem.getEntity());
+				userIdFilter.put(insertedItem.getEntity().getId());
+			}
+		}
+		userReplica.putAll(insertedUsers);
+		return IntStream.range(0, users.size()).mapToObj(items::get).collect(toList());
 	}
 
+	/**
+	 * Checks the version and writes the user with a single conditional write. Whether the user exists is only queried
+	 * once the user got rejected, to answer an unknown id with a not found exception.
+	 */
 	@Counted
 	public User update(final User user, final String eTag) {
-		Set<ConstraintViolation<User>> errors = validator.validate(user, User.Existing.class);
-		if (!errors.isEmpty())
-			throw new ConstraintViolationException(errors);
+		try {
+			Set<ConstraintViolation<User>> errors = validator.validate(user, User.Existing.class);
+			if (!errors.isEmpty())
+				throw new ConstraintViolationException(errors);
+			validateUser(user);
+		} catch (ConstraintViolationException | InvalidUserException e) {
+			if (user.getId() != null && !userRepository.existsById(user.getId()))
+				throw new NotFoundException("user not found");
+			throw e;
+		}
+		final User updatedUser = conditionalUpdateRepository.update(user, isNullOrEmpty(eTag) ? null : versionOf(eTag))
+				.orElseThrow(() -> userRepository.existsById(user.getId())
+						? new ConcurrentModificationException("etags aren´t equal")
+						: new NotFoundException("user not found"));
+		userReplica.put(updatedUser);
+		userCache.invalidate(user.getId());
+		return updatedUser;
+	}
 
-		final User foundUser = userRepository.findById(user.getId())
-				.orElseThrow(() -> new NotFoundException("user not found"));
-		if (!isNullOrEmpty(eTag) && !foundUser.getETag().equals(eTag))
-			throw new ConcurrentModificationException("etags aren´t equal");
-		validateUser(user);
-		return userRepository.save(user);
+	/**
+	 * Applies a JSON merge patch to the stored user and writes only the touched properties. The patch is applied to the
+	 * stored version it was read with, so a concurrent write is either reported, if an ETag is given, or the patch is
+	 * applied again to the new version, at most {@value #MAX_PATCH_ATTEMPTS} times in all.
+	 */
+	@Counted
+	public User patch(final String userId, final JsonNode patch, final String eTag) {
+		final MergePatch mergePatch = MergePatch.of(patch);
+		for (int attempt = 0; attempt < MAX_PATCH_ATTEMPTS; attempt++) {
+			final User storedUser = userRepository.findById(userId).orElseThrow(() -> new NotFoundException("user not found"));
+			if (!isNullOrEmpty(eTag) && versionOf(eTag) != versionOf(storedUser.getETag()))
+				throw new ConcurrentModificationException("etags aren´t equal");
+			if (mergePatch.isEmpty())
+				return storedUser;
+
+			final Optional<User> patchedUser = patch(storedUser, mergePatch);
+			if (patchedUser.isPresent()) {
+				userReplica.put(patchedUser.get());
+				userCache.invalidate(userId);
+				return patchedUser.get();
+			}
+		}
+		throw new ConcurrentModificationException("the user was changed concurrently");
 	}
 
+	/**
+	 * Deletes the user only, pulling it from its groups is left to {@link GroupService#removeMemberFromAllGroups},
+	 * as the group service depends on this one.
+	 */
 	@Counted
 	public void delete(final String userId) {
 		if (!userRepository.findById(userId).isPresent())
 			throw new NotFoundException("user not found");
 		userRepository.deleteById(userId);
+		forget(userId);
+	}
+
+	/**
+	 * Evicts a user changed by any instance, adding its id to the id filter as it may have been created.
+	 */
+	@Counted
+	public void evict(final String userId) {
+		forget(userId);
+		userIdFilter.put(userId);
+	}
+
+	@Counted
+	public void evictAll() {
+		userCache.invalidateAll();
+		firstId.evictAll();
+		userReplica.load();
+		userIdFilter.rebuild();
+	}
+
+	/**
+	 * Drops the user from the caches but not from the id filter, a deleted id only disappears with its next rebuild.
+	 */
+	private void forget(final String userId) {
+		userCache.invalidate(userId);
+		firstId.evict(userId);
+		userReplica.refresh(userId);
+	}
+
+	private static List<UserSummary> summariesOf(final List<User> users) {
+		return users.stream().map(UserSummary::summaryOf).collect(toList());
+	}
+
+	private Optional<User> patch(final User storedUser, final MergePatch mergePatch) {
+		final User patchedUser;
+		try {
+			patchedUser = mergePatch.applyTo(storedUser, User.class, objectMapper);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidUserException(storedUser, "patch", e.getMessage());
+		}
+		final Set<ConstraintViolation<?>> errors = mergePatch.validate(patchedUser, validator);
+		if (!errors.isEmpty())
+			throw new ConstraintViolationException(errors);
+
+		if (mergePatch.properties().contains("login"))
+			validateMail(patchedUser);
+		if (!patchedUser.getContentHash().equals(storedUser.getContentHash()))
+			validateUniqueness(patchedUser);
+		return conditionalUpdateRepository.update(patchedUser, storedUser.getVersion(), mergePatch.properties());
 	}
 
 	private void validateUser(final User userToValidate) {
-		if (!userToValidate.getLogin().getMail().endsWith("@otto.de"))
+		validateMail(userToValidate);
+		validateUniqueness(userToValidate);
+	}
+
+	private void validateMail(final User userToValidate) {
+		if (userToValidate.getLogin() == null || !userToValidate.getLogin().getMail().endsWith("@otto.de"))
 			throw new InvalidUserException(userToValidate, "business", "only mails by otto allowed");
-		if (findAll().map(this::getUserWithoutId).anyMatch(user -> user.getETag().equals(getUserWithoutId(userToValidate).getETag())))
-			throw new InvalidUserException(userToValidate, "business", "this user does already exist");
 	}
 
-	private User getUserWithoutId(User user) {
-		return user.toBuilder().id("").build();
+	private void validateUniqueness(final User userToValidate) {
+		if (userRepository.existsByContentHash(userToValidate.getContentHash()))
+			throw new InvalidUserException(userToValidate, "business", "this user does already exist");
 	}
 }
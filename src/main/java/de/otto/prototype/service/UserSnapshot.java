@@ -0,0 +1,245 @@
+package de.otto.prototype.service;
+
+import de.otto.prototype.model.Neighbours;
+import de.otto.prototype.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Immutable copy of the user collection, sorted by id like the keyset queries of the repository.
+ * Every change produces a new snapshot, so readers never see a partial update. The users are kept in sorted chunks
+ * of bounded size, so a single change only copies the affected chunk and the chunk index, while a batch of changes
+ * is merged into the whole collection at once. A stored user is never replaced by an older version of itself, such as
+ * one read for a delayed change stream event after a newer local write.
+ */
+final class UserSnapshot {
+
+	static final int CHUNK_SIZE = 512;
+
+	static final UserSnapshot EMPTY = new UserSnapshot(new User[0][]);
+
+	private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+	private final User[][] chunks;
+
+	/**
+	 * Position of the first user of every chunk, followed by the total number of users.
+	 */
+	private final int[] offsets;
+
+	private UserSnapshot(final User[][] chunks) {
+		this.chunks = chunks;
+		this.offsets = new int[chunks.length + 1];
+		for (int i = 0; i < chunks.length; i++)
+			offsets[i + 1] = offsets[i] + chunks[i].length;
+	}
+
+	static UserSnapshot of(final Collection<User> users) {
+		final User[] sortedUsers = users.toArray(new User[0]);
+		Arrays.sort(sortedUsers, BY_ID);
+		return new UserSnapshot(chunked(sortedUsers));
+	}
+
+	UserSnapshot with(final User user) {
+		if (chunks.length == 0)
+			return new UserSnapshot(new User[][]{{user}});
+		final int chunk = chunkOf(user.getId());
+		final User[] users = chunks[chunk];
+		final int position = insertionPoint(users, user.getId());
+		if (position < users.length && users[position].getId().equals(user.getId())) {
+			if (isOlder(user, users[position]))
+				return this;
+			final User[] changedUsers = users.clone();
+			changedUsers[position] = user;
+			return replace(chunk, changedUsers);
+		}
+		final User[] changedUsers = new User[users.length + 1];
+		System.arraycopy(users, 0, changedUsers, 0, position);
+		changedUsers[position] = user;
+		System.arraycopy(users, position, changedUsers, position + 1, users.length - position);
+		if (changedUsers.length <= 2 * CHUNK_SIZE)
+			return replace(chunk, changedUsers);
+		return replace(chunk, Arrays.copyOfRange(changedUsers, 0, CHUNK_SIZE), Arrays.copyOfRange(changedUsers, CHUNK_SIZE, changedUsers.length));
+	}
+
+	/**
+	 * Applies a batch of written users with a single merge instead of one copy per user.
+	 */
+	UserSnapshot withAll(final Collection<User> users) {
+		if (users.size() <= 1)
+			return users.stream().findFirst().map(this::with).orElse(this);
+		final User[] sortedUsers = users.toArray(new User[0]);
+		Arrays.sort(sortedUsers, BY_ID);
+		final List<User> merged = new ArrayList<>(size() + sortedUsers.length);
+		int next = 0;
+		for (final User[] chunk : chunks) {
+			for (final User user : chunk) {
+				while (next < sortedUsers.length && sortedUsers[next].getId().compareTo(user.getId()) < 0)
+					merged.add(sortedUsers[next++]);
+				if (next < sortedUsers.length && sortedUsers[next].getId().equals(user.getId())) {
+					merged.add(isOlder(sortedUsers[next], user) ? user : sortedUsers[next]);
+					next++;
+				} else {
+					merged.add(user);
+				}
+			}
+		}
+		while (next < sortedUsers.length)
+			merged.add(sortedUsers[next++]);
+		return new UserSnapshot(chunked(merged.toArray(new User[0])));
+	}
+
+	UserSnapshot without(final String userId) {
+		if (chunks.length == 0)
+			return this;
+		final int chunk = chunkOf(userId);
+		final User[] users = chunks[chunk];
+		final int position = insertionPoint(users, userId);
+		if (position == users.length || !users[position].getId().equals(userId))
+			return this;
+		final User[] changedUsers = new User[users.length - 1];
+		System.arraycopy(users, 0, changedUsers, 0, position);
+		System.arraycopy(users, position + 1, changedUsers, position, users.length - position - 1);
+		return changedUsers.length == 0 ? replace(chunk) : replace(chunk, changedUsers);
+	}
+
+	Optional<User> find(final String userId) {
+		final int position = insertionPoint(userId);
+		return position < size() && get(position).getId().equals(userId) ? Optional.of(get(position)) : Optional.empty();
+	}
+
+	Stream<User> stream() {
+		return Arrays.stream(chunks).flatMap(Arrays::stream);
+	}
+
+	int size() {
+		return offsets[chunks.length];
+	}
+
+	Optional<String> firstId() {
+		return chunks.length == 0 ? Optional.empty() : Optional.of(chunks[0][0].getId());
+	}
+
+	/**
+	 * @return up to count users with an id greater than the given one, ascending
+	 */
+	List<User> after(final String userId, final int count) {
+		final int from = userId == null ? 0 : upperBound(userId);
+		final int to = min(size(), from + count);
+		final List<User> following = new ArrayList<>(max(0, to - from));
+		for (int i = from; i < to; i++)
+			following.add(get(i));
+		return following;
+	}
+
+	/**
+	 * @return up to count users with an id less than the given one, descending
+	 */
+	List<User> before(final String userId, final int count) {
+		final int to = insertionPoint(userId);
+		final List<User> preceding = new ArrayList<>(min(count, to));
+		for (int i = to - 1; i >= max(0, to - count); i--)
+			preceding.add(get(i));
+		return preceding;
+	}
+
+	Neighbours neighbours(final String userId) {
+		final int prev = insertionPoint(userId) - 1;
+		final int next = upperBound(userId);
+		return new Neighbours(prev < 0 ? userId : chunks[0][0].getId(),
+				prev < 0 ? null : get(prev).getId(),
+				next < size() ? get(next).getId() : null);
+	}
+
+	private static boolean isOlder(final User user, final User storedUser) {
+		return versionOf(user) < versionOf(storedUser);
+	}
+
+	/**
+	 * @return the version, documents stored before versioning count as version 0
+	 */
+	private static long versionOf(final User user) {
+		return user.getVersion() == null ? 0 : user.getVersion();
+	}
+
+	private static User[][] chunked(final User[] sortedUsers) {
+		final User[][] chunks = new User[(sortedUsers.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+		for (int i = 0; i < chunks.length; i++)
+			chunks[i] = Arrays.copyOfRange(sortedUsers, i * CHUNK_SIZE, min(sortedUsers.length, (i + 1) * CHUNK_SIZE));
+		return chunks;
+	}
+
+	/**
+	 * @return a snapshot with the chunk at the given index replaced by the given ones, removed if none are given
+	 */
+	private UserSnapshot replace(final int chunk, final User[]... replacements) {
+		final User[][] changedChunks = new User[chunks.length - 1 + replacements.length][];
+		System.arraycopy(chunks, 0, changedChunks, 0, chunk);
+		System.arraycopy(replacements, 0, changedChunks, chunk, replacements.length);
+		System.arraycopy(chunks, chunk + 1, changedChunks, chunk + replacements.length, chunks.length - chunk - 1);
+		return new UserSnapshot(changedChunks);
+	}
+
+	/**
+	 * @return the last chunk starting with an id not greater than the given one, the first chunk if there is none
+	 */
+	private int chunkOf(final String userId) {
+		int low = 0;
+		int high = chunks.length - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (chunks[middle][0].getId().compareTo(userId) <= 0)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	private User get(final int position) {
+		int low = 0;
+		int high = chunks.length - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (offsets[middle] <= position)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return chunks[low][position - offsets[low]];
+	}
+
+	private int insertionPoint(final String userId) {
+		if (chunks.length == 0)
+			return 0;
+		final int chunk = chunkOf(userId);
+		return offsets[chunk] + insertionPoint(chunks[chunk], userId);
+	}
+
+	private static int insertionPoint(final User[] users, final String userId) {
+		int low = 0;
+		int high = users.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (users[middle].getId().compareTo(userId) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int upperBound(final String userId) {
+		final int position = insertionPoint(userId);
+		return position < size() && get(position).getId().equals(userId) ? position + 1 : position;
+	}
+}
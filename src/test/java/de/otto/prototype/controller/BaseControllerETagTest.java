@@ -3,6 +3,7 @@ package de.otto.prototype.controller;
 import de.otto.prototype.model.Hashable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.Identifiable;
 import org.springframework.util.MultiValueMap;
 
 import java.util.Arrays;
@@ -107,23 +108,48 @@ class BaseControllerETagTest {
         assertNotEquals(etag1, etag2, "Lists with different duplicate patterns generate different ETags");
     }
 
+    @Test
+    void testSameETagsOfDifferentEntitiesGenerateDifferentETags() {
+        List<TestHashableEntity> list1 = Collections.singletonList(new TestHashableEntity("id-001", "W/\"0\""));
+        List<TestHashableEntity> list2 = Collections.singletonList(new TestHashableEntity("id-002", "W/\"0\""));
+
+        String etag1 = controller.getETagHeader(list1).getFirst(ETAG);
+        String etag2 = controller.getETagHeader(list2).getFirst(ETAG);
+
+        assertNotEquals(etag1, etag2, "Entities sharing a version should still generate different ETags");
+    }
+
     /**
      * Test implementation of BaseController to access protected methods
      */
     private static class TestBaseController extends BaseController {
         // Exposes protected method for testing
+        TestBaseController() {
+            super(null);
+        }
     }
 
     /**
      * Test implementation of Hashable interface
      */
-    private static class TestHashableEntity implements Hashable {
+    private static class TestHashableEntity implements Identifiable<String>, Hashable {
+        private final String id;
         private final String etag;
 
         TestHashableEntity(String etag) {
+            this(etag, etag);
+        }
+
+        TestHashableEntity(String id, String etag) {
+            this.id = id;
             this.etag = etag;
         }
 
+        @Override
+        public String getId() {
+            return id;
+        }
+
         @Override
         public String getETag() {
             return etag;
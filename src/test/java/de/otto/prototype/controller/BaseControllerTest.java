@@ -26,7 +26,7 @@ abstract class BaseControllerTest {
     static final Gson GSON = new GsonBuilder().serializeNulls().create();
     private static final Locale LOCALE = LocaleContextHolder.getLocale();
 
-    private static MessageSource messageSource;
+    static MessageSource messageSource;
     MockMvc mvc;
 
     void setupDefaultMockMvc(Object controller) {
@@ -1,6 +1,8 @@
 package de.otto.prototype.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
 import com.google.common.hash.HashCode;
 import com.google.gson.reflect.TypeToken;
@@ -11,8 +13,17 @@ import de.otto.prototype.controller.representation.ValidationRepresentation;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
 import de.otto.prototype.exceptions.InvalidGroupException;
 import de.otto.prototype.exceptions.NotFoundException;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.CountedGroup;
 import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.Neighbours;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.model.VersionOnly;
 import de.otto.prototype.service.GroupService;
+import de.otto.prototype.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -26,6 +37,7 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -33,10 +45,12 @@ import java.util.stream.Stream;
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.collect.ImmutableList.of;
 import static com.google.common.hash.Hashing.sha256;
+import static de.otto.prototype.controller.BaseController.MERGE_PATCH_JSON_VALUE;
 import static de.otto.prototype.controller.GroupController.URL_GROUP;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.BDDMockito.*;
@@ -58,9 +72,14 @@ class GroupControllerTest extends BaseControllerTest {
     private static final Group VALID_MINIMUM_GROUP_WITH_ID =
             VALID_MINIMUM_GROUP.toBuilder().id(VALID_GROUP_ID).build();
 
+    private static final CollectionVersion COLLECTION_VERSION = new CollectionVersion("group", "someEpoch", 3);
+
     @Mock
     private GroupService groupService;
 
+    @Mock
+    private UserService userService;
+
     private static Stream<Arguments> invalidNewGroupProvider() {
         return Streams.concat(Stream.of(
                 Arguments.of(VALID_MINIMUM_GROUP.toBuilder().id(VALID_GROUP_ID).build(), buildUVRep(of(buildUVERep("error.id.new", "group"))))),
@@ -83,15 +102,21 @@ class GroupControllerTest extends BaseControllerTest {
     private void assertGroupRepresentation(String responseBody) {
         DocumentContext parsedResponse = JsonPath.parse(responseBody);
         assertAll("group representation",
-                () -> assertThat(GSON.fromJson(parsedResponse.read("$.content").toString(), Group.class), is(VALID_MINIMUM_GROUP_WITH_ID)),
-                () -> assertThat(parsedResponse.read("$.links[0].href"), containsString("/group/" + VALID_MINIMUM_GROUP_WITH_ID.getId())));
+                () -> assertThat(parsedResponse.read("$.content.id"), is(VALID_MINIMUM_GROUP_WITH_ID.getId())),
+                () -> assertThat(parsedResponse.read("$.content.name"), is(VALID_MINIMUM_GROUP_WITH_ID.getName())),
+                () -> assertThat(parsedResponse.read("$.content"), not(hasKey("userIds"))),
+                () -> assertThat(parsedResponse.read("$.memberCount"), is(1)),
+                () -> assertThat(parsedResponse.read("$.links[0].href"), containsString("/group/" + VALID_MINIMUM_GROUP_WITH_ID.getId())),
+                () -> assertThat(parsedResponse.<List<String>>read("$.links[?(@.rel == 'members')].href"),
+                        hasItem(org.hamcrest.CoreMatchers.endsWith("/group/" + VALID_MINIMUM_GROUP_WITH_ID.getId() + "/members"))));
     }
 
     @BeforeEach
     void setUp() {
         initMessageSource();
         initMocks(this);
-        setupDefaultMockMvc(new GroupController(groupService));
+        given(groupService.findCollectionVersion()).willReturn(COLLECTION_VERSION);
+        setupDefaultMockMvc(new GroupController(groupService, userService, new ObjectMapper(), 100, 50, 3600, 2, messageSource));
     }
 
     @ParameterizedTest
@@ -196,6 +221,19 @@ class GroupControllerTest extends BaseControllerTest {
                     .andExpect(content().string(""));
         }
 
+        @Test
+        @DisplayName("should answer a matching etag from the collection version without loading the groups")
+        void shouldReturnNotModifiedFromCollectionVersionOnGetAll() throws Exception {
+            mvc.perform(get(URL_GROUP)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, COLLECTION_VERSION.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(ETAG, "\"" + COLLECTION_VERSION.getETag() + "\""))
+                    .andExpect(content().string(""));
+
+            then(groupService).should(never()).findAll();
+        }
+
         private void assertGroupListRepresentation(HashCode expectedHashCode, MvcResult result) throws UnsupportedEncodingException {
             DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
             assertAll("group list representation",
@@ -238,17 +276,204 @@ class GroupControllerTest extends BaseControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("when the group list is streamed")
+    class streamGroups {
+        @Test
+        @DisplayName("should open the group stream only when the response is written and bound it by the export timeout")
+        void shouldOpenStreamOnlyWhenWritten() throws Exception {
+            given(groupService.findFirstId()).willReturn(Optional.of(VALID_GROUP_ID));
+            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_GROUP + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            then(groupService).should(never()).findAll();
+            assertThat(asyncResult.getRequest().getAsyncContext().getTimeout(), is(3600000L));
+
+            mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk());
+            then(groupService).should().findAll();
+        }
+
+        @Test
+        @DisplayName("should write the list of all groups to the response stream")
+        void shouldStreamListOfGroups() throws Exception {
+            given(groupService.findFirstId()).willReturn(Optional.of(VALID_GROUP_ID));
+            given(groupService.count()).willReturn(1L);
+            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_GROUP + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            final MvcResult result = mvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(ETAG, "\"" + COLLECTION_VERSION.getETag() + "\""))
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("streamed group list representation",
+                    () -> assertThat(parsedResponse.read("$.links[0].href"), containsString("stream=true")),
+                    () -> assertThat(parsedResponse.read("$.links[1].href"), containsString("/group/" + VALID_GROUP_ID)),
+                    () -> assertThat(parsedResponse.read("$.total"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].links[0].href"), containsString("/group/" + VALID_GROUP_ID)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.name"), is(VALID_MINIMUM_GROUP_WITH_ID.getName())));
+        }
+
+        @Test
+        @DisplayName("should return a no content response if no groups exist")
+        void shouldReturnNoContentIfNoGroupsOnStream() throws Exception {
+            given(groupService.findFirstId()).willReturn(Optional.empty());
+
+            mvc.perform(get(URL_GROUP + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNoContent())
+                    .andExpect(content().string(""));
+
+            then(groupService).should(never()).findAll();
+        }
+
+        @Test
+        @DisplayName("should return a not modified response without opening the stream if the etag matches")
+        void shouldReturnNotModifiedOnStream() throws Exception {
+            mvc.perform(get(URL_GROUP + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, COLLECTION_VERSION.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(groupService).should(never()).findAll();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the groups are exported")
+    class exportGroups {
+        @Test
+        @DisplayName("should stream one group per line with only the given properties and the id")
+        void shouldExportGroupsAsNdJson() throws Exception {
+            given(groupService.exportAll(null, ImmutableSet.of("name"), 50)).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_GROUP + "/_export?fields=name"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            final MvcResult result = mvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(CONTENT_TYPE, "application/x-ndjson"))
+                    .andReturn();
+
+            assertThat(result.getResponse().getContentAsString(),
+                    is("{\"id\":\"" + VALID_GROUP_ID + "\",\"name\":\"" + VALID_MINIMUM_GROUP_WITH_ID.getName() + "\"}\n"));
+        }
+    }
+
+    @Nested
+    @DisplayName("when a page of groups is requested")
+    class getGroupPage {
+        @Test
+        @DisplayName("should return the first page with a next rel-link")
+        void shouldReturnFirstPageWithNextLink() throws Exception {
+            final Group first = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("first").build();
+            final Group second = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("second").build();
+            given(groupService.findPage(null, null, 2, true)).willReturn(KeysetPage.forward(of(first, second, VALID_MINIMUM_GROUP_WITH_ID), 2, false));
+            given(groupService.count()).willReturn(3L);
+
+            MvcResult result = mvc.perform(get(URL_GROUP + "?limit=2")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists(ETAG))
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("group page representation",
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[1].content.id"), is("second")),
+                    () -> assertThat(parsedResponse.read("$.total"), is(3)),
+                    () -> assertThat(parsedResponse.read("$.links[1].rel"), is("start")),
+                    () -> assertThat(parsedResponse.read("$.links[1].href"), org.hamcrest.CoreMatchers.endsWith("/group?limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("next")),
+                    () -> assertThat(parsedResponse.read("$.links[2].href"), org.hamcrest.CoreMatchers.endsWith("/group?after=second&limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links.length()"), is(3)));
+        }
+
+        @Test
+        @DisplayName("should omit the user ids if they are not requested")
+        void shouldOmitUserIdsIfNotRequested() throws Exception {
+            final Group withoutUserIds = GSON.fromJson("{\"id\":\"first\",\"name\":\"someGroupName\"}", Group.class);
+            given(groupService.findPage("someCursor", null, 20, false)).willReturn(KeysetPage.forward(of(withoutUserIds), 20, true));
+
+            MvcResult result = mvc.perform(get(URL_GROUP + "?after=someCursor&includeUserIds=false")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("group page without user ids",
+                    () -> assertThat(parsedResponse.read("$.content[0].content.id"), is("first")),
+                    () -> assertThat(parsedResponse.read("$.content[0].content"), not(hasKey("userIds"))),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("prev")));
+            then(groupService).should(never()).findAll();
+        }
+
+        @Test
+        @DisplayName("should cap the requested page size to the configured maximum")
+        void shouldCapPageSizeToMaximum() throws Exception {
+            given(groupService.findPage(null, null, 100, true)).willReturn(KeysetPage.forward(of(VALID_MINIMUM_GROUP_WITH_ID), 100, false));
+
+            mvc.perform(get(URL_GROUP + "?limit=5000")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+
+            then(groupService).should().findPage(null, null, 100, true);
+        }
+
+        @Test
+        @DisplayName("should return a not modified response if the page etag matches")
+        void shouldReturnNotModifiedIfPageETagMatches() throws Exception {
+            given(groupService.findPage(null, "second", 20, true)).willReturn(KeysetPage.backward(of(VALID_MINIMUM_GROUP_WITH_ID), 20, lastId -> true));
+
+            final String pageETag = mvc.perform(get(URL_GROUP + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(ETAG);
+
+            mvc.perform(get(URL_GROUP + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, pageETag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("should return a not modified response without building the page if the quoted page etag matches")
+        void shouldNotBuildPageIfQuotedPageETagMatches() throws Exception {
+            given(groupService.findPage(null, "second", 20, true)).willReturn(KeysetPage.backward(of(VALID_MINIMUM_GROUP_WITH_ID), 20, lastId -> true));
+
+            final String pageETag = mvc.perform(get(URL_GROUP + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(ETAG);
+
+            mvc.perform(get(URL_GROUP + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, pageETag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(groupService).should(times(1)).count();
+        }
+    }
+
     @Nested
     @DisplayName("when a group is retrieved via a given id")
     class getOne {
-
         @Test
         @DisplayName("should return a group with all possible rel-links")
         void shouldReturnAllLinksIfGetGroupFromMiddlePosition() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("first").build(),
-                    VALID_MINIMUM_GROUP_WITH_ID,
-                    VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("last").build()));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours("first", "first", "last"));
 
             MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
                     .accept(MediaType.APPLICATION_JSON))
@@ -266,8 +491,8 @@ class GroupControllerTest extends BaseControllerTest {
         @Test
         @DisplayName("should return a group with only self and start rel-links")
         void shouldReturnSelfAndStartIfOnlyOne() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
 
             MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
                     .accept(MediaType.APPLICATION_JSON))
@@ -283,9 +508,8 @@ class GroupControllerTest extends BaseControllerTest {
         @Test
         @DisplayName("should return a group with prev and start rel-links")
         void shouldReturnPrevIfLastGroup() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("first").build(),
-                    VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours("first", "first", null));
 
             MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
                     .accept(MediaType.APPLICATION_JSON))
@@ -302,9 +526,8 @@ class GroupControllerTest extends BaseControllerTest {
         @Test
         @DisplayName("should return a group with next rel-link")
         void shouldReturnNextIfFirstGroup() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID,
-                    VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("last").build()));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, "last"));
 
             MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
                     .accept(MediaType.APPLICATION_JSON))
@@ -321,8 +544,8 @@ class GroupControllerTest extends BaseControllerTest {
         @Test
         @DisplayName("should return a group if eTag is different")
         void shouldReturnAGroupAndETagHeaderIfDifferentETagGetOne() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
 
             MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
                     .accept(MediaType.APPLICATION_JSON)
@@ -332,13 +555,13 @@ class GroupControllerTest extends BaseControllerTest {
 
             assertGroupRepresentation(result.getResponse().getContentAsString());
             final String eTagHeader = result.getResponse().getHeader(ETAG);
-            assertThat(eTagHeader.substring(1, eTagHeader.length() - 1), is(VALID_MINIMUM_GROUP_WITH_ID.getETag()));
+            assertThat(eTagHeader, is(VALID_MINIMUM_GROUP_WITH_ID.getETag()));
         }
 
         @Test
         @DisplayName("should return a not modified response if eTag is equal")
         void shouldReturnNoGroupIfETagMatches() throws Exception {
-            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
 
             final String eTag = VALID_MINIMUM_GROUP_WITH_ID.getETag();
             mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
@@ -349,6 +572,50 @@ class GroupControllerTest extends BaseControllerTest {
                     .andExpect(content().string(""));
         }
 
+        @Test
+        @DisplayName("should return a not modified response from the stored etag without loading the group")
+        void shouldReturnNotModifiedFromStoredETag() throws Exception {
+            given(groupService.findETag(VALID_GROUP_ID)).willReturn(Optional.of("someStoredETag"));
+
+            mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "\"someStoredETag\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(ETAG, "someStoredETag"))
+                    .andExpect(content().string(""));
+
+            then(groupService).should(never()).findOne(VALID_GROUP_ID);
+        }
+
+        @Test
+        @DisplayName("should return a not modified response if the quoted etag matches the loaded group")
+        void shouldReturnNotModifiedIfQuotedETagMatchesLoadedGroup() throws Exception {
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+
+            mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "\"" + VALID_MINIMUM_GROUP_WITH_ID.getETag() + "\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(groupService).should(never()).findNeighbours(VALID_GROUP_ID);
+        }
+
+        @Test
+        @DisplayName("should load the group if the stored etag differs")
+        void shouldLoadGroupIfStoredETagDiffers() throws Exception {
+            given(groupService.findETag(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID.getETag()));
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
+
+            mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "someOutdatedETag"))
+                    .andExpect(status().isOk());
+
+            then(groupService).should().findOne(VALID_GROUP_ID);
+        }
+
         @Test
         @DisplayName("should return a not found response if given id is unknown")
         void shouldReturn404IfGroupNotFoundOnGetOne() throws Exception {
@@ -358,6 +625,113 @@ class GroupControllerTest extends BaseControllerTest {
                     .accept(MediaType.APPLICATION_JSON))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("should return the member count read together with the group without its user ids")
+        void shouldReturnCountedMembers() throws Exception {
+            given(groupService.findOne(VALID_GROUP_ID)).willReturn(Optional.of(new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID.toBuilder().clearUserIds().build(), 5)));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
+
+            mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.memberCount", is(5)));
+
+            then(groupService).should(never()).countMembers(VALID_GROUP_ID);
+        }
+    }
+
+    @Nested
+    @DisplayName("when a batch of groups to create or update is given")
+    class saveGroups {
+        private final Group otherGroup = VALID_MINIMUM_GROUP.toBuilder().name("otherGroupName").build();
+
+        @BeforeEach
+        void setUp() {
+            given(groupService.saveAll(of(VALID_MINIMUM_GROUP_WITH_ID, otherGroup))).willReturn(of(
+                    BulkItem.succeeded(0, VALID_MINIMUM_GROUP_WITH_ID),
+                    BulkItem.failed(1, otherGroup, new InvalidGroupException(otherGroup, "business", "the group name is already taken"))));
+        }
+
+        @Test
+        @DisplayName("should save the groups of a json array and report the outcome of every group")
+        void shouldSaveGroupsOfJsonArray() throws Exception {
+            MvcResult result = mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(VALID_MINIMUM_GROUP_WITH_ID, otherGroup))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("bulk representation",
+                    () -> assertThat(parsedResponse.read("$.succeeded"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.failed"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(200)),
+                    () -> assertThat(parsedResponse.read("$.content[0].id"), is(VALID_GROUP_ID)),
+                    () -> assertThat(parsedResponse.read("$.content[0].eTag"), is(VALID_MINIMUM_GROUP_WITH_ID.getETag())),
+                    () -> assertThat(parsedResponse.read("$.content[0].links[0].href"), containsString(URL_GROUP + "/" + VALID_GROUP_ID)),
+                    () -> assertThat(parsedResponse.read("$.content[1].index"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(400)),
+                    () -> assertThat(parsedResponse.read("$.content[1].errors[0].errorMessage"), is("the group name is already taken")));
+        }
+
+        @Test
+        @DisplayName("should report groups deleted or changed meanwhile as a single update would")
+        void shouldReportNotFoundAndConcurrentModification() throws Exception {
+            given(groupService.saveAll(of(VALID_MINIMUM_GROUP_WITH_ID, otherGroup))).willReturn(of(
+                    BulkItem.failed(0, VALID_MINIMUM_GROUP_WITH_ID, new NotFoundException("group not found")),
+                    BulkItem.failed(1, otherGroup, new ConcurrentModificationException("the group was changed concurrently"))));
+
+            mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(VALID_MINIMUM_GROUP_WITH_ID, otherGroup))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].status").value(404))
+                    .andExpect(jsonPath("$.content[0].errors[0].errorMessage").value("group not found"))
+                    .andExpect(jsonPath("$.content[1].status").value(412))
+                    .andExpect(jsonPath("$.content[1].errors[0].errorMessage").value("the group was changed concurrently"))
+                    .andExpect(jsonPath("$.content[1].eTag").doesNotExist());
+        }
+
+        @Test
+        @DisplayName("should save the groups of newline delimited json")
+        void shouldSaveGroupsOfNdJson() throws Exception {
+            mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType("application/x-ndjson")
+                    .content(GSON.toJson(VALID_MINIMUM_GROUP_WITH_ID) + "\n" + GSON.toJson(otherGroup) + "\n"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.failed").value(1));
+
+            then(groupService).should().saveAll(of(VALID_MINIMUM_GROUP_WITH_ID, otherGroup));
+        }
+
+        @Test
+        @DisplayName("should return a bad request response for an empty batch or a line holding no group")
+        void shouldReturnBadRequestForEmptyOrMalformedBatch() throws Exception {
+            mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content("[]"))
+                    .andExpect(status().isBadRequest());
+            mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType("application/x-ndjson")
+                    .content(GSON.toJson(VALID_MINIMUM_GROUP) + "\n{no json"))
+                    .andExpect(status().isBadRequest());
+
+            then(groupService).should(never()).saveAll(any());
+        }
+
+        @Test
+        @DisplayName("should return a bad request response for a batch above the maximum size")
+        void shouldReturnBadRequestForTooLargeBatch() throws Exception {
+            mvc.perform(post(URL_GROUP + "/_bulk")
+                    .contentType("application/x-ndjson")
+                    .content(GSON.toJson(VALID_MINIMUM_GROUP) + "\n" + GSON.toJson(otherGroup) + "\n" + GSON.toJson(VALID_MINIMUM_GROUP)))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errors[0].attribute").value("saveAll.groups"))
+                    .andExpect(jsonPath("$.errors[0].errorMessage").value(buildUVERep("error.limit.invalid", "saveAll.groups").getErrorMessage()));
+
+            then(groupService).should(never()).saveAll(any());
+        }
     }
 
     @Nested
@@ -367,7 +741,7 @@ class GroupControllerTest extends BaseControllerTest {
         @DisplayName("should create the group and return it, a location and eTag header")
         void shouldCreatGroupAndReturnItsLocationAndETagOnPost() throws Exception {
             given(groupService.create(VALID_MINIMUM_GROUP)).willReturn(VALID_MINIMUM_GROUP_WITH_ID);
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
 
             MvcResult result = mvc.perform(post(URL_GROUP)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -418,7 +792,7 @@ class GroupControllerTest extends BaseControllerTest {
         @DisplayName("should update a group and return it with new etag")
         void shouldUpdateGroupAndReturnItAndItsETagOnPut() throws Exception {
             given(groupService.update(VALID_MINIMUM_GROUP_WITH_ID, null)).willReturn(VALID_MINIMUM_GROUP_WITH_ID);
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
 
             MvcResult result = mvc.perform(put(URL_GROUP + "/" + VALID_GROUP_ID)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -436,7 +810,7 @@ class GroupControllerTest extends BaseControllerTest {
         void shouldUpdateGroupWithETagHeaderAndReturnItAndItsETagOnPut() throws Exception {
             final String eTag = VALID_MINIMUM_GROUP_WITH_ID.getETag();
             given(groupService.update(VALID_MINIMUM_GROUP_WITH_ID, eTag)).willReturn(VALID_MINIMUM_GROUP_WITH_ID);
-            given(groupService.findAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
 
             MvcResult result = mvc.perform(put(URL_GROUP + "/" + VALID_GROUP_ID)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -508,6 +882,176 @@ class GroupControllerTest extends BaseControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("when the members of a group for a given id are retrieved")
+    class getGroupMembers {
+        @Test
+        @DisplayName("should return a page of member ids with the member count and paging rel-links")
+        void shouldReturnPageOfMemberIds() throws Exception {
+            given(groupService.countMembers(VALID_GROUP_ID)).willReturn(Optional.of(3));
+            given(groupService.findMembers(VALID_GROUP_ID, null, null, 2))
+                    .willReturn(KeysetPage.forward(of(new IdOnly("a"), new IdOnly("b"), new IdOnly("c")), 2, false));
+
+            MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID + "/members?limit=2")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("member page representation",
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[1].content.id"), is("b")),
+                    () -> assertThat(parsedResponse.read("$.content[1].content"), not(hasKey("firstName"))),
+                    () -> assertThat(parsedResponse.read("$.content[1].links[0].href"), org.hamcrest.CoreMatchers.endsWith("/user/b")),
+                    () -> assertThat(parsedResponse.read("$.total"), is(3)),
+                    () -> assertThat(parsedResponse.read("$.links[1].href"), org.hamcrest.CoreMatchers.endsWith("/group/" + VALID_GROUP_ID + "/members?limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("next")),
+                    () -> assertThat(parsedResponse.read("$.links[2].href"), org.hamcrest.CoreMatchers.endsWith("/group/" + VALID_GROUP_ID + "/members?after=b&limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links[3].rel"), is("group")));
+            then(userService).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should embed the summaries of the members of the page if requested")
+        void shouldEmbedUserSummariesIfRequested() throws Exception {
+            given(groupService.countMembers(VALID_GROUP_ID)).willReturn(Optional.of(2));
+            given(groupService.findMembers(VALID_GROUP_ID, "a", null, 20))
+                    .willReturn(KeysetPage.forward(of(new IdOnly("b"), new IdOnly("c")), 20, true));
+            given(userService.findSummaries(of("b", "c"))).willReturn(of(new UserSummary("c", "Erika", "Mustermann", 0L)));
+
+            MvcResult result = mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID + "/members?after=a&includeUsers=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("member page with user summaries",
+                    () -> assertThat(parsedResponse.read("$.content[0].content.id"), is("b")),
+                    () -> assertThat(parsedResponse.read("$.content[0].content"), not(hasKey("lastName"))),
+                    () -> assertThat(parsedResponse.read("$.content[1].content.lastName"), is("Mustermann")),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("prev")));
+            then(userService).should().findSummaries(of("b", "c"));
+        }
+
+        @Test
+        @DisplayName("should return a not found response if the group is unknown")
+        void shouldReturnNotFoundIfGroupIsUnknown() throws Exception {
+            given(groupService.countMembers(VALID_GROUP_ID)).willReturn(Optional.empty());
+
+            mvc.perform(get(URL_GROUP + "/" + VALID_GROUP_ID + "/members")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+
+            then(groupService).should(never()).findMembers(anyString(), any(), any(), anyInt());
+        }
+    }
+
+    @Nested
+    @DisplayName("when members of a group for a given id are about to be changed")
+    class changeGroupMembers {
+        @Test
+        @DisplayName("should add the given users and return the new etag")
+        void shouldAddMembersAndReturnNewETagOnPost() throws Exception {
+            given(groupService.addMembers(VALID_GROUP_ID, of("a", "b"), null)).willReturn(new VersionOnly(1L));
+
+            mvc.perform(post(URL_GROUP + "/" + VALID_GROUP_ID + "/members")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of("a", "b"))))
+                    .andExpect(status().isNoContent())
+                    .andExpect(header().string("eTag", is("W/\"1\"")));
+        }
+
+        @Test
+        @DisplayName("should remove the comma separated users and return the new etag")
+        void shouldRemoveMembersAndReturnNewETagOnDelete() throws Exception {
+            given(groupService.removeMembers(VALID_GROUP_ID, of("a", "b"), "W/\"0\"")).willReturn(new VersionOnly(1L));
+
+            mvc.perform(delete(URL_GROUP + "/" + VALID_GROUP_ID + "/members/a,b")
+                    .header(IF_MATCH, "W/\"0\""))
+                    .andExpect(status().isNoContent())
+                    .andExpect(header().string("eTag", is("W/\"1\"")));
+        }
+
+        @Test
+        @DisplayName("should return a precondition failed response if given eTag isn´t equal")
+        void shouldReturnPreconditionFailedIfETagsArentEqual() throws Exception {
+            willThrow(new ConcurrentModificationException("")).given(groupService).addMembers(VALID_GROUP_ID, of("a"), "differentEtag");
+
+            mvc.perform(post(URL_GROUP + "/" + VALID_GROUP_ID + "/members")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .header(IF_MATCH, "differentEtag")
+                    .content(GSON.toJson(of("a"))))
+                    .andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        @DisplayName("should return a bad request response if business validation fails")
+        void shouldReturnBadRequestIfBusinessValidationFails() throws Exception {
+            willThrow(new InvalidGroupException(VALID_MINIMUM_GROUP_WITH_ID, "business", "a group must keep at least one user"))
+                    .given(groupService).removeMembers(VALID_GROUP_ID, of(VALID_USER_ID), null);
+
+            mvc.perform(delete(URL_GROUP + "/" + VALID_GROUP_ID + "/members/" + VALID_USER_ID))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("when a group for a given id is about to be patched")
+    class patchGroup {
+        private final String patch = "{\"vip\": false}";
+
+        @Test
+        @DisplayName("should patch a group and return it with new etag")
+        void shouldPatchGroupAndReturnItAndItsETagOnPatch() throws Exception {
+            given(groupService.patch(VALID_GROUP_ID, new ObjectMapper().readTree(patch), null)).willReturn(VALID_MINIMUM_GROUP_WITH_ID);
+            given(groupService.findNeighbours(VALID_GROUP_ID)).willReturn(new Neighbours(VALID_GROUP_ID, null, null));
+
+            MvcResult result = mvc.perform(patch(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .accept(APPLICATION_JSON_VALUE)
+                    .content(patch))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", is(VALID_MINIMUM_GROUP_WITH_ID.getETag())))
+                    .andReturn();
+
+            assertGroupRepresentation(result.getResponse().getContentAsString());
+        }
+
+        @Test
+        @DisplayName("should return a precondition failed response if given eTag isn´t equal")
+        void shouldReturnPreconditionFailedIfETagsArentEqual() throws Exception {
+            willThrow(new ConcurrentModificationException("")).given(groupService).patch(VALID_GROUP_ID, new ObjectMapper().readTree(patch), "differentEtag");
+
+            mvc.perform(patch(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .header(IF_MATCH, "differentEtag")
+                    .content(patch))
+                    .andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        @DisplayName("should return a not found response if given id is unknown")
+        void shouldReturnNotFoundIfIdNotFoundOnPatch() throws Exception {
+            willThrow(new NotFoundException("group not found")).given(groupService).patch(VALID_GROUP_ID, new ObjectMapper().readTree(patch), null);
+
+            mvc.perform(patch(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .content(patch))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        @DisplayName("should return a bad request response if the patch is no object")
+        void shouldReturnBadRequestIfPatchIsNoObject() throws Exception {
+            mvc.perform(patch(URL_GROUP + "/" + VALID_GROUP_ID)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .content("\"someName\""))
+                    .andExpect(status().isBadRequest());
+
+            then(groupService).shouldHaveNoInteractions();
+        }
+    }
+
     @Nested
     @DisplayName("when a group id is given to delete a group")
     class deleteGroup {
@@ -1,5 +1,7 @@
 package de.otto.prototype.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
 import com.google.common.hash.HashCode;
 import com.google.gson.reflect.TypeToken;
@@ -8,10 +10,18 @@ import com.jayway.jsonpath.JsonPath;
 import de.otto.prototype.controller.representation.ValidationEntryRepresentation;
 import de.otto.prototype.controller.representation.ValidationRepresentation;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
+import de.otto.prototype.exceptions.InvalidGroupException;
 import de.otto.prototype.exceptions.InvalidUserException;
 import de.otto.prototype.exceptions.NotFoundException;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.KeysetPage;
+import de.otto.prototype.model.Neighbours;
 import de.otto.prototype.model.Login;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.service.GroupService;
 import de.otto.prototype.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,23 +30,34 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
 
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.collect.ImmutableList.of;
 import static com.google.common.hash.Hashing.sha256;
+import static de.otto.prototype.controller.BaseController.MERGE_PATCH_JSON_VALUE;
 import static de.otto.prototype.controller.UserController.URL_USER;
+import static de.otto.prototype.model.UserSummary.summaryOf;
+import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.BDDMockito.*;
@@ -62,9 +83,14 @@ class UserControllerTest extends BaseControllerTest {
     private static final User validMinimumUserWithId =
             User.builder().id(validUserId).lastName("Mustermann").firstName("Max").age(30).login(validLoginWithId).build();
 
+    private static final CollectionVersion COLLECTION_VERSION = new CollectionVersion("user", "someEpoch", 3);
+
     @Mock
     private UserService userService;
 
+    @Mock
+    private GroupService groupService;
+
     private static Stream<Arguments> invalidNewUserProvider() {
         return Streams.concat(Stream.of(
                 Arguments.of(validMinimumUser.toBuilder().id(validUserId).build(), buildUVRep(of(buildUVERep("error.id.new", "user"))))),
@@ -102,7 +128,8 @@ class UserControllerTest extends BaseControllerTest {
     void init() {
         initMessageSource();
         initMocks(this);
-        setupDefaultMockMvc(new UserController(userService));
+        given(userService.findCollectionVersion()).willReturn(COLLECTION_VERSION);
+        setupDefaultMockMvc(new UserController(userService, groupService, new ObjectMapper(), 100, 50, 3600, 2, messageSource));
     }
 
     //TODO: can these two be nested?
@@ -142,7 +169,7 @@ class UserControllerTest extends BaseControllerTest {
         @Test
         @DisplayName("should return a no content response if no users found")
         void shouldReturnNotContentNoUsersOnGetAll() throws Exception {
-            given(userService.findAll()).willReturn(Stream.of());
+            given(userService.findAllSummaries()).willReturn(Stream.of());
 
             mvc.perform(get(URL_USER).accept(MediaType.APPLICATION_JSON))
                     .andExpect(status().isNoContent())
@@ -153,7 +180,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return the list of all users")
         void shouldReturnListOfUsersAndETagHeaderOnGetAll() throws Exception {
             final Supplier<Stream<User>> sup = () -> Stream.of(validMinimumUserWithId);
-            given(userService.findAll()).willReturn(sup.get());
+            given(userService.findAllSummaries()).willReturn(sup.get().map(UserSummary::summaryOf));
 
             final String combinedETags = sup.get().map(User::getETag).reduce("", (eTag1, eTag2) -> eTag1 + "," + eTag2);
             final HashCode hashCode = sha256().newHasher().putString(combinedETags, UTF_8).hash();
@@ -170,7 +197,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return the list of all users and their etag if etag differs")
         void shouldReturnListOfUsersAndETagHeaderIfDifferentEtagOnGetAll() throws Exception {
             final Supplier<Stream<User>> sup = () -> Stream.of(validMinimumUserWithId);
-            given(userService.findAll()).willReturn(sup.get());
+            given(userService.findAllSummaries()).willReturn(sup.get().map(UserSummary::summaryOf));
 
             final String combinedETags = sup.get().map(User::getETag).reduce("", (eTag1, eTag2) -> eTag1 + "," + eTag2);
             final HashCode hashCode = sha256().newHasher().putString(combinedETags, UTF_8).hash();
@@ -188,7 +215,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return a not modified response if etags are equal")
         void shouldReturnNoUserListIfETagMatchesOnGetAll() throws Exception {
             final Supplier<Stream<User>> sup = () -> Stream.of(validMinimumUserWithId);
-            given(userService.findAll()).willReturn(sup.get(), sup.get()); // Return fresh stream for each call
+            given(userService.findAllSummaries()).willReturn(sup.get().map(UserSummary::summaryOf), sup.get().map(UserSummary::summaryOf)); // Return fresh stream for each call
 
             // First, get the current ETag by making a request
             MvcResult initialResult = mvc.perform(get(URL_USER)
@@ -207,6 +234,19 @@ class UserControllerTest extends BaseControllerTest {
                     .andExpect(content().string(""));
         }
 
+        @Test
+        @DisplayName("should answer a matching etag from the collection version without loading the users")
+        void shouldReturnNotModifiedFromCollectionVersionOnGetAll() throws Exception {
+            mvc.perform(get(URL_USER)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, COLLECTION_VERSION.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(ETAG, "\"" + COLLECTION_VERSION.getETag() + "\""))
+                    .andExpect(content().string(""));
+
+            then(userService).should(never()).findAllSummaries();
+        }
+
         private void assertUserListRepresentation(HashCode expectedHashCode, MvcResult result) throws UnsupportedEncodingException {
             DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
             assertAll("user list representation",
@@ -248,6 +288,277 @@ class UserControllerTest extends BaseControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("when the user list is streamed")
+    class streamUsers {
+        @Test
+        @DisplayName("should write the list of all users to the response stream")
+        void shouldStreamListOfUsers() throws Exception {
+            given(userService.findFirstId()).willReturn(Optional.of(validUserId));
+            given(userService.count()).willReturn(1L);
+            given(userService.findAllSummaries()).willReturn(Stream.of(summaryOf(validMinimumUserWithId)));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_USER + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            final MvcResult result = mvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(ETAG, "\"" + COLLECTION_VERSION.getETag() + "\""))
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("streamed user list representation",
+                    () -> assertThat(parsedResponse.read("$.links[0].href"), containsString("stream=true")),
+                    () -> assertThat(parsedResponse.read("$.links[1].href"), containsString("/user/" + validUserId)),
+                    () -> assertThat(parsedResponse.read("$.total"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].links[0].href"), containsString("/user/" + validUserId)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.lastName"), is("Mustermann")));
+        }
+
+        @Test
+        @DisplayName("should return a no content response if no users exist")
+        void shouldReturnNoContentIfNoUsersOnStream() throws Exception {
+            given(userService.findFirstId()).willReturn(Optional.empty());
+
+            mvc.perform(get(URL_USER + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNoContent())
+                    .andExpect(content().string(""));
+
+            then(userService).should(never()).findAllSummaries();
+        }
+
+        @Test
+        @DisplayName("should return a not modified response without opening the stream if the etag matches")
+        void shouldReturnNotModifiedOnStream() throws Exception {
+            mvc.perform(get(URL_USER + "?stream=true")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, COLLECTION_VERSION.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(userService).should(never()).findAllSummaries();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the users are exported")
+    class exportUsers {
+        private final String afterId = "5a8c3ffb4c5d4a001c3b1f2e";
+
+        @Test
+        @DisplayName("should stream one user per line without null values and close the stream afterwards")
+        void shouldExportUsersAsNdJson() throws Exception {
+            final AtomicBoolean closed = new AtomicBoolean();
+            given(userService.exportAll(null, emptySet(), 50)).willReturn(Stream.of(validMinimumUserWithId, validMinimumUserWithId)
+                    .onClose(() -> closed.set(true)));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_USER + "/_export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            final MvcResult result = mvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(CONTENT_TYPE, "application/x-ndjson"))
+                    .andReturn();
+
+            final String[] lines = result.getResponse().getContentAsString().split("\n");
+            final DocumentContext firstLine = JsonPath.parse(lines[0]);
+            assertAll("exported users",
+                    () -> assertThat(lines.length, is(2)),
+                    () -> assertThat(firstLine.read("$.id"), is(validUserId)),
+                    () -> assertThat(firstLine.read("$.firstName"), is("Max")),
+                    () -> assertThat(firstLine.<Map<String, Object>>read("$"), not(hasKey("secondName"))),
+                    () -> assertThat(closed.get(), is(true)));
+        }
+
+        @Test
+        @DisplayName("should resume after the given id and write only the given properties and the id")
+        void shouldExportGivenPropertiesAfterId() throws Exception {
+            given(userService.exportAll(afterId, ImmutableSet.of("firstName", "age"), 50)).willReturn(Stream.of(validMinimumUserWithId));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_USER + "/_export?after=" + afterId + "&fields=firstName,age"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            final MvcResult result = mvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            final Map<String, Object> line = JsonPath.parse(result.getResponse().getContentAsString()).read("$");
+            assertThat(line.keySet(), is(ImmutableSet.of("id", "firstName", "age")));
+        }
+
+        @Test
+        @DisplayName("should open the export only when the response is written and bound it by the export timeout")
+        void shouldOpenExportOnlyWhenWritten() throws Exception {
+            given(userService.exportAll(null, emptySet(), 50)).willReturn(Stream.of(validMinimumUserWithId));
+
+            final MvcResult asyncResult = mvc.perform(get(URL_USER + "/_export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            then(userService).should(never()).exportAll(null, emptySet(), 50);
+            assertThat(asyncResult.getRequest().getAsyncContext().getTimeout(), is(3600000L));
+
+            mvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk());
+            then(userService).should().exportAll(null, emptySet(), 50);
+        }
+    }
+
+    @Nested
+    @DisplayName("when try to retrieve a page of users")
+    class getUserPage {
+        @Test
+        @DisplayName("should return the first page with a next rel-link")
+        void shouldReturnFirstPageWithNextLink() throws Exception {
+            final UserSummary first = summaryOf(validMinimumUserWithId.toBuilder().id("first").build());
+            final UserSummary second = summaryOf(validMinimumUserWithId.toBuilder().id("second").build());
+            given(userService.findPage(null, null, 2)).willReturn(KeysetPage.forward(of(first, second, summaryOf(validMinimumUserWithId)), 2, false));
+            given(userService.count()).willReturn(3L);
+
+            MvcResult result = mvc.perform(get(URL_USER + "?limit=2")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists(ETAG))
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("user page representation",
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[1].content.id"), is("second")),
+                    () -> assertThat(parsedResponse.read("$.total"), is(3)),
+                    () -> assertThat(parsedResponse.read("$.links[0].rel"), is("self")),
+                    () -> assertThat(parsedResponse.read("$.links[1].rel"), is("start")),
+                    () -> assertThat(parsedResponse.read("$.links[1].href"), org.hamcrest.CoreMatchers.endsWith("/user?limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("next")),
+                    () -> assertThat(parsedResponse.read("$.links[2].href"), org.hamcrest.CoreMatchers.endsWith("/user?after=second&limit=2")),
+                    () -> assertThat(parsedResponse.read("$.links.length()"), is(3)));
+        }
+
+        @Test
+        @DisplayName("should return a page after a given id with prev and next rel-links")
+        void shouldReturnPageAfterCursorWithPrevAndNextLinks() throws Exception {
+            final UserSummary second = summaryOf(validMinimumUserWithId.toBuilder().id("second").build());
+            final UserSummary third = summaryOf(validMinimumUserWithId.toBuilder().id("third").build());
+            given(userService.findPage("first", null, 1)).willReturn(KeysetPage.forward(of(second, third), 1, true));
+
+            MvcResult result = mvc.perform(get(URL_USER + "?after=first&limit=1")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("user page rel-links",
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.links[2].rel"), is("prev")),
+                    () -> assertThat(parsedResponse.read("$.links[2].href"), org.hamcrest.CoreMatchers.endsWith("/user?before=second&limit=1")),
+                    () -> assertThat(parsedResponse.read("$.links[3].rel"), is("next")),
+                    () -> assertThat(parsedResponse.read("$.links[3].href"), org.hamcrest.CoreMatchers.endsWith("/user?after=second&limit=1")));
+        }
+
+        @Test
+        @DisplayName("should cap the requested page size to the configured maximum")
+        void shouldCapPageSizeToMaximum() throws Exception {
+            given(userService.findPage(null, null, 100)).willReturn(KeysetPage.forward(of(summaryOf(validMinimumUserWithId)), 100, false));
+
+            mvc.perform(get(URL_USER + "?limit=5000")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+
+            then(userService).should().findPage(null, null, 100);
+            then(userService).should(never()).findAllSummaries();
+        }
+
+        @Test
+        @DisplayName("should return a not modified response if the page etag matches")
+        void shouldReturnNotModifiedIfPageETagMatches() throws Exception {
+            given(userService.findPage(null, "second", 20)).willReturn(KeysetPage.backward(of(summaryOf(validMinimumUserWithId)), 20, lastId -> true));
+
+            final String pageETag = mvc.perform(get(URL_USER + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(ETAG);
+
+            mvc.perform(get(URL_USER + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, pageETag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("should return a not modified response without building the page if the quoted page etag matches")
+        void shouldNotBuildPageIfQuotedPageETagMatches() throws Exception {
+            given(userService.findPage(null, "second", 20)).willReturn(KeysetPage.backward(of(summaryOf(validMinimumUserWithId)), 20, lastId -> true));
+
+            final String pageETag = mvc.perform(get(URL_USER + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(ETAG);
+
+            mvc.perform(get(URL_USER + "?before=second")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, pageETag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(userService).should(times(1)).count();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the groups of a user are retrieved")
+    class getGroupsOfUser {
+        private final Group first = Group.builder().id("first").name("someGroupName").build();
+        private final Group second = Group.builder().id("second").name("otherGroupName").build();
+
+        @Test
+        @DisplayName("should return a page of the groups the user is member of with paging rel-links")
+        void shouldReturnPageOfGroups() throws Exception {
+            given(groupService.findPageByMember(validUserId, null, null, 1)).willReturn(KeysetPage.forward(of(first, second), 1, false));
+            given(groupService.countByMember(validUserId)).willReturn(2L);
+
+            MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId + "/groups?limit=1")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists(ETAG))
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("group page of a user",
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.id"), is("first")),
+                    () -> assertThat(parsedResponse.read("$.content[0].links[0].href"), org.hamcrest.CoreMatchers.endsWith("/group/first")),
+                    () -> assertThat(parsedResponse.read("$.total"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.links[2].href"), org.hamcrest.CoreMatchers.endsWith("/user/" + validUserId + "/groups?after=first&limit=1")),
+                    () -> assertThat(parsedResponse.read("$.links[3].rel"), is("user")));
+            then(userService).should(never()).findETag(validUserId);
+        }
+
+        @Test
+        @DisplayName("should return an empty page for a user without groups")
+        void shouldReturnEmptyPageForUserWithoutGroups() throws Exception {
+            given(groupService.findPageByMember(validUserId, null, null, 20)).willReturn(KeysetPage.forward(of(), 20, false));
+            given(userService.findETag(validUserId)).willReturn(Optional.of("W/\"0\""));
+
+            mvc.perform(get(URL_USER + "/" + validUserId + "/groups")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(0));
+        }
+
+        @Test
+        @DisplayName("should return a not found response if the user is unknown")
+        void shouldReturnNotFoundIfUserIsUnknown() throws Exception {
+            given(groupService.findPageByMember(validUserId, null, null, 20)).willReturn(KeysetPage.forward(of(), 20, false));
+            given(userService.findETag(validUserId)).willReturn(Optional.empty());
+
+            mvc.perform(get(URL_USER + "/" + validUserId + "/groups")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
     @Nested
     @DisplayName("when a user is retrieved via a given id")
     class getOne {
@@ -255,9 +566,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return a user with all possible rel-links")
         void shouldReturnAllLinksIfGetUserFromMiddlePosition() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
-            given(userService.findAll()).willReturn(Stream.of(validMinimumUserWithId.toBuilder().id("first").build(),
-                    validMinimumUserWithId.toBuilder().id("someUserId").build(),
-                    validMinimumUserWithId.toBuilder().id("last").build()));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours("first", "first", "last"));
 
             MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON))
@@ -276,7 +585,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return a user with only self and start rel-links")
         void shouldReturnSelfAndStartIfOnlyOne() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
-            given(userService.findAll()).willReturn(Stream.of(validMinimumUserWithId.toBuilder().id("someUserId").build()));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON))
@@ -293,8 +602,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return a user with prev and start rel-links")
         void shouldReturnPrevIfLastUser() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
-            given(userService.findAll()).willReturn(Stream.of(validMinimumUserWithId.toBuilder().id("first").build(),
-                    validMinimumUserWithId.toBuilder().id("someUserId").build()));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours("first", "first", null));
 
             MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON))
@@ -312,8 +620,7 @@ class UserControllerTest extends BaseControllerTest {
         @DisplayName("should return a user with next rel-link")
         void shouldReturnNextIfFirstUser() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
-            given(userService.findAll()).willReturn(Stream.of(validMinimumUserWithId.toBuilder().id("someUserId").build(),
-                    validMinimumUserWithId.toBuilder().id("last").build()));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, "last"));
 
             MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON))
@@ -332,7 +639,7 @@ class UserControllerTest extends BaseControllerTest {
         void shouldReturnAUserAndETagHeaderIfDifferentETagGetOne() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
             final User user = validMinimumUserWithId.toBuilder().id("someUserId").build();
-            given(userService.findAll()).willReturn(Stream.of(user));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             MvcResult result = mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON)
@@ -342,7 +649,7 @@ class UserControllerTest extends BaseControllerTest {
 
             assertUserRepresentation(result.getResponse().getContentAsString(), validMinimumUserWithId);
             final String eTagHeader = result.getResponse().getHeader(ETAG);
-            assertThat(eTagHeader.substring(1, eTagHeader.length() - 1), is(user.getETag()));
+            assertThat(eTagHeader, is(user.getETag()));
         }
 
         @Test
@@ -350,7 +657,7 @@ class UserControllerTest extends BaseControllerTest {
         void shouldReturnNoUserIfETagMatches() throws Exception {
             given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
             final User user = validMinimumUserWithId.toBuilder().id("someUserId").build();
-            given(userService.findAll()).willReturn(Stream.of(user));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             mvc.perform(get(URL_USER + "/" + validUserId)
                     .accept(MediaType.APPLICATION_JSON)
@@ -360,6 +667,50 @@ class UserControllerTest extends BaseControllerTest {
                     .andExpect(content().string(""));
         }
 
+        @Test
+        @DisplayName("should return a not modified response from the stored etag without loading the user")
+        void shouldReturnNotModifiedFromStoredETag() throws Exception {
+            given(userService.findETag(validUserId)).willReturn(Optional.of("someStoredETag"));
+
+            mvc.perform(get(URL_USER + "/" + validUserId)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "\"someStoredETag\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(ETAG, "someStoredETag"))
+                    .andExpect(content().string(""));
+
+            then(userService).should(never()).findOne(validUserId);
+        }
+
+        @Test
+        @DisplayName("should return a not modified response if the quoted etag matches the loaded user")
+        void shouldReturnNotModifiedIfQuotedETagMatchesLoadedUser() throws Exception {
+            given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
+
+            mvc.perform(get(URL_USER + "/" + validUserId)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "\"" + validMinimumUserWithId.getETag() + "\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            then(userService).should(never()).findNeighbours(validUserId);
+        }
+
+        @Test
+        @DisplayName("should load the user if the stored etag differs")
+        void shouldLoadUserIfStoredETagDiffers() throws Exception {
+            given(userService.findETag(validUserId)).willReturn(Optional.of(validMinimumUserWithId.getETag()));
+            given(userService.findOne(validUserId)).willReturn(Optional.of(validMinimumUserWithId));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
+
+            mvc.perform(get(URL_USER + "/" + validUserId)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(IF_NONE_MATCH, "someOutdatedETag"))
+                    .andExpect(status().isOk());
+
+            then(userService).should().findOne(validUserId);
+        }
+
         @Test
         @DisplayName("should return a not found response if given id is unknown")
         void shouldReturn404IfUserNotFoundOnGetOne() throws Exception {
@@ -380,7 +731,7 @@ class UserControllerTest extends BaseControllerTest {
         void shouldUpdateUserAndReturnHimAndHisETagOnPut() throws Exception {
             final User updatedUser = validMinimumUserWithId.toBuilder().build();
             given(userService.update(updatedUser, null)).willReturn(updatedUser);
-            given(userService.findAll()).willReturn(Stream.of(updatedUser));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             MvcResult result = mvc.perform(put(URL_USER + "/" + validUserId)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -398,7 +749,7 @@ class UserControllerTest extends BaseControllerTest {
         void shouldUpdateUserWithETagHeaderAndReturnHimAndHisETagOnPut() throws Exception {
             final String eTag = validMinimumUserWithId.getETag();
             given(userService.update(validMinimumUserWithId, eTag)).willReturn(validMinimumUserWithId);
-            given(userService.findAll()).willReturn(Stream.of(validMinimumUserWithId));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             MvcResult result = mvc.perform(put(URL_USER + "/" + validUserId)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -474,6 +825,191 @@ class UserControllerTest extends BaseControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("when a user for a given id is about to be patched")
+    class patchUser {
+        private final String patch = "{\"age\": 40}";
+
+        @Test
+        @DisplayName("should patch a user and return it with new etag")
+        void shouldPatchUserAndReturnHimAndHisETagOnPatch() throws Exception {
+            final User patchedUser = validMinimumUserWithId.toBuilder().age(40).build();
+            given(userService.patch(validUserId, new ObjectMapper().readTree(patch), null)).willReturn(patchedUser);
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
+
+            MvcResult result = mvc.perform(patch(URL_USER + "/" + validUserId)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .accept(APPLICATION_JSON_VALUE)
+                    .content(patch))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", is(patchedUser.getETag())))
+                    .andReturn();
+
+            assertUserRepresentation(result.getResponse().getContentAsString(), patchedUser);
+        }
+
+        @Test
+        @DisplayName("should pass the if match header on to the service")
+        void shouldPatchUserWithETagHeader() throws Exception {
+            final String eTag = validMinimumUserWithId.getETag();
+            given(userService.patch(validUserId, new ObjectMapper().readTree(patch), eTag)).willReturn(validMinimumUserWithId);
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
+
+            mvc.perform(patch(URL_USER + "/" + validUserId)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .header(IF_MATCH, eTag)
+                    .content(patch))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        @DisplayName("should return a precondition failed response if given eTag isn´t equal")
+        void shouldReturnPreconditionFailedIfETagsArentEqual() throws Exception {
+            willThrow(new ConcurrentModificationException("")).given(userService).patch(validUserId, new ObjectMapper().readTree(patch), "differentEtag");
+
+            mvc.perform(patch(URL_USER + "/" + validUserId)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .header(IF_MATCH, "differentEtag")
+                    .content(patch))
+                    .andExpect(status().isPreconditionFailed())
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("should return a not found response if given id is unknown")
+        void shouldReturnNotFoundIfIdNotFoundOnPatch() throws Exception {
+            willThrow(new NotFoundException("user not found")).given(userService).patch(validUserId, new ObjectMapper().readTree(patch), null);
+
+            mvc.perform(patch(URL_USER + "/" + validUserId)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .content(patch))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        @DisplayName("should return a bad request response if the patch is no object")
+        void shouldReturnBadRequestIfPatchIsNoObject() throws Exception {
+            mvc.perform(patch(URL_USER + "/" + validUserId)
+                    .contentType(MERGE_PATCH_JSON_VALUE)
+                    .content("[]"))
+                    .andExpect(status().isBadRequest());
+
+            then(userService).shouldHaveNoInteractions();
+        }
+    }
+
+    @Nested
+    @DisplayName("when a batch of new users to create is given")
+    class createUsers {
+        private final User otherUser = validMinimumUser.toBuilder().firstName("Erika").build();
+
+        @BeforeEach
+        void setUp() {
+            given(userService.createAll(of(validMinimumUser, otherUser))).willReturn(of(
+                    BulkItem.succeeded(0, validMinimumUserWithId),
+                    BulkItem.failed(1, otherUser, new InvalidUserException(otherUser, "business", "this user does already exist"))));
+        }
+
+        @Test
+        @DisplayName("should create the users of a json array and report the outcome of every user")
+        void shouldCreateUsersOfJsonArray() throws Exception {
+            MvcResult result = mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(validMinimumUser, otherUser))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("bulk representation",
+                    () -> assertThat(parsedResponse.read("$.succeeded"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.failed"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(201)),
+                    () -> assertThat(parsedResponse.read("$.content[0].id"), is(validUserId)),
+                    () -> assertThat(parsedResponse.read("$.content[0].links[0].href"), containsString(URL_USER + "/" + validUserId)),
+                    () -> assertThat(parsedResponse.read("$.content[1].index"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(400)),
+                    () -> assertThat(parsedResponse.read("$.content[1].errors[0].errorMessage"), is("this user does already exist")));
+        }
+
+        @Test
+        @DisplayName("should report rejected writes with a stable message instead of the one of the database driver")
+        void shouldHideDriverMessageOfRejectedWrites() throws Exception {
+            given(userService.createAll(of(validMinimumUser, otherUser))).willReturn(of(
+                    BulkItem.failed(0, validMinimumUser, new DuplicateKeyException("E11000 duplicate key error collection: test.user index: login.mail")),
+                    BulkItem.failed(1, otherUser, new DataIntegrityViolationException("E121 Document failed validation"))));
+
+            MvcResult result = mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(validMinimumUser, otherUser))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            DocumentContext parsedResponse = JsonPath.parse(result.getResponse().getContentAsString());
+            assertAll("rejected writes",
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(409)),
+                    () -> assertThat(parsedResponse.read("$.content[0].errors[0].attribute"), is("write")),
+                    () -> assertThat(parsedResponse.read("$.content[0].errors[0].errorMessage"), is(buildUVERep("error.write.duplicate", "write").getErrorMessage())),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(409)),
+                    () -> assertThat(parsedResponse.read("$.content[1].errors[0].errorMessage"), is(buildUVERep("error.write.failed", "write").getErrorMessage())));
+        }
+
+        @Test
+        @DisplayName("should translate the messages of invalid users like the validation of a single user")
+        void shouldTranslateValidationMessages() throws Exception {
+            final User invalidUser = validMinimumUser.toBuilder().age(200).build();
+            given(userService.createAll(of(invalidUser))).willReturn(of(BulkItem.failed(0, invalidUser,
+                    new ConstraintViolationException(Validation.buildDefaultValidatorFactory().getValidator().validate(invalidUser, User.New.class)))));
+
+            mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(invalidUser))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].status").value(400))
+                    .andExpect(jsonPath("$.content[0].errors[0].attribute").value("age"))
+                    .andExpect(jsonPath("$.content[0].errors[0].errorMessage").value(buildUVERep("error.age.old", "age").getErrorMessage()));
+        }
+
+        @Test
+        @DisplayName("should create the users of newline delimited json")
+        void shouldCreateUsersOfNdJson() throws Exception {
+            mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType("application/x-ndjson")
+                    .content(GSON.toJson(validMinimumUser) + "\n" + GSON.toJson(otherUser) + "\n"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.succeeded").value(1));
+
+            then(userService).should().createAll(of(validMinimumUser, otherUser));
+        }
+
+        @Test
+        @DisplayName("should return a bad request response for an empty batch or a line holding no user")
+        void shouldReturnBadRequestForEmptyOrMalformedBatch() throws Exception {
+            mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content("[]"))
+                    .andExpect(status().isBadRequest());
+            mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType("application/x-ndjson")
+                    .content(GSON.toJson(validMinimumUser) + "\n{no json"))
+                    .andExpect(status().isBadRequest());
+
+            then(userService).should(never()).createAll(any());
+        }
+
+        @Test
+        @DisplayName("should return a bad request response for a batch above the maximum size")
+        void shouldReturnBadRequestForTooLargeBatch() throws Exception {
+            mvc.perform(post(URL_USER + "/_bulk")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(GSON.toJson(of(validMinimumUser, otherUser, validMinimumUser))))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errors[0].attribute").value("createAll.users"))
+                    .andExpect(jsonPath("$.errors[0].errorMessage").value(buildUVERep("error.limit.invalid", "createAll.users").getErrorMessage()));
+
+            then(userService).should(never()).createAll(any());
+        }
+    }
+
     @Nested
     @DisplayName("when a new user to create is given")
     class createUser {
@@ -483,7 +1019,7 @@ class UserControllerTest extends BaseControllerTest {
             final User userToPersist = validMinimumUser;
             final User persistedUser = userToPersist.toBuilder().id(validUserId).build();
             given(userService.create(userToPersist)).willReturn(persistedUser);
-            given(userService.findAll()).willReturn(Stream.of(persistedUser));
+            given(userService.findNeighbours(validUserId)).willReturn(new Neighbours(validUserId, null, null));
 
             MvcResult result = mvc.perform(post(URL_USER)
                     .contentType(APPLICATION_JSON_VALUE)
@@ -532,22 +1068,54 @@ class UserControllerTest extends BaseControllerTest {
     @Nested
     @DisplayName("when a user id is given to delete a user")
     class deleteUser {
+        @BeforeEach
+        void setUp() {
+            given(userService.findOne(validUserId)).willReturn(Optional.of(User.builder().id(validUserId).build()));
+        }
+
         @Test
         @DisplayName("should delete the user")
         void shouldDeleteUserOnDelete() throws Exception {
             mvc.perform(delete(URL_USER + "/" + validUserId))
                     .andExpect(status().isNoContent());
 
-            then(userService).should(times(1)).delete(validUserId);
+            final InOrder order = inOrder(groupService, userService);
+            then(groupService).should(order).removeMemberFromAllGroups(validUserId);
+            then(userService).should(order).delete(validUserId);
         }
 
         @Test
-        @DisplayName("should return a not found exception if id is unknown")
+        @DisplayName("should return a not found response without touching any group if id is unknown")
         void shouldReturnNotFoundIfUserIdNotFoundOnDelete() throws Exception {
+            given(userService.findOne(validUserId)).willReturn(Optional.empty());
+
+            mvc.perform(delete(URL_USER + "/" + validUserId))
+                    .andExpect(status().isNotFound());
+
+            then(groupService).should(never()).removeMemberFromAllGroups(validUserId);
+            then(userService).should(never()).delete(validUserId);
+        }
+
+        @Test
+        @DisplayName("should return a not found response if the user is deleted meanwhile")
+        void shouldReturnNotFoundIfUserDeletedMeanwhile() throws Exception {
             willThrow(new NotFoundException("id not found")).given(userService).delete(validUserId);
 
             mvc.perform(delete(URL_USER + "/" + validUserId))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("should return a bad request and keep the user if it is the last member of a group")
+        void shouldReturnBadRequestIfLastMemberOfGroupOnDelete() throws Exception {
+            willThrow(new InvalidGroupException(Group.builder().userId(validUserId).build(), "business", "a group must keep at least one user"))
+                    .given(groupService).removeMemberFromAllGroups(validUserId);
+
+            mvc.perform(delete(URL_USER + "/" + validUserId))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errors[0].errorMessage").value("a group must keep at least one user"));
+
+            then(userService).should(never()).delete(validUserId);
+        }
     }
 }
\ No newline at end of file
@@ -92,6 +92,13 @@ abstract class BaseIntegrationTest {
                 String.class);
     }
 
+    ResponseEntity<String> performGetRequest(final String url, final HttpHeaders httpHeaders) {
+        return template.exchange(base.toString() + url,
+                GET,
+                new HttpEntity<>(httpHeaders),
+                String.class);
+    }
+
     ResponseEntity<String> performPostRequest(final Object body) {
         return template.exchange(base.toString(),
                 POST,
@@ -0,0 +1,152 @@
+package de.otto.prototype.integration;
+
+import com.mongodb.MongoClient;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import de.otto.prototype.service.ChangeStreamCacheInvalidator;
+import de.otto.prototype.service.GroupService;
+import de.otto.prototype.service.UserService;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assumptions.abort;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+
+/**
+ * Runs against its own single node replica set, as change streams need MongoDB 3.6 and a replica set, while the
+ * other integration tests use a standalone 3.2 server. Skipped if that server cannot be downloaded or started.
+ */
+class ChangeStreamCacheInvalidatorIntegrationTest {
+
+    private static final String REPLICA_SET = "rs0";
+
+    private static final long PRIMARY_TIMEOUT_MILLIS = 30000;
+
+    private static MongodExecutable mongod;
+
+    private static MongoClient mongoClient;
+
+    private static MongoTemplate mongoTemplate;
+
+    private final UserService userService = mock(UserService.class);
+
+    private final GroupService groupService = mock(GroupService.class);
+
+    private ChangeStreamCacheInvalidator testee;
+
+    @BeforeAll
+    static void startReplicaSet() throws IOException, InterruptedException {
+        final int port = Network.getFreeServerPort();
+        try {
+            mongod = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+                    .version(Version.Main.V3_6)
+                    .net(new Net(port, Network.localhostIsIPv6()))
+                    .replication(new Storage(null, REPLICA_SET, 0))
+                    .build());
+            mongod.start();
+        } catch (IOException | RuntimeException e) {
+            abort("MongoDB 3.6 is not available: " + e.getMessage());
+        }
+        mongoClient = new MongoClient("localhost", port);
+        mongoClient.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET)
+                .append("members", List.of(new Document("_id", 0).append("host", "localhost:" + port)))));
+        awaitPrimary();
+        mongoTemplate = new MongoTemplate(mongoClient, "test");
+    }
+
+    @AfterAll
+    static void stopReplicaSet() {
+        if (mongoClient != null)
+            mongoClient.close();
+        if (mongod != null)
+            mongod.stop();
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        mongoTemplate.getCollection("user").deleteMany(new Document());
+        mongoTemplate.getCollection("group").deleteMany(new Document());
+        testee = new ChangeStreamCacheInvalidator(mongoTemplate, userService, groupService);
+        testee.start();
+        awaitWatching();
+    }
+
+    @AfterEach
+    void tearDown() {
+        testee.stop();
+    }
+
+    @Test
+    @DisplayName("should evict users inserted, updated and deleted by any instance")
+    void shouldEvictChangedUsers() {
+        final ObjectId insertedId = new ObjectId();
+        final ObjectId updatedId = new ObjectId();
+        final ObjectId deletedId = new ObjectId();
+        mongoTemplate.getCollection("user").insertOne(new Document("_id", insertedId).append("firstName", "Max"));
+        then(userService).should(timeout(5000)).evict(insertedId.toHexString());
+
+        mongoTemplate.getCollection("user").insertOne(new Document("_id", updatedId).append("firstName", "Max"));
+        mongoTemplate.getCollection("user").updateOne(eq("_id", updatedId), set("firstName", "Erika"));
+        mongoTemplate.getCollection("user").insertOne(new Document("_id", deletedId).append("firstName", "Max"));
+        mongoTemplate.getCollection("user").deleteOne(eq("_id", deletedId));
+
+        then(userService).should(timeout(5000).times(2)).evict(updatedId.toHexString());
+        then(userService).should(timeout(5000).times(2)).evict(deletedId.toHexString());
+    }
+
+    @Test
+    @DisplayName("should evict all users once the watched collection is dropped")
+    void shouldEvictAllOnDrop() {
+        mongoTemplate.getCollection("user").insertOne(new Document("firstName", "Max"));
+
+        mongoTemplate.getCollection("user").drop();
+
+        then(userService).should(timeout(5000).atLeast(2)).evictAll();
+    }
+
+    /**
+     * Changes made before a stream is opened are not reported, so probes are written until both report them.
+     */
+    private void awaitWatching() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + PRIMARY_TIMEOUT_MILLIS;
+        while (mockingDetails(userService).getInvocations().isEmpty() || mockingDetails(groupService).getInvocations().isEmpty()) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("change streams not opened");
+            mongoTemplate.getCollection("user").insertOne(new Document("probe", true));
+            mongoTemplate.getCollection("group").insertOne(new Document("probe", true));
+            MILLISECONDS.sleep(100);
+        }
+        clearInvocations(userService, groupService);
+    }
+
+    private static void awaitPrimary() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + PRIMARY_TIMEOUT_MILLIS;
+        while (!mongoClient.getDatabase("admin").runCommand(new Document("isMaster", 1)).getBoolean("ismaster", false)) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("replica set " + REPLICA_SET + " elected no primary");
+            MILLISECONDS.sleep(100);
+        }
+    }
+}
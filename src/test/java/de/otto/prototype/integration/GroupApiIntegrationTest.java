@@ -5,6 +5,7 @@ import com.jayway.jsonpath.JsonPath;
 import de.otto.prototype.controller.representation.ValidationEntryRepresentation;
 import de.otto.prototype.controller.representation.ValidationRepresentation;
 import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdAndVersion;
 import de.otto.prototype.model.Login;
 import de.otto.prototype.model.User;
 import de.otto.prototype.repository.GroupRepository;
@@ -17,17 +18,25 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static de.otto.prototype.controller.GroupController.URL_GROUP;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItems;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.ETAG;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -54,8 +63,11 @@ class GroupApiIntegrationTest extends BaseIntegrationTest {
     private void assertGroupRepresentation(String responseBody, Group expectedGroup) {
         DocumentContext parsedResponse = JsonPath.parse(responseBody);
         assertAll("group representation",
-                () -> assertThat(GSON.fromJson(parsedResponse.read("$.content").toString(), Group.class), is(expectedGroup)),
+                () -> assertThat(parsedResponse.read("$.content.id"), is(expectedGroup.getId())),
+                () -> assertThat(parsedResponse.read("$.content.name"), is(expectedGroup.getName())),
+                () -> assertThat(parsedResponse.read("$.memberCount"), is(expectedGroup.getUserIds().size())),
                 () -> assertThat(parsedResponse.read("$._links.self.href"), containsString("/group/" + expectedGroup.getId())),
+                () -> assertThat(parsedResponse.read("$._links.members.href"), containsString("/group/" + expectedGroup.getId() + "/members")),
                 () -> assertThat(parsedResponse.read("$._links.start.href"), containsString("/group/" + expectedGroup.getId())));
     }
 
@@ -100,7 +112,7 @@ class GroupApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             final String eTagHeader = response.getHeaders().get(ETAG).get(0);
-            assertThat(eTagHeader.substring(1, eTagHeader.length() - 1), is(persistedGroup.getETag()));
+            assertThat(eTagHeader, is(persistedGroup.getETag()));
             assertGroupRepresentation(response.getBody(), persistedGroup);
         }
 
@@ -131,7 +143,7 @@ class GroupApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             assertGroupRepresentation(response.getBody(), updatedGroup);
-            assertThat(response.getHeaders().get(ETAG).get(0), is(updatedGroup.getETag()));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"1\""));
         }
 
         @Test
@@ -146,7 +158,7 @@ class GroupApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             assertGroupRepresentation(response.getBody(), updatedGroup);
-            assertThat(response.getHeaders().get(ETAG).get(0), is(updatedGroup.getETag()));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"1\""));
         }
 
         @Test
@@ -161,6 +173,201 @@ class GroupApiIntegrationTest extends BaseIntegrationTest {
         }
     }
 
+    @Nested
+    @DisplayName("when the members of a group are accessed")
+    class members {
+        private User persistMember(final String firstName, final String mail) {
+            return userRepository.save(User.builder().lastName("Mustermann").firstName(firstName).age(30)
+                    .login(Login.builder().mail(mail).password("somePassword").build()).build());
+        }
+
+        @Test
+        @DisplayName("should return a page of members with their names and the member count")
+        void shouldReturnPageOfMembers() {
+            final User firstUser = persistMember("Max", "max.mustermann@otto.de");
+            final User secondUser = persistMember("Erika", "erika.mustermann@otto.de");
+            final Group persistedGroup = groupRepository.save(group.clearUserIds().userId(firstUser.getId()).userId(secondUser.getId()).build());
+
+            final ResponseEntity<String> response = performGetRequest("/" + persistedGroup.getId() + "/members?limit=1&includeUsers=true");
+
+            assertThat(response.getStatusCode(), is(OK));
+            DocumentContext parsedResponse = JsonPath.parse(response.getBody());
+            final String firstMemberId = firstUser.getId().compareTo(secondUser.getId()) < 0 ? firstUser.getId() : secondUser.getId();
+            assertAll("member page",
+                    () -> assertThat(parsedResponse.read("$.total"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.id"), is(firstMemberId)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.lastName"), is("Mustermann")),
+                    () -> assertThat(parsedResponse.read("$._links.next.href"), containsString("/group/" + persistedGroup.getId() + "/members?after=" + firstMemberId)));
+        }
+
+        @Test
+        @DisplayName("should return a not found response for the members of an unknown group")
+        void shouldReturnNotFoundForMembersOfUnknownGroup() {
+            final ResponseEntity<String> response = performGetRequest("/5a8c3ffb4c5d4a001c3b1f2e/members");
+
+            assertThat(response.getStatusCode(), is(NOT_FOUND));
+        }
+
+        @Test
+        @DisplayName("should add members in place and return the new etag")
+        void shouldAddMembers() {
+            final User firstUser = persistMember("Max", "max.mustermann@otto.de");
+            final User secondUser = persistMember("Erika", "erika.mustermann@otto.de");
+            final Group persistedGroup = groupRepository.save(group.clearUserIds().userId(firstUser.getId()).build());
+
+            final ResponseEntity<String> response = performPostRequest("/" + persistedGroup.getId() + "/members",
+                    List.of(secondUser.getId()), prepareAuthAndMediaTypeHeaders(APPLICATION_JSON_VALUE));
+
+            assertThat(response.getStatusCode(), is(NO_CONTENT));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"1\""));
+            assertThat(groupRepository.findById(persistedGroup.getId()).get().getUserIds(), hasItems(firstUser.getId(), secondUser.getId()));
+        }
+
+        @Test
+        @DisplayName("should remove members in place but never the last one")
+        void shouldRemoveMembersButKeepTheLastOne() {
+            final User firstUser = persistMember("Max", "max.mustermann@otto.de");
+            final User secondUser = persistMember("Erika", "erika.mustermann@otto.de");
+            final Group persistedGroup = groupRepository.save(group.clearUserIds().userId(firstUser.getId()).userId(secondUser.getId()).build());
+
+            final ResponseEntity<String> removedResponse = performDeleteRequest("/" + persistedGroup.getId() + "/members/" + secondUser.getId());
+            final ResponseEntity<String> rejectedResponse = performDeleteRequest("/" + persistedGroup.getId() + "/members/" + firstUser.getId());
+
+            assertThat(removedResponse.getStatusCode(), is(NO_CONTENT));
+            assertThat(rejectedResponse.getStatusCode(), is(BAD_REQUEST));
+            assertThat(JsonPath.read(rejectedResponse.getBody(), "$.errors[0].errorMessage"), is("a group must keep at least one user"));
+            assertThat(groupRepository.findById(persistedGroup.getId()).get().getUserIds(), is(List.of(firstUser.getId())));
+        }
+
+        @Test
+        @DisplayName("should keep the version if none of the users to remove is a member")
+        void shouldKeepVersionIfNoMemberRemoved() {
+            final User member = persistMember("Max", "max.mustermann@otto.de");
+            final Group persistedGroup = groupRepository.save(group.clearUserIds().userId(member.getId()).build());
+
+            final ResponseEntity<String> response = performDeleteRequest("/" + persistedGroup.getId() + "/members/5a8c3ffb4c5d4a001c3b1f2e");
+
+            assertThat(response.getStatusCode(), is(NO_CONTENT));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"0\""));
+        }
+
+        @Test
+        @DisplayName("should return a bad request if an id of the users to remove is invalid")
+        void shouldReturnBadRequestIfInvalidMemberId() {
+            final User member = persistMember("Max", "max.mustermann@otto.de");
+            final Group persistedGroup = groupRepository.save(group.clearUserIds().userId(member.getId()).build());
+
+            final ResponseEntity<String> response = performDeleteRequest("/" + persistedGroup.getId() + "/members/" + member.getId() + ",0");
+
+            assertThat(response.getStatusCode(), is(BAD_REQUEST));
+            assertThat(JsonPath.read(response.getBody(), "$.errors[0].errorMessage"),
+                    is(messageSource.getMessage("error.id.invalid", null, LOCALE)));
+        }
+    }
+
+    @Nested
+    @DisplayName("when a batch of groups to create or update is given")
+    class bulk {
+        @Test
+        @DisplayName("should create and update the groups of a json array and return the new etag of every group")
+        void shouldCreateAndUpdateGroups() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+            final Group storedGroup = groupRepository.save(Group.builder().name("storedGroup").userId(persistedUser.getId()).build());
+            final Group newGroup = Group.builder().name("newGroup").userId(persistedUser.getId()).build();
+            final Group renamedGroup = storedGroup.toBuilder().name("renamedGroup").build();
+
+            final ResponseEntity<String> response = performPostRequest("/_bulk",
+                    List.of(newGroup, renamedGroup), prepareAuthAndMediaTypeHeaders(APPLICATION_JSON_VALUE));
+
+            assertThat(response.getStatusCode(), is(OK));
+            DocumentContext parsedResponse = JsonPath.parse(response.getBody());
+            final Group updatedGroup = groupRepository.findById(storedGroup.getId()).get();
+            assertAll("bulk representation",
+                    () -> assertThat(parsedResponse.read("$.succeeded"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(201)),
+                    () -> assertThat(parsedResponse.read("$.content[0].eTag"), is("W/\"0\"")),
+                    () -> assertThat(groupRepository.existsById(parsedResponse.read("$.content[0].id")), is(true)),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(200)),
+                    () -> assertThat(parsedResponse.read("$.content[1].eTag"), is("W/\"1\"")),
+                    () -> assertThat(updatedGroup.getName(), is("renamedGroup")),
+                    () -> assertThat(updatedGroup.getETag(), is("W/\"1\"")));
+        }
+
+        @Test
+        @DisplayName("should report unknown groups and taken names at their position and write the others")
+        void shouldReportUnknownGroupsAndTakenNames() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+            groupRepository.save(Group.builder().name("storedGroup").userId(persistedUser.getId()).build());
+            final Group unknownGroup = Group.builder().id("5a8c3ffb4c5d4a001c3b1f2e").name("unknownGroup").userId(persistedUser.getId()).build();
+            final Group groupWithTakenName = Group.builder().name("storedGroup").userId(persistedUser.getId()).build();
+            final Group newGroup = Group.builder().name("newGroup").userId(persistedUser.getId()).build();
+
+            final ResponseEntity<String> response = performPostRequest("/_bulk",
+                    List.of(unknownGroup, groupWithTakenName, newGroup), prepareAuthAndMediaTypeHeaders(APPLICATION_JSON_VALUE));
+
+            assertThat(response.getStatusCode(), is(OK));
+            DocumentContext parsedResponse = JsonPath.parse(response.getBody());
+            assertAll("bulk representation",
+                    () -> assertThat(parsedResponse.read("$.succeeded"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.failed"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(404)),
+                    () -> assertThat(parsedResponse.read("$.content[0].errors[0].errorMessage"), is("group not found")),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(400)),
+                    () -> assertThat(parsedResponse.read("$.content[1].errors[0].errorMessage"), is("the group name is already taken")),
+                    () -> assertThat(parsedResponse.read("$.content[2].status"), is(201)),
+                    () -> assertThat(groupRepository.count(), is(2L)));
+        }
+
+        @Test
+        @DisplayName("should read the groups of the given names without their user ids and the versions of the given ids")
+        void shouldReadGroupsByNamesAndVersionsByIds() {
+            final Group firstGroup = groupRepository.save(Group.builder().name("firstGroup").userId("someUserId").build());
+            final Group secondGroup = groupRepository.save(Group.builder().name("secondGroup").userId("someUserId").build());
+            groupRepository.save(Group.builder().name("otherGroup").userId("someUserId").build());
+
+            final List<Group> groupsByName = groupRepository.findWithoutUserIdsByNameIn(List.of("firstGroup", "secondGroup", "unknownGroup"));
+            final List<IdAndVersion> versions = groupRepository.findVersionsByIdIn(List.of(firstGroup.getId(), "5a8c3ffb4c5d4a001c3b1f2e"));
+
+            assertAll("projections",
+                    () -> assertThat(groupsByName.size(), is(2)),
+                    () -> assertThat(groupsByName.stream().map(Group::getId).collect(toSet()), is(Set.of(firstGroup.getId(), secondGroup.getId()))),
+                    () -> assertThat(groupsByName.get(0).getUserIds(), is(nullValue())),
+                    () -> assertThat(versions, is(List.of(new IdAndVersion(firstGroup.getId(), 0L)))));
+        }
+    }
+
+    @Nested
+    @DisplayName("when the groups are exported")
+    class export {
+        private ResponseEntity<String> performExportRequest(final String url) {
+            final HttpHeaders headers = prepareAuthAndMediaTypeHeaders(null);
+            headers.set(ACCEPT, "application/x-ndjson");
+            return performGetRequest(url, headers);
+        }
+
+        @Test
+        @DisplayName("should export one group per line in the order of their ids and resume after the last exported id")
+        void shouldExportAndResumeAfterLastExportedId() {
+            final List<String> ids = Stream.of("firstGroup", "secondGroup", "thirdGroup")
+                    .map(name -> groupRepository.save(Group.builder().name(name).userId("someUserId").build()).getId())
+                    .sorted().collect(toList());
+
+            final ResponseEntity<String> response = performExportRequest("/_export");
+            final ResponseEntity<String> resumedResponse = performExportRequest("/_export?after=" + ids.get(0) + "&fields=name");
+
+            assertThat(response.getStatusCode(), is(OK));
+            assertThat(Stream.of(response.getBody().split("\n")).map(line -> JsonPath.<String>read(line, "$.id")).collect(toList()), is(ids));
+            assertThat(resumedResponse.getStatusCode(), is(OK));
+            final List<String> resumedLines = List.of(resumedResponse.getBody().split("\n"));
+            assertAll("resumed export",
+                    () -> assertThat(resumedLines.size(), is(2)),
+                    () -> assertThat(JsonPath.read(resumedLines.get(0), "$.id"), is(ids.get(1))),
+                    () -> assertThat(JsonPath.<Map<String, Object>>read(resumedLines.get(0), "$").keySet(), is(Set.of("id", "name"))),
+                    () -> assertThat(JsonPath.read(resumedLines.get(1), "$.id"), is(ids.get(2))));
+        }
+    }
+
     @Nested
     @DisplayName("when the group endpoint is accessed with an invalid id")
     class invalidId {
@@ -7,6 +7,7 @@ import de.otto.prototype.controller.representation.ValidationRepresentation;
 import de.otto.prototype.model.Group;
 import de.otto.prototype.model.Login;
 import de.otto.prototype.model.User;
+import de.otto.prototype.repository.GroupRepository;
 import de.otto.prototype.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,17 +17,23 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static de.otto.prototype.controller.UserController.URL_USER;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.ETAG;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -38,10 +45,13 @@ class UserApiIntegrationTest extends BaseIntegrationTest {
 
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private GroupRepository groupRepository;
 
     @BeforeEach
     void setUp() throws Exception {
         userRepository.deleteAll();
+        groupRepository.deleteAll();
         messageSource = initMessageSource();
         this.base = new URL("http://localhost:" + port + URL_USER);
     }
@@ -94,7 +104,7 @@ class UserApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             final String eTagHeader = response.getHeaders().get(ETAG).get(0);
-            assertThat(eTagHeader.substring(1, eTagHeader.length() - 1), is(persistedUser.getETag()));
+            assertThat(eTagHeader, is(persistedUser.getETag()));
             assertUserRepresentation(response.getBody(), persistedUser);
         }
 
@@ -123,7 +133,7 @@ class UserApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             assertUserRepresentation(response.getBody(), updatedUser);
-            assertThat(response.getHeaders().get(ETAG).get(0), is(updatedUser.getETag()));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"1\""));
         }
 
         @Test
@@ -137,7 +147,7 @@ class UserApiIntegrationTest extends BaseIntegrationTest {
 
             assertThat(response.getStatusCode(), is(OK));
             assertUserRepresentation(response.getBody(), updatedUser);
-            assertThat(response.getHeaders().get(ETAG).get(0), is(updatedUser.getETag()));
+            assertThat(response.getHeaders().get(ETAG).get(0), is("W/\"1\""));
         }
 
         @Test
@@ -151,6 +161,179 @@ class UserApiIntegrationTest extends BaseIntegrationTest {
         }
     }
 
+    @Nested
+    @DisplayName("when a batch of users is created")
+    class bulk {
+        @Test
+        @DisplayName("should create the valid users of a json array and report the outcome of every user")
+        void shouldCreateUsersOfJsonArray() {
+            final User storedUser = userRepository.save(user.login(login.build()).build());
+            final User newUser = User.builder().lastName("Mustermann").firstName("Erika").age(30)
+                    .login(Login.builder().mail("erika.mustermann@otto.de").password("somePassword").build()).build();
+            final User tooOldUser = newUser.toBuilder().firstName("Hans").age(200).build();
+
+            final ResponseEntity<String> response = performPostRequest("/_bulk",
+                    List.of(newUser, storedUser.toBuilder().id(null).build(), tooOldUser), prepareAuthAndMediaTypeHeaders(APPLICATION_JSON_VALUE));
+
+            assertThat(response.getStatusCode(), is(OK));
+            DocumentContext parsedResponse = JsonPath.parse(response.getBody());
+            assertAll("bulk representation",
+                    () -> assertThat(parsedResponse.read("$.succeeded"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.failed"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content[0].status"), is(201)),
+                    () -> assertThat(userRepository.existsById(parsedResponse.read("$.content[0].id")), is(true)),
+                    () -> assertThat(parsedResponse.read("$.content[1].status"), is(400)),
+                    () -> assertThat(parsedResponse.read("$.content[1].errors[0].errorMessage"), is("this user does already exist")),
+                    () -> assertThat(parsedResponse.read("$.content[2].status"), is(400)),
+                    () -> assertThat(parsedResponse.read("$.content[2].errors[0].errorMessage"), is(messageSource.getMessage("error.age.old", null, LOCALE))),
+                    () -> assertThat(userRepository.count(), is(2L)));
+        }
+
+        @Test
+        @DisplayName("should create the users of newline delimited json")
+        void shouldCreateUsersOfNdJson() {
+            final User newUser = user.login(login.build()).build();
+            final User otherUser = newUser.toBuilder().firstName("Erika").login(login.build().toBuilder().mail("erika.mustermann@otto.de").build()).build();
+
+            final ResponseEntity<String> response = performPostRequest("/_bulk",
+                    GSON.toJson(newUser) + "\n" + GSON.toJson(otherUser) + "\n", prepareAuthAndMediaTypeHeaders("application/x-ndjson"));
+
+            assertThat(response.getStatusCode(), is(OK));
+            assertThat(JsonPath.read(response.getBody(), "$.succeeded"), is(2));
+            assertThat(userRepository.count(), is(2L));
+        }
+
+        @Test
+        @DisplayName("should return a bad request response for an empty batch")
+        void shouldReturnBadRequestForEmptyBatch() {
+            final ResponseEntity<String> response = performPostRequest("/_bulk", List.of(), prepareAuthAndMediaTypeHeaders(APPLICATION_JSON_VALUE));
+
+            assertThat(response.getStatusCode(), is(BAD_REQUEST));
+        }
+    }
+
+    @Nested
+    @DisplayName("when the users are exported")
+    class export {
+        private User persistUser(final String firstName, final String mail) {
+            return userRepository.save(User.builder().lastName("Mustermann").firstName(firstName).age(30)
+                    .login(Login.builder().mail(mail).password("somePassword").build()).build());
+        }
+
+        private ResponseEntity<String> performExportRequest(final String url) {
+            final HttpHeaders headers = prepareAuthAndMediaTypeHeaders(null);
+            headers.set(ACCEPT, "application/x-ndjson");
+            return performGetRequest(url, headers);
+        }
+
+        private List<String> idsOf(final ResponseEntity<String> response) {
+            return Stream.of(response.getBody().split("\n")).map(line -> JsonPath.<String>read(line, "$.id")).collect(toList());
+        }
+
+        @Test
+        @DisplayName("should export one user per line in the order of their ids without their passwords")
+        void shouldExportAllUsers() {
+            final List<String> ids = Stream.of(persistUser("Max", "max.mustermann@otto.de"), persistUser("Erika", "erika.mustermann@otto.de"),
+                    persistUser("Hans", "hans.mustermann@otto.de")).map(User::getId).sorted().collect(toList());
+
+            final ResponseEntity<String> response = performExportRequest("/_export");
+
+            assertThat(response.getStatusCode(), is(OK));
+            assertThat(response.getHeaders().getContentType().toString(), startsWith("application/x-ndjson"));
+            assertThat(idsOf(response), is(ids));
+            assertThat(response.getBody(), not(containsString("somePassword")));
+        }
+
+        @Test
+        @DisplayName("should resume an interrupted export after the last exported id")
+        void shouldResumeExportAfterLastExportedId() {
+            final List<String> ids = Stream.of(persistUser("Max", "max.mustermann@otto.de"), persistUser("Erika", "erika.mustermann@otto.de"),
+                    persistUser("Hans", "hans.mustermann@otto.de")).map(User::getId).sorted().collect(toList());
+
+            final ResponseEntity<String> response = performExportRequest("/_export?after=" + ids.get(1) + "&fields=lastName");
+
+            assertThat(response.getStatusCode(), is(OK));
+            assertThat(idsOf(response), is(ids.subList(2, 3)));
+            assertThat(JsonPath.read(response.getBody().trim(), "$"), is(Map.of("id", ids.get(2), "lastName", "Mustermann")));
+        }
+    }
+
+    @Nested
+    @DisplayName("when the groups of a user are accessed")
+    class groups {
+        @Test
+        @DisplayName("should return a page of the groups the user is member of without their user ids")
+        void shouldReturnPageOfGroups() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+            final Group firstGroup = groupRepository.save(Group.builder().name("firstGroup").userId(persistedUser.getId()).build());
+            final Group secondGroup = groupRepository.save(Group.builder().name("secondGroup").userId(persistedUser.getId()).userId("someOtherUserId").build());
+            groupRepository.save(Group.builder().name("otherGroup").userId("someOtherUserId").build());
+
+            final ResponseEntity<String> response = performGetRequest("/" + persistedUser.getId() + "/groups?limit=1");
+
+            assertThat(response.getStatusCode(), is(OK));
+            DocumentContext parsedResponse = JsonPath.parse(response.getBody());
+            final Group firstMembership = firstGroup.getId().compareTo(secondGroup.getId()) < 0 ? firstGroup : secondGroup;
+            assertAll("group page",
+                    () -> assertThat(parsedResponse.read("$.total"), is(2)),
+                    () -> assertThat(parsedResponse.read("$.content.length()"), is(1)),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.id"), is(firstMembership.getId())),
+                    () -> assertThat(parsedResponse.read("$.content[0].content.name"), is(firstMembership.getName())),
+                    () -> assertThat(parsedResponse.read("$.content[0].content"), not(hasKey("userIds"))),
+                    () -> assertThat(parsedResponse.read("$._links.next.href"), containsString("/user/" + persistedUser.getId() + "/groups?after=" + firstMembership.getId())));
+        }
+
+        @Test
+        @DisplayName("should return an empty page for a user without groups")
+        void shouldReturnEmptyPageForUserWithoutGroups() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+
+            final ResponseEntity<String> response = performGetRequest("/" + persistedUser.getId() + "/groups");
+
+            assertThat(response.getStatusCode(), is(OK));
+            assertThat(JsonPath.read(response.getBody(), "$.total"), is(0));
+        }
+
+        @Test
+        @DisplayName("should pull a deleted user from its groups and raise their versions")
+        void shouldPullDeletedUserFromGroups() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+            final Group persistedGroup = groupRepository.save(Group.builder().name("someGroup").userId(persistedUser.getId()).userId("someOtherUserId").build());
+
+            final ResponseEntity<String> response = performDeleteRequest("/" + persistedUser.getId());
+
+            assertThat(response.getStatusCode(), is(NO_CONTENT));
+            final Group changedGroup = groupRepository.findById(persistedGroup.getId()).get();
+            assertThat(changedGroup.getUserIds(), is(List.of("someOtherUserId")));
+            assertThat(changedGroup.getVersion(), is(persistedGroup.getVersion() + 1));
+        }
+
+        @Test
+        @DisplayName("should keep a user who is the last member of a group, pulled from its other groups only")
+        void shouldKeepLastMemberOfGroup() {
+            final User persistedUser = userRepository.save(user.login(login.build()).build());
+            final Group soleMemberGroup = groupRepository.save(Group.builder().name("someGroup").userId(persistedUser.getId()).build());
+            final Group sharedGroup = groupRepository.save(Group.builder().name("otherGroup").userId(persistedUser.getId()).userId("someOtherUserId").build());
+
+            final ResponseEntity<String> response = performDeleteRequest("/" + persistedUser.getId());
+
+            assertThat(response.getStatusCode(), is(BAD_REQUEST));
+            assertThat(JsonPath.read(response.getBody(), "$.errors[0].errorMessage"), is("a group must keep at least one user"));
+            assertAll("kept user and its sole member group",
+                    () -> assertThat(userRepository.existsById(persistedUser.getId()), is(true)),
+                    () -> assertThat(groupRepository.findById(soleMemberGroup.getId()).get().getUserIds(), is(List.of(persistedUser.getId()))),
+                    () -> assertThat(groupRepository.findById(sharedGroup.getId()).get().getUserIds(), is(List.of("someOtherUserId"))));
+        }
+
+        @Test
+        @DisplayName("should return a not found response for the groups of an unknown user")
+        void shouldReturnNotFoundForGroupsOfUnknownUser() {
+            final ResponseEntity<String> response = performGetRequest("/5a8c3ffb4c5d4a001c3b1f2e/groups");
+
+            assertThat(response.getStatusCode(), is(NOT_FOUND));
+        }
+    }
+
     @Nested
     @DisplayName("when the user endpoint is accessed with an invalid id")
     class invalidId {
@@ -0,0 +1,213 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.ImmutableList;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.Group;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class BulkWriteRepositoryTest {
+
+    private static final Group FIRST_GROUP = Group.builder().name("someGroupName").userId("someUserId").build();
+    private static final Group SECOND_GROUP = Group.builder().name("otherGroupName").userId("someUserId").build();
+    private static final String STORED_ID = "5a8c3ffb4c5d4a001c3b1f2e";
+    private static final Group STORED_GROUP = SECOND_GROUP.toBuilder().id(STORED_ID).build();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CollectionVersionRepository collectionVersionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private FindIterable<Document> storedVersions;
+
+    private BulkWriteRepository testee;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        initMocks(this);
+        final MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        final MappingMongoConverter converter = new MappingMongoConverter(mock(DbRefResolver.class), mappingContext);
+        converter.afterPropertiesSet();
+        given(mongoTemplate.getConverter()).willReturn(converter);
+        given(mongoTemplate.getCollectionName(Group.class)).willReturn("group");
+        given(mongoTemplate.execute(any(String.class), any(CollectionCallback.class)))
+                .willAnswer(invocation -> invocation.<CollectionCallback<?>>getArgument(1).doInCollection(collection));
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willReturn(resultOf(0));
+        given(collection.find(any(Bson.class))).willReturn(storedVersions);
+        given(storedVersions.projection(any(Bson.class))).willReturn(storedVersions);
+        testee = new BulkWriteRepository(mongoTemplate, collectionVersionRepository, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("should insert all new entities with one unordered bulk write and raise the collection version once")
+    @SuppressWarnings("unchecked")
+    void shouldInsertAllWithOneBulkWrite() {
+        final List<BulkItem<Group>> items = testee.writeAll(ImmutableList.of(FIRST_GROUP, SECOND_GROUP), Group.class);
+
+        final ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        final ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        then(collection).should().bulkWrite(writes.capture(), options.capture());
+        assertThat(writes.getValue().size(), is(2));
+        assertThat(((InsertOneModel<Document>) writes.getValue().get(0)).getDocument().get("version"), is(0L));
+        assertThat(options.getValue().isOrdered(), is(false));
+        assertThat(items.get(1).isSucceeded(), is(true));
+        assertThat(items.get(1).getEntity().getName(), is("otherGroupName"));
+        assertThat(items.get(1).getEntity().getId(), is(notNullValue()));
+        assertThat(items.get(1).getEntity().getVersion(), is(0L));
+        then(eventPublisher).should(times(2)).publishEvent(any(BeforeSaveEvent.class));
+        then(eventPublisher).should(never()).publishEvent(any(AfterSaveEvent.class));
+        then(collectionVersionRepository).should(times(1)).increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should update the entities with id by their id and expected version, replacing all fields and raising the version")
+    @SuppressWarnings("unchecked")
+    void shouldUpdateEntitiesWithId() {
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willReturn(resultOf(1));
+
+        final List<BulkItem<Group>> items = testee.writeAll(ImmutableList.of(FIRST_GROUP, STORED_GROUP), Map.of(STORED_ID, 3L), Group.class);
+
+        final ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        then(collection).should().bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+        final UpdateOneModel<Document> update = (UpdateOneModel<Document>) writes.getValue().get(1);
+        assertThat(update.getFilter(), is(new Document("_id", new ObjectId(STORED_ID)).append("version", 3L)));
+        assertThat(((Document) update.getUpdate()).get("$set", Document.class).get("name"), is("otherGroupName"));
+        assertThat(((Document) update.getUpdate()).get("$set", Document.class).containsKey("_id"), is(false));
+        assertThat(((Document) update.getUpdate()).get("$inc", Document.class).get("version"), is(1L));
+        assertThat(items.get(1), is(BulkItem.succeeded(1, STORED_GROUP)));
+        assertThat(items.get(1).getEntity().getVersion(), is(4L));
+        then(collection).should(never()).find(any(Bson.class));
+        then(collectionVersionRepository).should(times(1)).increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should read the versions back to tell updates of deleted entities from updates of changed ones, if not all of them matched")
+    void shouldReportUnmatchedUpdates() {
+        final String deletedId = "5a8c3ffb4c5d4a001c3b1f2f";
+        final String changedId = "5a8c3ffb4c5d4a001c3b1f30";
+        final Group deletedGroup = FIRST_GROUP.toBuilder().id(deletedId).build();
+        final Group changedGroup = FIRST_GROUP.toBuilder().id(changedId).name("changedGroupName").build();
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willReturn(resultOf(1));
+        given(storedVersions.into(anyList())).willReturn(new ArrayList<>(List.of(
+                new Document("_id", new ObjectId(STORED_ID)).append("version", 4L),
+                new Document("_id", new ObjectId(changedId)).append("version", 7L))));
+
+        final List<BulkItem<Group>> items = testee.writeAll(ImmutableList.of(STORED_GROUP, deletedGroup, changedGroup),
+                Map.of(STORED_ID, 3L, deletedId, 1L, changedId, 5L), Group.class);
+
+        assertAll("bulk items",
+                () -> assertThat(items.get(0), is(BulkItem.succeeded(0, STORED_GROUP))),
+                () -> assertThat(items.get(0).getEntity().getVersion(), is(4L)),
+                () -> assertThat(items.get(1).getError(), is(instanceOf(EmptyResultDataAccessException.class))),
+                () -> assertThat(items.get(2).getError(), is(instanceOf(OptimisticLockingFailureException.class))));
+        then(collection).should(times(1)).find(any(Bson.class));
+        then(collectionVersionRepository).should(times(1)).increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should read the raised versions back for entities updated regardless of their version")
+    void shouldReadVersionsOfUnconditionalUpdates() {
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willReturn(resultOf(1));
+        given(storedVersions.into(anyList())).willReturn(new ArrayList<>(List.of(
+                new Document("_id", new ObjectId(STORED_ID)).append("version", 9L))));
+
+        final List<BulkItem<Group>> items = testee.writeAll(ImmutableList.of(STORED_GROUP), Group.class);
+
+        assertThat(items.get(0).getEntity().getVersion(), is(9L));
+    }
+
+    @Test
+    @DisplayName("should report the rejected writes by their position and keep the others")
+    void shouldReportRejectedWrites() {
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willThrow(new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                ImmutableList.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0)), null, new ServerAddress()));
+
+        final List<BulkItem<Group>> items = testee.writeAll(ImmutableList.of(FIRST_GROUP, SECOND_GROUP), Group.class);
+
+        assertThat(items.get(0).isSucceeded(), is(false));
+        assertThat(items.get(0).getEntity(), is(FIRST_GROUP));
+        assertThat(items.get(0).getError(), is(instanceOf(DuplicateKeyException.class)));
+        assertThat(items.get(1).isSucceeded(), is(true));
+        then(collectionVersionRepository).should().increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should not raise the collection version if every write is rejected")
+    void shouldNotRaiseCollectionVersionIfNothingWritten() {
+        given(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).willThrow(new MongoBulkWriteException(resultOf(0),
+                ImmutableList.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0)), null, new ServerAddress()));
+
+        testee.writeAll(ImmutableList.of(FIRST_GROUP), Group.class);
+
+        then(collectionVersionRepository).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("should neither write nor raise the collection version for an empty batch")
+    void shouldIgnoreEmptyBatch() {
+        assertThat(testee.writeAll(ImmutableList.of(), Group.class).isEmpty(), is(true));
+
+        then(collection).shouldHaveNoInteractions();
+        then(collectionVersionRepository).shouldHaveNoInteractions();
+    }
+
+    private static BulkWriteResult resultOf(final int matchedCount) {
+        return BulkWriteResult.acknowledged(0, matchedCount, 0, matchedCount, ImmutableList.of());
+    }
+}
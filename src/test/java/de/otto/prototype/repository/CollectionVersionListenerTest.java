@@ -0,0 +1,51 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.ImmutableList;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.Hashable;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import static org.mockito.BDDMockito.then;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class CollectionVersionListenerTest {
+
+    private static final Group VALID_GROUP =
+            Group.builder().id("someGroupId").name("someGroupName").userIds(ImmutableList.of("someUserId")).build();
+
+    @Mock
+    private CollectionVersionRepository collectionVersionRepository;
+
+    private CollectionVersionListener testee;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        testee = new CollectionVersionListener(collectionVersionRepository);
+    }
+
+    @Test
+    @DisplayName("should raise the collection version after an entity was saved")
+    void shouldIncrementAfterSave() {
+        testee.onAfterSave(new AfterSaveEvent<>(VALID_GROUP, new Document(), "group"));
+
+        then(collectionVersionRepository).should().increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should raise the collection version after an entity was deleted")
+    @SuppressWarnings("unchecked")
+    void shouldIncrementAfterDelete() {
+        final Class<Hashable> groupType = (Class<Hashable>) (Class<?>) Group.class;
+
+        testee.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", "someGroupId"), groupType, "group"));
+
+        then(collectionVersionRepository).should().increment(Group.class);
+    }
+}
@@ -0,0 +1,138 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class ConditionalUpdateRepositoryTest {
+
+    private static final String GROUP_ID = new ObjectId().toHexString();
+    private static final Group VALID_GROUP =
+            Group.builder().id(GROUP_ID).name("someGroupName").userIds(ImmutableList.of("someUserId")).build();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private ConditionalUpdateRepository testee;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        initMocks(this);
+        final MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        final MappingMongoConverter converter = new MappingMongoConverter(mock(DbRefResolver.class), mappingContext);
+        converter.afterPropertiesSet();
+        given(mongoTemplate.getConverter()).willReturn(converter);
+        given(mongoTemplate.getCollectionName(Group.class)).willReturn("group");
+        given(mongoTemplate.execute(any(String.class), any(CollectionCallback.class)))
+                .willAnswer(invocation -> invocation.<CollectionCallback<?>>getArgument(1).doInCollection(collection));
+        testee = new ConditionalUpdateRepository(mongoTemplate, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("should overwrite the document only if the stored version matches, raise it and publish the save events")
+    void shouldUpdateDocumentIfVersionMatches() {
+        given(collection.findOneAndUpdate(any(Document.class), any(Document.class), any(FindOneAndUpdateOptions.class)))
+                .willReturn(new Document("_id", new ObjectId(GROUP_ID)).append("name", "someGroupName").append("vip", false)
+                        .append("userIds", ImmutableList.of("someUserId")).append("version", 4L));
+
+        final Optional<Group> updatedGroup = testee.update(VALID_GROUP, 3L);
+
+        final ArgumentCaptor<Document> filter = ArgumentCaptor.forClass(Document.class);
+        final ArgumentCaptor<Document> update = ArgumentCaptor.forClass(Document.class);
+        then(collection).should().findOneAndUpdate(filter.capture(), update.capture(), any(FindOneAndUpdateOptions.class));
+        assertThat(filter.getValue(), is(new Document("_id", new ObjectId(GROUP_ID)).append("version", 3L)));
+        assertThat(update.getValue().get("$set", Document.class).get("name"), is("someGroupName"));
+        assertThat(update.getValue().get("$inc"), is(new Document("version", 1L)));
+        assertThat(updatedGroup.map(Group::getVersion), is(Optional.of(4L)));
+        then(eventPublisher).should().publishEvent(any(BeforeSaveEvent.class));
+        then(eventPublisher).should().publishEvent(any(AfterSaveEvent.class));
+    }
+
+    @Test
+    @DisplayName("should overwrite the document regardless of its version if none is expected")
+    void shouldUpdateDocumentWithoutVersion() {
+        testee.update(VALID_GROUP, null);
+
+        then(collection).should().findOneAndUpdate(eq(new Document("_id", new ObjectId(GROUP_ID))), any(Document.class), any(FindOneAndUpdateOptions.class));
+    }
+
+    @Test
+    @DisplayName("should remove the fields left out for being null and neither set the id nor the version")
+    void shouldUnsetNullFields() {
+        final User user = User.builder().id(new ObjectId().toHexString()).firstName("Max").lastName("Mustermann").age(30).build();
+        given(mongoTemplate.getCollectionName(User.class)).willReturn("user");
+
+        testee.update(user, null);
+
+        final ArgumentCaptor<Document> update = ArgumentCaptor.forClass(Document.class);
+        then(collection).should().findOneAndUpdate(any(Document.class), update.capture(), any(FindOneAndUpdateOptions.class));
+        assertThat(update.getValue().get("$unset"), is(new Document("secondName", "").append("login", "").append("bio", "")));
+        assertThat(update.getValue().get("$set", Document.class).containsKey("version"), is(false));
+        assertThat(update.getValue().get("$set", Document.class).containsKey("_id"), is(false));
+    }
+
+    @Test
+    @DisplayName("should only set and remove the given properties but keep the fields added by the listeners")
+    void shouldUpdateOnlyGivenProperties() {
+        final User user = User.builder().id(new ObjectId().toHexString()).firstName("Max").lastName("Mustermann").age(40).build();
+        given(mongoTemplate.getCollectionName(User.class)).willReturn("user");
+        willAnswer(invocation -> invocation.<BeforeSaveEvent<User>>getArgument(0).getDocument().put("contentHash", "someHash"))
+                .given(eventPublisher).publishEvent(any(BeforeSaveEvent.class));
+
+        testee.update(user, 2L, ImmutableSet.of("age", "bio"));
+
+        final ArgumentCaptor<Document> update = ArgumentCaptor.forClass(Document.class);
+        then(collection).should().findOneAndUpdate(any(Document.class), update.capture(), any(FindOneAndUpdateOptions.class));
+        assertThat(update.getValue().get("$set"), is(new Document("age", 40).append("contentHash", "someHash").append("_class", User.class.getName())));
+        assertThat(update.getValue().get("$unset"), is(new Document("bio", "")));
+        assertThat(update.getValue().get("$inc"), is(new Document("version", 1L)));
+    }
+
+    @Test
+    @DisplayName("should not publish an after save event if the version differs")
+    void shouldNotUpdateDocumentIfVersionDiffers() {
+        final Optional<Group> updatedGroup = testee.update(VALID_GROUP, 2L);
+
+        assertThat(updatedGroup, is(Optional.empty()));
+        then(eventPublisher).should(never()).publishEvent(any(AfterSaveEvent.class));
+    }
+}
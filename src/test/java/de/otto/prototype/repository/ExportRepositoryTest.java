@@ -0,0 +1,102 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.ImmutableSet;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import de.otto.prototype.model.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class ExportRepositoryTest {
+
+    private static final String USER_ID = "5a8c3ffb4c5d4a001c3b1f2e";
+
+    private static final ImmutableSet<String> HIDDEN_FIELDS = ImmutableSet.of("login.password");
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private MongoCursor<Document> cursor;
+
+    private FindIterable<Document> findIterable;
+
+    private ExportRepository testee;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        initMocks(this);
+        final MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        final MappingMongoConverter converter = new MappingMongoConverter(mock(DbRefResolver.class), mappingContext);
+        converter.afterPropertiesSet();
+        given(mongoTemplate.getConverter()).willReturn(converter);
+        given(mongoTemplate.execute(any(Class.class), any(CollectionCallback.class)))
+                .willAnswer(invocation -> invocation.<CollectionCallback<?>>getArgument(1).doInCollection(collection));
+        findIterable = mock(FindIterable.class, RETURNS_SELF);
+        cursor = mock(MongoCursor.class, CALLS_REAL_METHODS);
+        given(collection.find(any(Document.class))).willReturn(findIterable);
+        given(findIterable.iterator()).willReturn(cursor);
+        given(cursor.hasNext()).willReturn(true, false);
+        given(cursor.next()).willReturn(new Document("_id", new ObjectId(USER_ID)).append("firstName", "Max").append("age", 30).append("vip", false));
+        testee = new ExportRepository(mongoTemplate);
+    }
+
+    @Test
+    @DisplayName("should read the users after the given id in the order of their ids from one cursor with the given batch size")
+    void shouldStreamFromOneCursor() {
+        final List<User> users;
+        try (Stream<User> exportedUsers = testee.streamAll(User.class, USER_ID, ImmutableSet.of(), HIDDEN_FIELDS, 500)) {
+            users = exportedUsers.collect(toList());
+        }
+
+        assertThat(users.size(), is(1));
+        assertThat(users.get(0).getId(), is(USER_ID));
+        assertThat(users.get(0).getFirstName(), is("Max"));
+        then(collection).should().find(new Document("_id", new Document("$gt", new ObjectId(USER_ID))));
+        then(findIterable).should().sort(new Document("_id", 1));
+        then(findIterable).should().batchSize(500);
+        then(findIterable).should().projection(new Document("login.password", 0));
+        then(cursor).should().close();
+    }
+
+    @Test
+    @DisplayName("should leave out the properties not asked for, unless needed to build the user, and never read hidden fields")
+    void shouldProjectGivenProperties() {
+        testee.streamAll(User.class, null, ImmutableSet.of("firstName", "age"), HIDDEN_FIELDS, 500).close();
+
+        then(collection).should().find(new Document());
+        then(findIterable).should().projection(new Document("secondName", 0)
+                .append("lastName", 0)
+                .append("login", 0)
+                .append("bio", 0)
+                .append("version", 0));
+    }
+}
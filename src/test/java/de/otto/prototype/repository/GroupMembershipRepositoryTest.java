@@ -0,0 +1,179 @@
+package de.otto.prototype.repository;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.mongodb.client.result.UpdateResult;
+import de.otto.prototype.model.CountedGroup;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.VersionOnly;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.DEFAULT_CONTEXT;
+
+class GroupMembershipRepositoryTest {
+
+    private static final String GROUP_ID = "someGroupId";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CollectionVersionRepository collectionVersionRepository;
+
+    private GroupMembershipRepository testee;
+
+    private final ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+
+    private final ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+
+    private final ArgumentCaptor<TypedAggregation> aggregation = ArgumentCaptor.forClass(TypedAggregation.class);
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        given(mongoTemplate.getCollectionName(Group.class)).willReturn("group");
+        given(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(VersionOnly.class), eq("group")))
+                .willReturn(new VersionOnly(4L));
+        testee = new GroupMembershipRepository(mongoTemplate, collectionVersionRepository);
+    }
+
+    @Test
+    @DisplayName("should add the users to the set of members, raise the versions and return the new one")
+    void shouldAddMembers() {
+        final Optional<VersionOnly> version = testee.addMembers(GROUP_ID, ImmutableList.of("a", "b"), 3L, false);
+
+        then(mongoTemplate).should().findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(VersionOnly.class), eq("group"));
+        assertThat(query.getValue().getQueryObject(), is(new Document("_id", GROUP_ID).append("version", 3L)));
+        assertThat(query.getValue().getFieldsObject(), is(new Document("version", 1)));
+        assertThat(update.getValue().getUpdateObject().get("$addToSet", Document.class).keySet(), is(ImmutableSet.of("userIds")));
+        assertThat(update.getValue().getUpdateObject().get("$inc"), is(new Document("version", 1L)));
+        assertThat(version, is(Optional.of(new VersionOnly(4L))));
+        then(collectionVersionRepository).should().increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should only add users that are no vips to standard groups")
+    void shouldAddMembersToStandardGroupsOnly() {
+        testee.addMembers(GROUP_ID, ImmutableList.of("a"), null, true);
+
+        then(mongoTemplate).should().findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(VersionOnly.class), eq("group"));
+        assertThat(query.getValue().getQueryObject(), is(new Document("_id", GROUP_ID).append("vip", false)));
+    }
+
+    @Test
+    @DisplayName("should pull the users from the members only if any of them is a member and another member remains")
+    void shouldRemoveMembers() {
+        testee.removeMembers(GROUP_ID, ImmutableList.of("a", "b"), null);
+
+        then(mongoTemplate).should().findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(VersionOnly.class), eq("group"));
+        assertThat(query.getValue().getQueryObject(), is(new Document("_id", GROUP_ID)
+                .append("userIds", new Document("$elemMatch", new Document("$nin", ImmutableList.of("a", "b")))
+                        .append("$in", ImmutableList.of("a", "b")))));
+        assertThat(update.getValue().getUpdateObject().get("$pullAll"), is(new Document("userIds", ImmutableList.of("a", "b"))));
+    }
+
+    @Test
+    @DisplayName("should neither raise the collection version nor return a version if no group matches")
+    void shouldReturnEmptyIfNoGroupMatches() {
+        given(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(VersionOnly.class), eq("group")))
+                .willReturn(null);
+
+        assertThat(testee.removeMembers(GROUP_ID, ImmutableList.of("a"), 3L), is(Optional.empty()));
+        then(collectionVersionRepository).should(never()).increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should pull the user from all groups keeping another member in one multi update and raise their versions")
+    void shouldRemoveMemberFromAllGroups() {
+        given(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Group.class))).willReturn(UpdateResult.acknowledged(2L, 2L, null));
+
+        final long changedGroups = testee.removeMemberFromAllGroups("a");
+
+        then(mongoTemplate).should().updateMulti(query.capture(), update.capture(), eq(Group.class));
+        assertThat(query.getValue().getQueryObject(), is(new Document("userIds", "a").append("userIds.1", new Document("$exists", true))));
+        assertThat(update.getValue().getUpdateObject().get("$pull"), is(new Document("userIds", "a")));
+        assertThat(update.getValue().getUpdateObject().get("$inc"), is(new Document("version", 1L)));
+        assertThat(changedGroups, is(2L));
+        then(collectionVersionRepository).should().increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should not raise the collection version if the user was member of no group")
+    void shouldNotRaiseCollectionVersionIfNoGroupChanged() {
+        given(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Group.class))).willReturn(UpdateResult.acknowledged(0L, 0L, null));
+
+        assertThat(testee.removeMemberFromAllGroups("a"), is(0L));
+        then(collectionVersionRepository).should(never()).increment(Group.class);
+    }
+
+    @Test
+    @DisplayName("should unwind the members of the group on the database and map them to ids")
+    void shouldFindMemberIds() {
+        given(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).willReturn(
+                new AggregationResults<>(ImmutableList.of(new Document("userIds", "b"), new Document("userIds", "c")), new Document()));
+
+        final List<IdOnly> memberIds = testee.findMemberIds(GROUP_ID, "a", null, 3);
+
+        then(mongoTemplate).should().aggregate(aggregation.capture(), eq(Document.class));
+        final List<Document> pipeline = aggregation.getValue().toDocument("group", DEFAULT_CONTEXT).get("pipeline", List.class);
+        assertThat(pipeline.get(0), is(new Document("$match", new Document("_id", GROUP_ID))));
+        assertThat(pipeline.get(3), is(new Document("$match", new Document("userIds", new Document("$gt", "a")))));
+        assertThat(pipeline.get(4), is(new Document("$sort", new Document("userIds", 1))));
+        assertThat(pipeline.get(5), is(new Document("$limit", 3L)));
+        assertThat(memberIds, is(ImmutableList.of(new IdOnly("b"), new IdOnly("c"))));
+    }
+
+    @Test
+    @DisplayName("should count the members on the database and return empty if the group does not exist")
+    void shouldCountMembers() {
+        given(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).willReturn(
+                new AggregationResults<>(ImmutableList.of(new Document("memberCount", 2)), new Document()),
+                new AggregationResults<>(ImmutableList.of(), new Document()));
+
+        assertThat(testee.countMembers(GROUP_ID), is(Optional.of(2)));
+        assertThat(testee.countMembers(GROUP_ID), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("should read the group without its user ids together with its member count in one aggregation")
+    void shouldFindWithMemberCount() {
+        final CountedGroup countedGroup = new CountedGroup(Group.builder().id(GROUP_ID).name("someGroup").build(), 2);
+        given(mongoTemplate.aggregate(any(TypedAggregation.class), eq(CountedGroup.class))).willReturn(
+                new AggregationResults<>(ImmutableList.of(countedGroup), new Document()),
+                new AggregationResults<>(ImmutableList.of(), new Document()));
+
+        assertThat(testee.findWithMemberCount(GROUP_ID), is(Optional.of(countedGroup)));
+        assertThat(testee.findWithMemberCount(GROUP_ID), is(Optional.empty()));
+
+        then(mongoTemplate).should(times(2)).aggregate(aggregation.capture(), eq(CountedGroup.class));
+        final List<Document> pipeline = aggregation.getValue().toDocument("group", DEFAULT_CONTEXT).get("pipeline", List.class);
+        assertThat(pipeline.get(1), is(new Document("$project", new Document("group", "$$ROOT")
+                .append("memberCount", new Document("$size", singletonList("$userIds"))))));
+        assertThat(pipeline.get(2), is(new Document("$project", new Document("group.userIds", 0))));
+    }
+}
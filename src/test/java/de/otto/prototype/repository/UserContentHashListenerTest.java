@@ -0,0 +1,62 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.Login;
+import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserFunnel;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import java.util.stream.Stream;
+
+import static com.google.common.hash.Hashing.sha256;
+import static de.otto.prototype.repository.UserContentHashListener.CONTENT_HASH;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class UserContentHashListenerTest {
+
+    private static final User VALID_USER = User.builder().id("someUserId").lastName("Mustermann").firstName("Max").age(30)
+            .login(Login.builder().mail("max.mustermann@otto.de").password("somePassword").build()).build();
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserContentHashListener testee;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+    }
+
+    @Test
+    @DisplayName("should store the hash of the user data without its id")
+    void shouldPutContentHashIntoDocument() {
+        final Document document = new Document();
+
+        testee.onBeforeSave(new BeforeSaveEvent<>(VALID_USER, document, "user"));
+
+        assertThat(document.get(CONTENT_HASH), is(sha256().newHasher().putObject(VALID_USER.toBuilder().id("").build(), UserFunnel.INSTANCE).hash().toString()));
+        assertThat(document.get(CONTENT_HASH), is(VALID_USER.toBuilder().id("someOtherUserId").build().getContentHash()));
+    }
+
+    @Test
+    @DisplayName("should save all users persisted without a content hash")
+    void shouldBackfillUsersWithoutContentHash() {
+        final User otherUser = VALID_USER.toBuilder().id("someOtherUserId").build();
+        given(userRepository.streamWithoutContentHash()).willReturn(Stream.of(VALID_USER, otherUser));
+
+        testee.backfillContentHashes();
+
+        then(userRepository).should().save(VALID_USER);
+        then(userRepository).should().save(otherUser);
+    }
+}
@@ -0,0 +1,40 @@
+package de.otto.prototype.repository;
+
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static de.otto.prototype.repository.VersionInitializer.VERSION;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+class VersionInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private VersionInitializer testee;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+    }
+
+    @Test
+    @DisplayName("should give all users and groups stored without a version the initial one")
+    void shouldInitializeMissingVersions() {
+        testee.initializeVersions();
+
+        then(mongoTemplate).should().updateMulti(query(where(VERSION).exists(false)), new Update().set(VERSION, 0L), User.class);
+        then(mongoTemplate).should().updateMulti(query(where(VERSION).exists(false)), new Update().set(VERSION, 0L), Group.class);
+    }
+}
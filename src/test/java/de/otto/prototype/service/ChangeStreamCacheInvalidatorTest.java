@@ -0,0 +1,221 @@
+package de.otto.prototype.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.User;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.changestream.OperationType.DELETE;
+import static com.mongodb.client.model.changestream.OperationType.INVALIDATE;
+import static com.mongodb.client.model.changestream.OperationType.UPDATE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItems;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class ChangeStreamCacheInvalidatorTest {
+
+    private static final MongoNamespace USER_NAMESPACE = new MongoNamespace("test", "user");
+
+    @Mock
+    private Consumer<String> evict;
+
+    @Mock
+    private Runnable evictAll;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> userCollection;
+
+    @Mock
+    private MongoCollection<Document> groupCollection;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private GroupService groupService;
+
+    private ChangeStreamCacheInvalidator testee;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        given(mongoTemplate.getCollectionName(User.class)).willReturn("user");
+        given(mongoTemplate.getCollectionName(Group.class)).willReturn("group");
+        given(mongoTemplate.getCollection("user")).willReturn(userCollection);
+        given(mongoTemplate.getCollection("group")).willReturn(groupCollection);
+        final ChangeStreamIterable<Document> groupStream = streamOf(blockingCursor());
+        given(groupCollection.watch()).willReturn(groupStream);
+        testee = new ChangeStreamCacheInvalidator(mongoTemplate, userService, groupService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        testee.stop();
+    }
+
+    @Test
+    @DisplayName("should evict every changed entity, but not everything when the streams are first opened")
+    void shouldEvictChangedEntitiesOnly() {
+        final ObjectId id = new ObjectId();
+        final ChangeStreamIterable<Document> userStream = streamOf(blockingCursor(change(UPDATE, new BsonDocument("_id", new BsonObjectId(id)))));
+        given(userCollection.watch()).willReturn(userStream);
+
+        testee.start();
+
+        then(userService).should(timeout(1000)).evict(id.toHexString());
+        then(groupCollection).should(timeout(1000)).watch();
+        then(userService).should(never()).evictAll();
+        then(groupService).should(never()).evictAll();
+    }
+
+    @Test
+    @DisplayName("should reopen an interrupted stream and evict everything once it is reopened")
+    void shouldReopenInterruptedStream() {
+        final MongoCursor<ChangeStreamDocument<Document>> failingCursor = cursor();
+        given(failingCursor.hasNext()).willThrow(new MongoException("connection lost"));
+        final ChangeStreamIterable<Document> failingStream = streamOf(failingCursor);
+        final ChangeStreamIterable<Document> reopenedStream = streamOf(blockingCursor());
+        given(userCollection.watch()).willReturn(failingStream, reopenedStream);
+
+        testee.start();
+
+        then(userCollection).should(timeout(3000).times(2)).watch();
+        then(userService).should(timeout(1000)).evictAll();
+        then(failingCursor).should().close();
+        then(groupService).should(never()).evictAll();
+    }
+
+    @Test
+    @DisplayName("should watch every collection in a thread named after it")
+    void shouldNameThreadsAfterCollections() {
+        final List<String> threadNames = new CopyOnWriteArrayList<>();
+        willAnswer(invocation -> threadNames.add(Thread.currentThread().getName())).given(userService).evict(any());
+        willAnswer(invocation -> threadNames.add(Thread.currentThread().getName())).given(groupService).evict(any());
+        final ChangeStreamIterable<Document> userStream = streamOf(blockingCursor(change(UPDATE, new BsonDocument("_id", new BsonString("someUserId")))));
+        final ChangeStreamIterable<Document> groupStream = streamOf(blockingCursor(change(UPDATE, new BsonDocument("_id", new BsonString("someGroupId")))));
+        given(userCollection.watch()).willReturn(userStream);
+        given(groupCollection.watch()).willReturn(groupStream);
+
+        testee.start();
+
+        then(userService).should(timeout(1000)).evict("someUserId");
+        then(groupService).should(timeout(1000)).evict("someGroupId");
+        assertThat(threadNames, hasItems("change-stream-cache-invalidator-user", "change-stream-cache-invalidator-group"));
+    }
+
+    @Test
+    @DisplayName("should close the open streams on stop and not reopen them")
+    void shouldCloseStreamsOnStop() throws InterruptedException {
+        final MongoCursor<ChangeStreamDocument<Document>> cursor = blockingCursor();
+        final ChangeStreamIterable<Document> userStream = streamOf(cursor);
+        given(userCollection.watch()).willReturn(userStream);
+        testee.start();
+        then(userStream).should(timeout(1000)).iterator();
+
+        testee.stop();
+
+        then(cursor).should(timeout(1000).atLeastOnce()).close();
+        Thread.sleep(100);
+        then(userCollection).should(times(1)).watch();
+        then(userService).should(never()).evictAll();
+    }
+
+    @Test
+    @DisplayName("should evict a changed entity stored with an object id")
+    void shouldEvictEntityWithObjectId() {
+        final ObjectId id = new ObjectId();
+
+        ChangeStreamCacheInvalidator.dispatch(change(UPDATE, new BsonDocument("_id", new BsonObjectId(id))), evict, evictAll);
+
+        then(evict).should().accept(id.toHexString());
+        then(evictAll).should(never()).run();
+    }
+
+    @Test
+    @DisplayName("should evict a changed entity stored with a string id")
+    void shouldEvictEntityWithStringId() {
+        ChangeStreamCacheInvalidator.dispatch(change(DELETE, new BsonDocument("_id", new BsonString("someUserId"))), evict, evictAll);
+
+        then(evict).should().accept("someUserId");
+    }
+
+    @Test
+    @DisplayName("should evict everything if the stream got invalidated")
+    void shouldEvictAllOnInvalidate() {
+        ChangeStreamCacheInvalidator.dispatch(change(INVALIDATE, null), evict, evictAll);
+
+        then(evictAll).should().run();
+        then(evict).should(never()).accept(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamIterable<Document> streamOf(final MongoCursor<ChangeStreamDocument<Document>> cursor) {
+        final ChangeStreamIterable<Document> stream = mock(ChangeStreamIterable.class);
+        given(stream.iterator()).willReturn(cursor);
+        return stream;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCursor<ChangeStreamDocument<Document>> cursor() {
+        return mock(MongoCursor.class);
+    }
+
+    /**
+     * Returns the given changes and then blocks like an idle change stream, until it is closed.
+     */
+    @SafeVarargs
+    private static MongoCursor<ChangeStreamDocument<Document>> blockingCursor(final ChangeStreamDocument<Document>... changes) {
+        final MongoCursor<ChangeStreamDocument<Document>> cursor = cursor();
+        final Iterator<ChangeStreamDocument<Document>> pendingChanges = List.of(changes).iterator();
+        final CountDownLatch closed = new CountDownLatch(1);
+        given(cursor.hasNext()).willAnswer(invocation -> {
+            if (pendingChanges.hasNext())
+                return true;
+            closed.await();
+            throw new IllegalStateException("Cursor has been closed");
+        });
+        given(cursor.next()).willAnswer(invocation -> pendingChanges.next());
+        willAnswer(invocation -> {
+            closed.countDown();
+            return null;
+        }).given(cursor).close();
+        return cursor;
+    }
+
+    private static ChangeStreamDocument<Document> change(final OperationType operationType, final BsonDocument documentKey) {
+        return new ChangeStreamDocument<>(new BsonDocument(), USER_NAMESPACE, null, documentKey, operationType, null);
+    }
+}
@@ -0,0 +1,103 @@
+package de.otto.prototype.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ExpiringIdTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final ExpiringId testee = new ExpiringId(60, SECONDS, now::get);
+
+    private Optional<String> load(final String id) {
+        loads.incrementAndGet();
+        return Optional.ofNullable(id);
+    }
+
+    @Test
+    @DisplayName("should load the id once as long as it is not expired")
+    void shouldKeepLoadedId() {
+        testee.get(() -> load("first"));
+        now.addAndGet(SECONDS.toNanos(59));
+
+        assertAll(
+                () -> assertThat(testee.get(() -> load("other")), is(Optional.of("first"))),
+                () -> assertThat(loads.get(), is(1))
+        );
+    }
+
+    @Test
+    @DisplayName("should load the id again once it is expired")
+    void shouldReloadExpiredId() {
+        testee.get(() -> load("first"));
+        now.addAndGet(SECONDS.toNanos(60));
+
+        assertAll(
+                () -> assertThat(testee.get(() -> load("second")), is(Optional.of("second"))),
+                () -> assertThat(loads.get(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("should not remember that there is no id")
+    void shouldNotKeepMissingId() {
+        testee.get(() -> load(null));
+
+        assertAll(
+                () -> assertThat(testee.get(() -> load("first")), is(Optional.of("first"))),
+                () -> assertThat(loads.get(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("should load the id again only if that id is evicted")
+    void shouldReloadEvictedId() {
+        testee.get(() -> load("first"));
+
+        testee.evict("second");
+        testee.get(() -> load("other"));
+        testee.evict("first");
+
+        assertAll(
+                () -> assertThat(testee.get(() -> load("second")), is(Optional.of("second"))),
+                () -> assertThat(loads.get(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("should not keep an id loaded while everything was evicted")
+    void shouldNotKeepIdLoadedDuringEviction() {
+        final Optional<String> loaded = testee.get(() -> {
+            testee.evictAll();
+            return load("deleted");
+        });
+
+        assertAll(
+                () -> assertThat(loaded, is(Optional.of("deleted"))),
+                () -> assertThat(testee.get(() -> load("first")), is(Optional.of("first"))),
+                () -> assertThat(loads.get(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("should keep a set id without loading it")
+    void shouldKeepSetId() {
+        testee.set("first");
+
+        assertAll(
+                () -> assertThat(testee.get(() -> load("other")), is(Optional.of("first"))),
+                () -> assertThat(loads.get(), is(0))
+        );
+    }
+}
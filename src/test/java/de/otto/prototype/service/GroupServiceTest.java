@@ -1,13 +1,29 @@
 package de.otto.prototype.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
 import de.otto.prototype.exceptions.InvalidGroupException;
 import de.otto.prototype.exceptions.NotFoundException;
 import de.otto.prototype.metrics.Counted;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.CountedGroup;
 import de.otto.prototype.model.Group;
+import de.otto.prototype.model.IdAndVersion;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
 import de.otto.prototype.model.Login;
+import de.otto.prototype.model.Neighbours;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.VersionOnly;
+import de.otto.prototype.repository.BulkWriteRepository;
+import de.otto.prototype.repository.CollectionVersionRepository;
+import de.otto.prototype.repository.ConditionalUpdateRepository;
+import de.otto.prototype.repository.ExportRepository;
+import de.otto.prototype.repository.GroupMembershipRepository;
 import de.otto.prototype.repository.GroupRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,25 +31,44 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static de.otto.prototype.model.Versioned.UNKNOWN_VERSION;
 import static java.lang.reflect.Modifier.isPublic;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 class GroupServiceTest {
 
@@ -58,16 +93,46 @@ class GroupServiceTest {
 	@Mock
 	private GroupRepository groupRepository;
 
+	@Mock
+	private CollectionVersionRepository collectionVersionRepository;
+
+	@Mock
+	private ConditionalUpdateRepository conditionalUpdateRepository;
+
+	@Mock
+	private GroupMembershipRepository groupMembershipRepository;
+
 	@Mock
 	private UserService userService;
 
+	@Mock
+	private BulkWriteRepository bulkWriteRepository;
+
+	@Mock
+	private ExportRepository exportRepository;
+
+	@Mock
+	private Cache<String, CountedGroup> groupCache;
+
+	@Mock
+	private IdFilter groupIdFilter;
+
+	@Spy
+	private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+	@Spy
+	private ObjectMapper objectMapper = new ObjectMapper();
+
 	@InjectMocks
 	private GroupService testee;
 
 	@BeforeEach
 	void setUp() {
 		initMocks(this);
-		given(userService.findAll()).willReturn(Stream.of(VALID_MINIMUM_USER_NON_VIP, VALID_MINIMUM_USER_VIP));
+		given(groupIdFilter.mightContain(any())).willReturn(true);
+		given(userService.findVipStatus(anyCollection())).willAnswer(invocation -> Stream.of(VALID_MINIMUM_USER_NON_VIP, VALID_MINIMUM_USER_VIP)
+				.filter(user -> invocation.<Collection<String>>getArgument(0).contains(user.getId()))
+				.collect(toMap(User::getId, User::isVip)));
 	}
 
 	@Test
@@ -114,26 +179,256 @@ class GroupServiceTest {
 			String groupId = "someId";
 			String groupName = "someName";
 			final Group groupToReturn = Group.builder().id(groupId).name(groupName).build();
-			given(groupRepository.findById(groupId)).willReturn(Optional.of(groupToReturn));
+			given(groupMembershipRepository.findWithMemberCount(groupId)).willReturn(Optional.of(new CountedGroup(groupToReturn, 2)));
 
-			final Group foundGroup = testee.findOne(groupId).orElse(null);
+			final CountedGroup foundGroup = testee.findOne(groupId).orElse(null);
 
 			assert foundGroup != null;
 			assertAll("group",
-					() -> assertThat(foundGroup.getId(), is(groupId)),
-					() -> assertThat(foundGroup.getName(), is(groupName)));
+					() -> assertThat(foundGroup.getGroup().getId(), is(groupId)),
+					() -> assertThat(foundGroup.getGroup().getName(), is(groupName)),
+					() -> assertThat(foundGroup.getMemberCount(), is(2)));
 		}
 
 		@Test
 		@DisplayName("should an empty optional if no group found for id")
 		void shouldReturnNoGroupIfNotFound() {
 			String groupId = "someId";
-			given(groupRepository.findById(groupId)).willReturn(Optional.empty());
+			given(groupMembershipRepository.findWithMemberCount(groupId)).willReturn(Optional.empty());
 
-			final Optional<Group> foundGroup = testee.findOne(groupId);
+			final Optional<CountedGroup> foundGroup = testee.findOne(groupId);
 
 			assertThat(foundGroup.isPresent(), is(false));
 		}
+
+		@Test
+		@DisplayName("should cache a group found for an id")
+		void shouldCacheFoundGroup() {
+			final CountedGroup countedGroup = new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1);
+			given(groupMembershipRepository.findWithMemberCount(VALID_GROUP_ID)).willReturn(Optional.of(countedGroup));
+
+			testee.findOne(VALID_GROUP_ID);
+
+			then(groupCache).should().put(VALID_GROUP_ID, countedGroup);
+		}
+
+		@Test
+		@DisplayName("should return a cached group without reading it from the repository")
+		void shouldReturnCachedGroup() {
+			final CountedGroup countedGroup = new CountedGroup(VALID_MINIMUM_GROUP_WITH_ID, 1);
+			given(groupCache.getIfPresent(VALID_GROUP_ID)).willReturn(countedGroup);
+
+			assertThat(testee.findOne(VALID_GROUP_ID), is(Optional.of(countedGroup)));
+			then(groupMembershipRepository).should(never()).findWithMemberCount(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should return the stored version of a group as weak etag")
+		void shouldReturnStoredETag() {
+			given(groupRepository.findVersionById("someId")).willReturn(Optional.of(new VersionOnly(3L)));
+
+			assertThat(testee.findETag("someId"), is(Optional.of("W/\"3\"")));
+		}
+
+		@Test
+		@DisplayName("should return the initial etag if the group was stored without a version")
+		void shouldReturnInitialETagIfNoVersionStored() {
+			given(groupRepository.findVersionById("someId")).willReturn(Optional.of(new VersionOnly(null)));
+
+			assertThat(testee.findETag("someId"), is(Optional.of("W/\"0\"")));
+		}
+
+		@Test
+		@DisplayName("should return the version of the group collection")
+		void shouldReturnCollectionVersion() {
+			final CollectionVersion collectionVersion = new CollectionVersion("group", "someEpoch", 3);
+			given(collectionVersionRepository.find(Group.class)).willReturn(collectionVersion);
+
+			assertThat(testee.findCollectionVersion(), is(collectionVersion));
+		}
+	}
+
+	@Nested
+	@DisplayName("when a page of groups is requested it")
+	class getGroupPage {
+		private final Group first = VALID_MINIMUM_GROUP.toBuilder().id("first").build();
+		private final Group second = VALID_MINIMUM_GROUP.toBuilder().id("second").build();
+		private final Group third = VALID_MINIMUM_GROUP.toBuilder().id("third").build();
+
+		@Test
+		@DisplayName("should fetch one more group than requested to detect a next page")
+		void shouldReturnFirstPageWithNext() {
+			given(groupRepository.findPage(PageRequest.of(0, 3, ASC, "id"))).willReturn(List.of(first, second, third));
+
+			final KeysetPage<Group> page = testee.findPage(null, null, 2, true);
+
+			assertAll("first page",
+					() -> assertThat(page.getContent(), is(List.of(first, second))),
+					() -> assertThat(page.hasPrev(), is(false)),
+					() -> assertThat(page.hasNext(), is(true)));
+		}
+
+		@Test
+		@DisplayName("should use the projection without user ids if they are not requested")
+		void shouldReturnPageAfterCursorWithoutUserIds() {
+			given(groupRepository.findWithoutUserIdsByIdGreaterThan("first", PageRequest.of(0, 3, ASC, "id"))).willReturn(List.of(second, third));
+
+			final KeysetPage<Group> page = testee.findPage("first", null, 2, false);
+
+			assertAll("page after cursor",
+					() -> assertThat(page.getContent(), is(List.of(second, third))),
+					() -> assertThat(page.hasPrev(), is(true)),
+					() -> assertThat(page.hasNext(), is(false)));
+			then(groupRepository).should(never()).findByIdGreaterThan(any(), any());
+			then(groupRepository).should(never()).streamAll();
+		}
+
+		@Test
+		@DisplayName("should query the groups before a given id and return them in ascending order")
+		void shouldReturnPageBeforeCursor() {
+			given(groupRepository.findByIdLessThan("third", PageRequest.of(0, 2, DESC, "id"))).willReturn(List.of(second, first));
+			given(groupRepository.existsByIdGreaterThan("second")).willReturn(true);
+
+			final KeysetPage<Group> page = testee.findPage(null, "third", 1, true);
+
+			assertAll("page before cursor",
+					() -> assertThat(page.getContent(), is(List.of(second))),
+					() -> assertThat(page.hasPrev(), is(true)),
+					() -> assertThat(page.hasNext(), is(true)));
+		}
+
+		@Test
+		@DisplayName("should report no next page before a cursor, if no group follows the page anymore")
+		void shouldReturnLastPageBeforeDeletedCursor() {
+			given(groupRepository.findByIdLessThan("third", PageRequest.of(0, 2, DESC, "id"))).willReturn(List.of(second, first));
+			given(groupRepository.existsByIdGreaterThan("second")).willReturn(false);
+
+			assertThat(testee.findPage(null, "third", 1, true).hasNext(), is(false));
+		}
+	}
+
+	@Nested
+	@DisplayName("when the groups of a user are requested it")
+	class getGroupsOfMember {
+		private final Group first = VALID_MINIMUM_GROUP.toBuilder().id("first").build();
+		private final Group second = VALID_MINIMUM_GROUP.toBuilder().id("second").build();
+
+		@Test
+		@DisplayName("should query the groups by member id and fetch one more group than requested")
+		void shouldReturnPageOfGroupsOfMember() {
+			given(groupRepository.findWithoutUserIdsByUserIds(VALID_USER_ID_VIP, PageRequest.of(0, 2, ASC, "id"))).willReturn(List.of(first, second));
+
+			final KeysetPage<Group> page = testee.findPageByMember(VALID_USER_ID_VIP, null, null, 1);
+
+			assertAll("page of groups of member",
+					() -> assertThat(page.getContent(), is(List.of(first))),
+					() -> assertThat(page.hasNext(), is(true)));
+			then(groupRepository).should(never()).streamAll();
+		}
+
+		@Test
+		@DisplayName("should query the groups of the member around a given id")
+		void shouldReturnPagesOfGroupsOfMemberAroundCursor() {
+			given(groupRepository.findWithoutUserIdsByUserIdsAndIdGreaterThan(VALID_USER_ID_VIP, "first", PageRequest.of(0, 3, ASC, "id"))).willReturn(List.of(second));
+			given(groupRepository.findWithoutUserIdsByUserIdsAndIdLessThan(VALID_USER_ID_VIP, "second", PageRequest.of(0, 3, DESC, "id"))).willReturn(List.of(first));
+
+			assertAll("pages around cursor",
+					() -> assertThat(testee.findPageByMember(VALID_USER_ID_VIP, "first", null, 2), is(KeysetPage.forward(List.of(second), 2, true))),
+					() -> assertThat(testee.findPageByMember(VALID_USER_ID_VIP, null, "second", 2), is(KeysetPage.backward(List.of(first), 2, lastId -> false))));
+		}
+	}
+
+	@Nested
+	@DisplayName("when the members of a group are requested it")
+	class getGroupMembers {
+		@Test
+		@DisplayName("should fetch one more member id than requested to detect a next page")
+		void shouldReturnPageOfMemberIds() {
+			given(groupMembershipRepository.findMemberIds(VALID_GROUP_ID, "a", null, 3)).willReturn(List.of(new IdOnly("b"), new IdOnly("c"), new IdOnly("d")));
+
+			final KeysetPage<IdOnly> page = testee.findMembers(VALID_GROUP_ID, "a", null, 2);
+
+			assertAll("page of members",
+					() -> assertThat(page.getContent(), is(List.of(new IdOnly("b"), new IdOnly("c")))),
+					() -> assertThat(page.hasPrev(), is(true)),
+					() -> assertThat(page.hasNext(), is(true)));
+			then(groupRepository).shouldHaveNoInteractions();
+		}
+
+		@Test
+		@DisplayName("should return the member ids before a given id in ascending order")
+		void shouldReturnPageOfMemberIdsBeforeCursor() {
+			given(groupMembershipRepository.findMemberIds(VALID_GROUP_ID, null, "c", 2)).willReturn(List.of(new IdOnly("b"), new IdOnly("a")));
+			given(groupMembershipRepository.findMemberIds(VALID_GROUP_ID, "b", null, 1)).willReturn(List.of());
+
+			final KeysetPage<IdOnly> page = testee.findMembers(VALID_GROUP_ID, null, "c", 1);
+
+			assertAll("page before cursor",
+					() -> assertThat(page.getContent(), is(List.of(new IdOnly("b")))),
+					() -> assertThat(page.hasPrev(), is(true)),
+					() -> assertThat(page.hasNext(), is(false)));
+		}
+
+		@Test
+		@DisplayName("should count the members only of groups the id filter does not rule out")
+		void shouldCountMembers() {
+			given(groupMembershipRepository.countMembers(VALID_GROUP_ID)).willReturn(Optional.of(2));
+			given(groupIdFilter.mightContain("unknown")).willReturn(false);
+
+			assertThat(testee.countMembers(VALID_GROUP_ID), is(Optional.of(2)));
+			assertThat(testee.countMembers("unknown"), is(Optional.empty()));
+			then(groupMembershipRepository).should(never()).countMembers("unknown");
+		}
+	}
+
+	@Nested
+	@DisplayName("when the neighbours of a group are requested it")
+	class getGroupNeighbours {
+		private final IdOnly first = new IdOnly("first");
+		private final IdOnly second = new IdOnly("second");
+		private final IdOnly third = new IdOnly("third");
+
+		@Test
+		@DisplayName("should return the surrounding ids and the first id")
+		void shouldReturnNeighboursOfMiddleGroup() {
+			given(groupRepository.findFirstByIdLessThanOrderByIdDesc("third")).willReturn(Optional.of(second));
+			given(groupRepository.findFirstByIdGreaterThanOrderByIdAsc("third")).willReturn(Optional.empty());
+			given(groupRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(first));
+
+			assertThat(testee.findNeighbours("third"), is(new Neighbours("first", "second", null)));
+			then(groupRepository).should(never()).streamAll();
+		}
+
+		@Test
+		@DisplayName("should use the given id as first id if there is no previous group")
+		void shouldReturnOwnIdAsFirstIfNoPrev() {
+			given(groupRepository.findFirstByIdLessThanOrderByIdDesc("first")).willReturn(Optional.empty());
+			given(groupRepository.findFirstByIdGreaterThanOrderByIdAsc("first")).willReturn(Optional.of(second));
+
+			assertThat(testee.findNeighbours("first"), is(new Neighbours("first", null, "second")));
+			then(groupRepository).should(never()).findFirstByOrderByIdAsc();
+		}
+
+		@Test
+		@DisplayName("should look up the first id only once")
+		void shouldCacheFirstId() {
+			given(groupRepository.findFirstByIdLessThanOrderByIdDesc(any())).willReturn(Optional.of(first));
+			given(groupRepository.findFirstByIdGreaterThanOrderByIdAsc(any())).willReturn(Optional.empty());
+			given(groupRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(first));
+
+			testee.findNeighbours("second");
+			testee.findNeighbours("third");
+
+			then(groupRepository).should(times(1)).findFirstByOrderByIdAsc();
+		}
+
+		@Test
+		@DisplayName("should return no first id if there are no groups")
+		void shouldReturnNoFirstIdIfEmpty() {
+			given(groupRepository.findFirstByOrderByIdAsc()).willReturn(Optional.empty());
+
+			assertThat(testee.findFirstId(), is(Optional.empty()));
+		}
 	}
 
 	@Nested
@@ -171,11 +466,23 @@ class GroupServiceTest {
 			assertThat(returnedGroup, is(VALID_MINIMUM_VIP_GROUP_WITH_ID));
 		}
 
+		@Test
+		@DisplayName("should look up only the members of the new group")
+		void shouldLookUpOnlyTheMembersOfTheNewGroup() {
+			final Group groupToCreate = VALID_MINIMUM_VIP_GROUP.toBuilder().userId(VALID_USER_ID_VIP).build();
+			given(groupRepository.save(groupToCreate)).willReturn(groupToCreate);
+
+			testee.create(groupToCreate);
+
+			then(userService).should().findVipStatus(Set.of(VALID_USER_ID_VIP));
+			then(userService).should(never()).findAll();
+		}
+
 		@Test
 		@DisplayName("should throw an invalid group exception if the group name is already taken")
 		void shouldThrowInvalidGroupExceptionOnNewGroupIfNameIsAlreadyTaken() {
 			final Group invalidGroupToCreate = Group.builder().name(VALID_MINIMUM_GROUP_WITH_ID.getName()).userIds(ImmutableList.of(VALID_USER_ID_NON_VIP)).build();
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+			given(groupRepository.existsByName(VALID_MINIMUM_GROUP_WITH_ID.getName())).willReturn(true);
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.create(invalidGroupToCreate));
 			assertAll("exception content",
 					() -> assertThat(exception.getGroup(), is(invalidGroupToCreate)),
@@ -184,10 +491,20 @@ class GroupServiceTest {
 			then(groupRepository).should(never()).save(any(Group.class));
 		}
 
+		@Test
+		@DisplayName("should throw an invalid group exception if a concurrent create took the group name first")
+		void shouldThrowInvalidGroupExceptionOnNewGroupIfNameIsTakenConcurrently() {
+			given(groupRepository.save(VALID_MINIMUM_GROUP)).willThrow(new DuplicateKeyException("E11000 duplicate key error"));
+			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.create(VALID_MINIMUM_GROUP));
+			assertAll("exception content",
+					() -> assertThat(exception.getGroup(), is(VALID_MINIMUM_GROUP)),
+					() -> assertThat(exception.getErrorMsg(), is("the group name is already taken")),
+					() -> assertThat(exception.getErrorCause(), is("business")));
+		}
+
 		@Test
 		@DisplayName("should throw an invalid group exception if the group to be persisted contains unknown userIds")
 		void shouldThrowInvalidGroupExceptionOnNewGroupIfContainsUnknownUsers() {
-			given(groupRepository.streamAll()).willReturn(Stream.empty());
 			final Group invalidGroupToCreate = VALID_MINIMUM_GROUP.toBuilder().userId("unknownUserId").build();
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.create(invalidGroupToCreate));
 			assertAll("exception content",
@@ -200,7 +517,6 @@ class GroupServiceTest {
 		@Test
 		@DisplayName("should throw an invalid group exception if the vip group to be persisted contains non-vip users")
 		void shouldThrowInvalidGroupExceptionOnNewVipGroupIfContainsNonVipUsers() {
-			given(groupRepository.streamAll()).willReturn(Stream.empty());
 			final Group invalidGroupToCreate = VALID_MINIMUM_VIP_GROUP.toBuilder().userId(VALID_USER_ID_NON_VIP).build();
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.create(invalidGroupToCreate));
 			assertAll("exception content",
@@ -211,29 +527,126 @@ class GroupServiceTest {
 		}
 	}
 
+	@Nested
+	@DisplayName("when a batch of groups to create or update is given")
+	class saveGroups {
+		private final Group otherGroup = VALID_MINIMUM_GROUP.toBuilder().name("otherGroupName").build();
+		private final Group otherGroupWithId = otherGroup.toBuilder().id("otherGroupId").build();
+
+		@Test
+		@DisplayName("should write the valid groups with one bulk write, check all members at once and report the others at their position")
+		void shouldWriteValidGroupsAndReportInvalidOnes() {
+			final Group groupWithInvalidName = VALID_MINIMUM_GROUP.toBuilder().name("a").build();
+			final Group vipGroupWithNonVipUser = VALID_MINIMUM_VIP_GROUP.toBuilder().name("vipGroupName").userId(VALID_USER_ID_NON_VIP).build();
+			final Group groupWithUnknownUser = VALID_MINIMUM_GROUP.toBuilder().name("unknownGroupName").userId("someUnknownUserId").build();
+			final Group updatedGroup = VALID_MINIMUM_VIP_GROUP_WITH_ID.toBuilder().name("updatedGroupName").build();
+			given(groupRepository.findVersionsByIdIn(Set.of(VALID_GROUP_ID))).willReturn(List.of(new IdAndVersion(VALID_GROUP_ID, 3L)));
+			given(bulkWriteRepository.writeAll(List.of(otherGroup, updatedGroup), Map.of(VALID_GROUP_ID, 3L), Group.class)).willReturn(List.of(
+					BulkItem.succeeded(0, otherGroupWithId), BulkItem.succeeded(1, updatedGroup)));
+
+			final List<BulkItem<Group>> items =
+					testee.saveAll(List.of(otherGroup, groupWithInvalidName, vipGroupWithNonVipUser, groupWithUnknownUser, updatedGroup));
+
+			assertAll("bulk items",
+					() -> assertThat(items.get(0), is(BulkItem.succeeded(0, otherGroupWithId))),
+					() -> assertThat(items.get(1).getError(), is(instanceOf(ConstraintViolationException.class))),
+					() -> assertThat(items.get(2).getError().getMessage(), is("vip groups must only contains vip users")),
+					() -> assertThat(items.get(3).getError().getMessage(), is("the group contains unknown users")),
+					() -> assertThat(items.get(4), is(BulkItem.succeeded(4, updatedGroup))));
+			then(userService).should(times(1)).findVipStatus(anyCollection());
+			then(groupIdFilter).should().put("otherGroupId");
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+			then(groupRepository).should(never()).save(any(Group.class));
+		}
+
+		@Test
+		@DisplayName("should reject taken names found within the batch or by one query for all names and unknown groups to update")
+		void shouldRejectTakenNamesAndUnknownGroups() {
+			final Group unknownGroup = VALID_MINIMUM_GROUP.toBuilder().id("unknownGroupId").name("unknownGroupName").build();
+			given(groupRepository.findVersionsByIdIn(Set.of(VALID_GROUP_ID, "unknownGroupId"))).willReturn(List.of(new IdAndVersion(VALID_GROUP_ID, 3L)));
+			given(groupRepository.findWithoutUserIdsByNameIn(any())).willReturn(List.of(VALID_MINIMUM_GROUP_WITH_ID, otherGroupWithId));
+			given(bulkWriteRepository.writeAll(List.of(VALID_MINIMUM_GROUP_WITH_ID), Map.of(VALID_GROUP_ID, 3L), Group.class)).willReturn(List.of(
+					BulkItem.succeeded(0, VALID_MINIMUM_GROUP_WITH_ID)));
+
+			final List<BulkItem<Group>> items = testee.saveAll(List.of(VALID_MINIMUM_GROUP_WITH_ID, VALID_MINIMUM_GROUP, otherGroup, unknownGroup));
+
+			assertAll("bulk items",
+					() -> assertThat(items.get(0), is(BulkItem.succeeded(0, VALID_MINIMUM_GROUP_WITH_ID))),
+					() -> assertThat(items.get(1).getError().getMessage(), is("the group name is already taken")),
+					() -> assertThat(items.get(2).getError().getMessage(), is("the group name is already taken")),
+					() -> assertThat(items.get(3).getError(), is(instanceOf(NotFoundException.class))));
+			then(groupRepository).should(times(1)).findWithoutUserIdsByNameIn(any());
+			then(groupRepository).should(never()).existsByName(any());
+		}
+
+		@Test
+		@DisplayName("should report a name taken meanwhile, if the bulk write is rejected for a duplicate key")
+		void shouldRejectNameTakenOnWrite() {
+			given(bulkWriteRepository.writeAll(List.of(otherGroup), Map.of(), Group.class)).willReturn(List.of(
+					BulkItem.failed(0, otherGroup, new DuplicateKeyException("duplicate key"))));
+
+			final List<BulkItem<Group>> items = testee.saveAll(List.of(otherGroup));
+
+			assertThat(items.get(0).getError(), is(instanceOf(InvalidGroupException.class)));
+			assertThat(items.get(0).getError().getMessage(), is("the group name is already taken"));
+			then(groupIdFilter).should(never()).put(any());
+		}
+
+		@Test
+		@DisplayName("should report a group deleted or changed between reading its version and the bulk write as on a single update")
+		void shouldRejectGroupsChangedOnWrite() {
+			final Group deletedGroup = otherGroupWithId.toBuilder().id("deletedGroupId").build();
+			given(groupRepository.findVersionsByIdIn(Set.of(VALID_GROUP_ID, "deletedGroupId")))
+					.willReturn(List.of(new IdAndVersion(VALID_GROUP_ID, 3L), new IdAndVersion("deletedGroupId", 1L)));
+			given(bulkWriteRepository.writeAll(List.of(VALID_MINIMUM_GROUP_WITH_ID, deletedGroup),
+					Map.of(VALID_GROUP_ID, 3L, "deletedGroupId", 1L), Group.class)).willReturn(List.of(
+					BulkItem.failed(0, VALID_MINIMUM_GROUP_WITH_ID, new OptimisticLockingFailureException("version differs")),
+					BulkItem.failed(1, deletedGroup, new EmptyResultDataAccessException(1))));
+
+			final List<BulkItem<Group>> items = testee.saveAll(List.of(VALID_MINIMUM_GROUP_WITH_ID, deletedGroup));
+
+			assertAll("bulk items",
+					() -> assertThat(items.get(0).getError(), is(instanceOf(ConcurrentModificationException.class))),
+					() -> assertThat(items.get(1).getError(), is(instanceOf(NotFoundException.class))));
+			then(groupCache).should(never()).invalidate(any());
+		}
+	}
+
 	@Nested
 	@DisplayName("when a group is about be to updated")
 	class updateGroup {
+		@BeforeEach
+		void setUp() {
+			given(groupRepository.existsById(any())).willReturn(true);
+		}
+
 		@Test
 		@DisplayName("should update the standard group and return it")
 		void shouldReturnUpdatedStandardGroup() {
 			final Group updatedGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("newName").build();
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.save(updatedGroup)).willReturn(updatedGroup);
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+			given(conditionalUpdateRepository.update(updatedGroup, null)).willReturn(Optional.of(updatedGroup));
 
 			final Group persistedGroup = testee.update(updatedGroup, null);
 
 			assertThat(persistedGroup, is(updatedGroup));
 		}
 
+		@Test
+		@DisplayName("should evict the updated group from the cache")
+		void shouldInvalidateCachedGroupOnUpdate() {
+			final Group updatedGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("newName").build();
+			given(conditionalUpdateRepository.update(updatedGroup, null)).willReturn(Optional.of(updatedGroup));
+
+			testee.update(updatedGroup, null);
+
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+		}
+
 		@Test
 		@DisplayName("should update the standard group with an vip user and return it")
 		void shouldReturnUpdatedStandardGroupWithVipUser() {
 			final Group updatedGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().userId(VALID_USER_ID_VIP).build();
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.save(updatedGroup)).willReturn(updatedGroup);
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
+			given(conditionalUpdateRepository.update(updatedGroup, null)).willReturn(Optional.of(updatedGroup));
 
 			final Group persistedGroup = testee.update(updatedGroup, null);
 
@@ -244,9 +657,7 @@ class GroupServiceTest {
 		@DisplayName("should update the vip group and return it")
 		void shouldReturnUpdatedVipGroup() {
 			final Group updatedGroup = VALID_MINIMUM_VIP_GROUP_WITH_ID.toBuilder().name("newName").build();
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.save(updatedGroup)).willReturn(updatedGroup);
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_VIP_GROUP_WITH_ID));
+			given(conditionalUpdateRepository.update(updatedGroup, null)).willReturn(Optional.of(updatedGroup));
 
 			final Group persistedGroup = testee.update(updatedGroup, null);
 
@@ -256,77 +667,344 @@ class GroupServiceTest {
 		@Test
 		@DisplayName("should return a not found exception if no group for given id is found")
 		void shouldReturnNotFoundExceptionIfIdUnknown() {
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.empty());
+			given(groupRepository.existsById(VALID_GROUP_ID)).willReturn(false);
 			NotFoundException exception =
 					assertThrows(NotFoundException.class, () -> testee.update(VALID_MINIMUM_GROUP_WITH_ID, null));
 			assertThat(exception.getMessage(), is("group not found"));
-			then(groupRepository).should(never()).save(any(Group.class));
+			then(groupCache).should(never()).invalidate(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should return a not found exception for an unknown id, even if the group is invalid")
+		void shouldReturnNotFoundExceptionForInvalidGroupWithUnknownId() {
+			given(groupRepository.existsById(VALID_GROUP_ID)).willReturn(false);
+			given(groupRepository.existsByNameAndIdNot("otherGroupName", VALID_GROUP_ID)).willReturn(true);
+			final Group invalidGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("otherGroupName").build();
+
+			NotFoundException exception = assertThrows(NotFoundException.class, () -> testee.update(invalidGroup, null));
+
+			assertThat(exception.getMessage(), is("group not found"));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any());
 		}
 
 		@Test
 		@DisplayName("should update group and return it, if the given etag and the group one are equal")
 		void shouldReturnUpdatedUserIfETagsAreEqual() {
 			final Group updatedGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("newName").build();
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.save(updatedGroup)).willReturn(updatedGroup);
+			given(conditionalUpdateRepository.update(updatedGroup, 0L)).willReturn(Optional.of(updatedGroup));
 
 			final Group persistedGroup = testee.update(updatedGroup, VALID_MINIMUM_GROUP_WITH_ID.getETag());
 
 			assertThat(persistedGroup, is(updatedGroup));
+			then(groupRepository).should(never()).existsById(any());
 		}
 
 		@Test
 		@DisplayName("should throw an concurrent modification exception if etags aren´t equal")
 		void shouldThrowConcurrentModificationExceptionIfETagsUnequal() {
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
+			given(conditionalUpdateRepository.update(VALID_MINIMUM_GROUP_WITH_ID, UNKNOWN_VERSION)).willReturn(Optional.empty());
+			given(groupRepository.existsById(VALID_GROUP_ID)).willReturn(true);
 			ConcurrentModificationException exception =
 					assertThrows(ConcurrentModificationException.class, () -> testee.update(VALID_MINIMUM_GROUP_WITH_ID, "someDifferentEtag"));
 			assertThat(exception.getMessage(), is("etags aren´t equal"));
-			then(groupRepository).should(never()).save(any(Group.class));
+			then(groupCache).should(never()).invalidate(VALID_GROUP_ID);
 		}
 
 		@Test
 		@DisplayName("should throw an invalid group exception if the group name is already taken")
 		void shouldThrowInvalidGroupExceptionOnExistingGroupIfNameIsAlreadyTaken() {
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID,
-					VALID_MINIMUM_GROUP_WITH_ID.toBuilder().id("someOtherId").name("alreadyTakenName").build()));
+			given(groupRepository.existsByNameAndIdNot("alreadyTakenName", VALID_GROUP_ID)).willReturn(true);
 			final Group invalidGroupToUpdate = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("alreadyTakenName").build();
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.update(invalidGroupToUpdate, null));
 			assertAll("exception content",
 					() -> assertThat(exception.getGroup(), is(invalidGroupToUpdate)),
 					() -> assertThat(exception.getErrorMsg(), is("the group name is already taken")),
 					() -> assertThat(exception.getErrorCause(), is("business")));
-			then(groupRepository).should(never()).save(any(Group.class));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any());
 		}
 
 		@Test
 		@DisplayName("should throw an invalid group exception if the group update to be persisted contains unknown userIds")
 		void shouldThrowInvalidGroupExceptionOnExistingGroupIfContainsUnknownUsers() {
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_GROUP_WITH_ID));
 			final Group invalidGroupToUpdate = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().userId("unknownUserId").build();
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.update(invalidGroupToUpdate, null));
 			assertAll("exception content",
 					() -> assertThat(exception.getGroup(), is(invalidGroupToUpdate)),
 					() -> assertThat(exception.getErrorMsg(), is("the group contains unknown users")),
 					() -> assertThat(exception.getErrorCause(), is("business")));
-			then(groupRepository).should(never()).save(any(Group.class));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any());
 		}
 
 		@Test
 		@DisplayName("should throw an invalid group exception if the vip group update to be persisted contains non-vip users")
 		void shouldThrowInvalidGroupExceptionOnExistingVipGroupIfContainsNonVipUsers() {
-			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
-			given(groupRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_VIP_GROUP_WITH_ID));
 			final Group invalidGroupToUpdate = VALID_MINIMUM_VIP_GROUP_WITH_ID.toBuilder().userId(VALID_USER_ID_NON_VIP).build();
 			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.update(invalidGroupToUpdate, null));
 			assertAll("exception content",
 					() -> assertThat(exception.getGroup(), is(invalidGroupToUpdate)),
 					() -> assertThat(exception.getErrorMsg(), is("vip groups must only contains vip users")),
 					() -> assertThat(exception.getErrorCause(), is("business")));
-			then(groupRepository).should(never()).save(any(Group.class));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any());
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if the group name got taken while updating")
+		void shouldThrowInvalidGroupExceptionOnExistingGroupOnDuplicateKey() {
+			final Group updatedGroup = VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("newName").build();
+			given(conditionalUpdateRepository.update(updatedGroup, null)).willThrow(new DuplicateKeyException("E11000 duplicate key error"));
+			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.update(updatedGroup, null));
+			assertThat(exception.getErrorMsg(), is("the group name is already taken"));
+		}
+	}
+
+	@Nested
+	@DisplayName("when a group is about to be patched")
+	class patchGroup {
+		private final ObjectMapper objectMapper = new ObjectMapper();
+
+		@BeforeEach
+		void setUp() {
+			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(VALID_MINIMUM_GROUP_WITH_ID));
+			given(conditionalUpdateRepository.update(any(Group.class), any(), any()))
+					.willAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+		}
+
+		@Test
+		@DisplayName("should write only the touched properties of the patched group and return it")
+		void shouldWriteOnlyTouchedProperties() throws Exception {
+			final Group patchedGroup = testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), null);
+
+			assertThat(patchedGroup, is(VALID_MINIMUM_GROUP_WITH_ID.toBuilder().name("newName").build()));
+			then(conditionalUpdateRepository).should().update(patchedGroup, null, ImmutableSet.of("name"));
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should not check the members if neither they nor the vip flag are touched")
+		void shouldNotValidateUntouchedMembers() throws Exception {
+			testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), null);
+
+			then(userService).should(never()).findVipStatus(anyCollection());
+		}
+
+		@Test
+		@DisplayName("should not check the name if it is not touched")
+		void shouldNotValidateUntouchedName() throws Exception {
+			testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"userIds\": [\"" + VALID_USER_ID_VIP + "\"]}"), null);
+
+			then(groupRepository).should(never()).existsByNameAndIdNot(any(), any());
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if a group with a standard user is patched to vip")
+		void shouldThrowInvalidGroupExceptionIfPatchedToVipWithStandardUser() throws Exception {
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"vip\": true}"), null));
+			assertThat(exception.getErrorMsg(), is("vip groups must only contains vip users"));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any(), any());
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if the patched name is already taken")
+		void shouldThrowInvalidGroupExceptionIfNameTaken() throws Exception {
+			given(groupRepository.existsByNameAndIdNot("newName", VALID_GROUP_ID)).willReturn(true);
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), null));
+			assertThat(exception.getErrorMsg(), is("the group name is already taken"));
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if the patched name is taken concurrently")
+		void shouldThrowInvalidGroupExceptionOnDuplicateKey() throws Exception {
+			given(conditionalUpdateRepository.update(any(Group.class), any(), any())).willThrow(new DuplicateKeyException("duplicate"));
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), null));
+			assertThat(exception.getErrorMsg(), is("the group name is already taken"));
+		}
+
+		@Test
+		@DisplayName("should throw an constraint violation exception if the members are removed")
+		void shouldThrowConstraintViolationExceptionIfMembersRemoved() throws Exception {
+			ConstraintViolationException exception = assertThrows(ConstraintViolationException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"userIds\": null}"), null));
+			assertThat(exception.getConstraintViolations().iterator().next().getMessage(), is("error.userlist.empty"));
+		}
+
+		@Test
+		@DisplayName("should throw an concurrent modification exception without writing if etags aren´t equal")
+		void shouldThrowConcurrentModificationExceptionIfETagsUnequal() throws Exception {
+			assertThrows(ConcurrentModificationException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), "W/\"3\""));
+			then(conditionalUpdateRepository).should(never()).update(any(Group.class), any(), any());
+		}
+
+		@Test
+		@DisplayName("should return a not found exception if no group for given id is found")
+		void shouldReturnNotFoundExceptionIfIdUnknown() {
+			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.empty());
+			NotFoundException exception = assertThrows(NotFoundException.class,
+					() -> testee.patch(VALID_GROUP_ID, objectMapper.readTree("{\"name\": \"newName\"}"), null));
+			assertThat(exception.getMessage(), is("group not found"));
+		}
+	}
+
+	@Nested
+	@DisplayName("when members are added to or removed from a group it")
+	class changeGroupMembers {
+		@Test
+		@DisplayName("should add the members without reading the group and return its new version")
+		void shouldAddMembers() {
+			given(groupMembershipRepository.addMembers(VALID_GROUP_ID, ImmutableSet.of(VALID_USER_ID_VIP), null, false))
+					.willReturn(Optional.of(new VersionOnly(1L)));
+
+			final VersionOnly version = testee.addMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_VIP), null);
+
+			assertThat(version, is(new VersionOnly(1L)));
+			then(groupRepository).shouldHaveNoInteractions();
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should only add standard users to groups that are no vip groups")
+		void shouldRequireStandardGroupForStandardUsers() {
+			given(groupMembershipRepository.addMembers(VALID_GROUP_ID, ImmutableSet.of(VALID_USER_ID_VIP, VALID_USER_ID_NON_VIP), 2L, true))
+					.willReturn(Optional.of(new VersionOnly(3L)));
+
+			final VersionOnly version = testee.addMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_VIP, VALID_USER_ID_NON_VIP), "W/\"2\"");
+
+			assertThat(version, is(new VersionOnly(3L)));
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if a standard user is added to a vip group")
+		void shouldThrowInvalidGroupExceptionIfStandardUserAddedToVipGroup() {
+			given(groupMembershipRepository.addMembers(any(), any(), any(), eq(true))).willReturn(Optional.empty());
+			given(groupRepository.findVersionById(VALID_GROUP_ID)).willReturn(Optional.of(new VersionOnly(0L)));
+
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.addMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP), null));
+			assertThat(exception.getErrorMsg(), is("vip groups must only contains vip users"));
+			then(groupCache).should(never()).invalidate(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception without writing if an added user is unknown")
+		void shouldThrowInvalidGroupExceptionIfAddedUserUnknown() {
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.addMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_VIP, "someUnknownUserId"), null));
+			assertThat(exception.getErrorMsg(), is("the group contains unknown users"));
+			then(groupMembershipRepository).shouldHaveNoInteractions();
+		}
+
+		@Test
+		@DisplayName("should remove the members and return the new version")
+		void shouldRemoveMembers() {
+			given(groupMembershipRepository.removeMembers(VALID_GROUP_ID, ImmutableSet.of(VALID_USER_ID_VIP), null))
+					.willReturn(Optional.of(new VersionOnly(1L)));
+
+			final VersionOnly version = testee.removeMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_VIP), null);
+
+			assertThat(version, is(new VersionOnly(1L)));
+			then(userService).shouldHaveNoInteractions();
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if the last members are removed")
+		void shouldThrowInvalidGroupExceptionIfLastMembersRemoved() {
+			given(groupMembershipRepository.removeMembers(any(), any(), any())).willReturn(Optional.empty());
+			given(groupRepository.findVersionById(VALID_GROUP_ID)).willReturn(Optional.of(new VersionOnly(0L)));
+			given(groupRepository.existsByIdAndUserIdsIn(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP))).willReturn(true);
+
+			InvalidGroupException exception = assertThrows(InvalidGroupException.class,
+					() -> testee.removeMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP), "W/\"0\""));
+			assertThat(exception.getErrorMsg(), is("a group must keep at least one user"));
+		}
+
+		@Test
+		@DisplayName("should return the stored version without invalidating the cache if none of the users is a member")
+		void shouldReturnStoredVersionIfNoMemberRemoved() {
+			given(groupMembershipRepository.removeMembers(any(), any(), any())).willReturn(Optional.empty());
+			given(groupRepository.findVersionById(VALID_GROUP_ID)).willReturn(Optional.of(new VersionOnly(2L)));
+			given(groupRepository.existsByIdAndUserIdsIn(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP))).willReturn(false);
+
+			final VersionOnly version = testee.removeMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP), null);
+
+			assertThat(version, is(new VersionOnly(2L)));
+			then(groupCache).should(never()).invalidate(any());
+		}
+
+		@Test
+		@DisplayName("should throw an concurrent modification exception if etags aren´t equal")
+		void shouldThrowConcurrentModificationExceptionIfETagsUnequal() {
+			given(groupMembershipRepository.removeMembers(any(), any(), any())).willReturn(Optional.empty());
+			given(groupRepository.findVersionById(VALID_GROUP_ID)).willReturn(Optional.of(new VersionOnly(4L)));
+
+			assertThrows(ConcurrentModificationException.class,
+					() -> testee.removeMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_NON_VIP), "W/\"3\""));
+		}
+
+		@Test
+		@DisplayName("should throw a not found exception if the group does not exist")
+		void shouldThrowNotFoundExceptionIfGroupUnknown() {
+			given(groupMembershipRepository.addMembers(any(), any(), any(), eq(false))).willReturn(Optional.empty());
+			given(groupRepository.findVersionById(VALID_GROUP_ID)).willReturn(Optional.empty());
+
+			NotFoundException exception = assertThrows(NotFoundException.class,
+					() -> testee.addMembers(VALID_GROUP_ID, ImmutableList.of(VALID_USER_ID_VIP), null));
+			assertThat(exception.getMessage(), is("group not found"));
+		}
+	}
+
+	@Nested
+	@DisplayName("when a user about to be deleted is pulled from its groups")
+	class removeMemberFromAllGroups {
+		@Test
+		@DisplayName("should pull the user from all groups with a single write and evict the cached groups")
+		void shouldRemoveMemberAndEvictGroups() {
+			given(groupRepository.countByUserIds(VALID_USER_ID_NON_VIP)).willReturn(2L);
+			given(groupMembershipRepository.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP)).willReturn(2L);
+
+			testee.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP);
+
+			then(groupMembershipRepository).should().removeMemberFromAllGroups(VALID_USER_ID_NON_VIP);
+			then(groupCache).should().invalidateAll();
+		}
+
+		@Test
+		@DisplayName("should change nothing if the user is member of no group")
+		void shouldChangeNothingWithoutGroups() {
+			given(groupRepository.countByUserIds(VALID_USER_ID_NON_VIP)).willReturn(0L);
+
+			testee.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP);
+
+			then(groupMembershipRepository).should(never()).removeMemberFromAllGroups(VALID_USER_ID_NON_VIP);
+			then(groupCache).shouldHaveNoInteractions();
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception if fewer groups matched than the user is member of")
+		void shouldRefuseToRemoveLastMember() {
+			given(groupRepository.countByUserIds(VALID_USER_ID_NON_VIP)).willReturn(2L);
+			given(groupMembershipRepository.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP)).willReturn(1L);
+
+			final InvalidGroupException exception = assertThrows(InvalidGroupException.class, () -> testee.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP));
+
+			assertAll(
+					() -> assertThat(exception.getErrorCause(), is("business")),
+					() -> assertThat(exception.getErrorMsg(), is("a group must keep at least one user"))
+			);
+			then(groupCache).should().invalidateAll();
+		}
+
+		@Test
+		@DisplayName("should throw an invalid group exception without evicting anything if no group matched")
+		void shouldRefuseToRemoveOnlyMember() {
+			given(groupRepository.countByUserIds(VALID_USER_ID_NON_VIP)).willReturn(1L);
+
+			assertThrows(InvalidGroupException.class, () -> testee.removeMemberFromAllGroups(VALID_USER_ID_NON_VIP));
+
+			then(groupCache).shouldHaveNoInteractions();
 		}
 	}
 
@@ -343,6 +1021,17 @@ class GroupServiceTest {
 			then(groupRepository).should(inOrder(groupRepository)).deleteById(VALID_GROUP_ID);
 		}
 
+		@Test
+		@DisplayName("should evict the deleted group from the cache")
+		void shouldInvalidateCachedGroupOnDelete() {
+			given(groupRepository.findById(VALID_GROUP_ID)).willReturn(Optional.of(Group.builder().build()));
+
+			testee.delete(VALID_GROUP_ID);
+
+			then(groupCache).should().invalidate(VALID_GROUP_ID);
+			then(groupIdFilter).should(never()).put(any());
+		}
+
 		@Test
 		@DisplayName("should throw a not found exception if no group for given is found")
 		void shouldThrowNotFoundExceptionForUnkownGroupId() {
@@ -352,4 +1041,69 @@ class GroupServiceTest {
 			then(groupRepository).should(never()).deleteById(VALID_GROUP_ID);
 		}
 	}
+
+	@Nested
+	@DisplayName("when cached groups are evicted it")
+	class evictGroups {
+		@Test
+		@DisplayName("should forget the cached first id if that group is evicted")
+		void shouldForgetFirstIdOnEvict() {
+			given(groupRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(new IdOnly("first")));
+			testee.findFirstId();
+
+			testee.evict("first");
+			testee.findFirstId();
+
+			then(groupCache).should().invalidate("first");
+			then(groupRepository).should(times(2)).findFirstByOrderByIdAsc();
+		}
+
+		@Test
+		@DisplayName("should drop the whole cache and the first id if everything is evicted")
+		void shouldForgetEverythingOnEvictAll() {
+			given(groupRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(new IdOnly("first")));
+			testee.findFirstId();
+
+			testee.evictAll();
+			testee.findFirstId();
+
+			then(groupCache).should().invalidateAll();
+			then(groupRepository).should(times(2)).findFirstByOrderByIdAsc();
+		}
+	}
+
+	@Nested
+	@DisplayName("when the id filter rules out a group id it")
+	class filterUnknownGroupIds {
+		@BeforeEach
+		void setUp() {
+			given(groupIdFilter.mightContain("unknown")).willReturn(false);
+		}
+
+		@Test
+		@DisplayName("should return no group and no etag without asking the repository or cache")
+		void shouldNotLookUpFilteredIds() {
+			assertAll(
+					() -> assertThat(testee.findOne("unknown"), is(Optional.empty())),
+					() -> assertThat(testee.findETag("unknown"), is(Optional.empty()))
+			);
+			then(groupRepository).shouldHaveNoInteractions();
+			then(groupMembershipRepository).shouldHaveNoInteractions();
+			then(groupCache).shouldHaveNoInteractions();
+		}
+
+		@Test
+		@DisplayName("should add created and evicted ids and rebuild the filter if everything is evicted")
+		void shouldKeepFilterUpToDate() {
+			given(groupRepository.save(VALID_MINIMUM_GROUP)).willReturn(VALID_MINIMUM_GROUP_WITH_ID);
+
+			testee.create(VALID_MINIMUM_GROUP);
+			testee.evict("changed");
+			testee.evictAll();
+
+			then(groupIdFilter).should().put(VALID_MINIMUM_GROUP_WITH_ID.getId());
+			then(groupIdFilter).should().put("changed");
+			then(groupIdFilter).should().rebuild();
+		}
+	}
 }
@@ -0,0 +1,68 @@
+package de.otto.prototype.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class IdFilterTest {
+
+    private static final int STORED_IDS = 1000;
+
+    private final IdFilter testee = new IdFilter(() -> IntStream.range(0, STORED_IDS).mapToObj(i -> "stored" + i),
+            () -> STORED_IDS, true, 0.01);
+
+    @Test
+    @DisplayName("should consider every id as existing as long as nothing is built")
+    void shouldAcceptEverythingBeforeRebuild() {
+        assertAll(
+                () -> assertThat(testee.mightContain("unknown"), is(true)),
+                () -> assertThat(testee.rejections(), is(0L)),
+                () -> assertThat(testee.sizeInBytes(), is(0L))
+        );
+    }
+
+    @Test
+    @DisplayName("should never build a disabled filter")
+    void shouldNotBuildIfDisabled() {
+        final IdFilter disabledFilter = new IdFilter(() -> Stream.of("stored"), () -> 1, false, 0.01);
+
+        disabledFilter.rebuild();
+
+        assertThat(disabledFilter.mightContain("unknown"), is(true));
+    }
+
+    @Test
+    @DisplayName("should contain all stored ids and reject most unknown ones after a rebuild")
+    void shouldRejectUnknownIds() {
+        testee.rebuild();
+
+        final long acceptedUnknownIds = IntStream.range(0, STORED_IDS).mapToObj(i -> "unknown" + i)
+                .filter(testee::mightContain)
+                .count();
+        assertAll(
+                () -> assertThat(IntStream.range(0, STORED_IDS).mapToObj(i -> "stored" + i).allMatch(testee::mightContain), is(true)),
+                () -> assertThat(acceptedUnknownIds, lessThan(50L)),
+                () -> assertThat(testee.rejections(), is(STORED_IDS - acceptedUnknownIds)),
+                () -> assertThat(testee.sizeInBytes(), greaterThan(0L)),
+                () -> assertThat(testee.expectedFalsePositiveProbability(), lessThan(0.01))
+        );
+    }
+
+    @Test
+    @DisplayName("should contain ids put after a rebuild")
+    void shouldContainPutIds() {
+        testee.rebuild();
+
+        testee.put("created");
+
+        assertThat(testee.mightContain("created"), is(true));
+    }
+}
@@ -0,0 +1,71 @@
+package de.otto.prototype.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import de.otto.prototype.model.Group;
+import de.otto.prototype.model.Login;
+import de.otto.prototype.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MergePatchTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+    private static final User USER = User.builder().id("someUserId").firstName("Max").secondName("Joachim").lastName("Mustermann").age(30)
+            .login(Login.builder().mail("max.mustermann@otto.de").password("somePassword").build()).build();
+
+    @Test
+    @DisplayName("should replace members, merge nested objects and remove null members")
+    void shouldApplyPatch() throws Exception {
+        final MergePatch mergePatch = MergePatch.of(OBJECT_MAPPER.readTree(
+                "{\"age\": 40, \"secondName\": null, \"login\": {\"mail\": \"erika.mustermann@otto.de\"}}"));
+
+        final User patchedUser = mergePatch.applyTo(USER, User.class, OBJECT_MAPPER);
+
+        assertThat(patchedUser, is(USER.toBuilder().age(40).secondName(null)
+                .login(USER.getLogin().toBuilder().mail("erika.mustermann@otto.de").build()).build()));
+        assertThat(mergePatch.properties(), is(ImmutableSet.of("age", "secondName", "login")));
+    }
+
+    @Test
+    @DisplayName("should replace arrays as a whole and keep the id")
+    void shouldReplaceArraysAndKeepId() throws Exception {
+        final Group group = Group.builder().id("someGroupId").name("someGroupName").userIds(ImmutableList.of("a", "b")).build();
+        final MergePatch mergePatch = MergePatch.of(OBJECT_MAPPER.readTree("{\"id\": \"someOtherId\", \"userIds\": [\"c\"]}"));
+
+        final Group patchedGroup = mergePatch.applyTo(group, Group.class, OBJECT_MAPPER);
+
+        assertThat(patchedGroup, is(group.toBuilder().clearUserIds().userId("c").build()));
+        assertThat(mergePatch.properties(), is(ImmutableSet.of("userIds")));
+    }
+
+    @Test
+    @DisplayName("should only check the constraints of the touched properties and the nested objects they hold")
+    void shouldValidateTouchedProperties() throws Exception {
+        final User invalidUser = USER.toBuilder().firstName("a").age(10)
+                .login(USER.getLogin().toBuilder().mail("noMail").build()).build();
+
+        assertThat(MergePatch.of(OBJECT_MAPPER.readTree("{\"age\": 10, \"login\": {}}")).validate(invalidUser, VALIDATOR).stream()
+                .map(ConstraintViolation::getMessage).collect(toSet()), is(ImmutableSet.of("error.age.young", "error.mail.invalid")));
+        assertThat(MergePatch.of(OBJECT_MAPPER.readTree("{\"unknown\": 1}")).validate(invalidUser, VALIDATOR).isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("should reject patches that are no objects or do not fit the entity")
+    void shouldRejectInvalidPatches() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> MergePatch.of(OBJECT_MAPPER.readTree("[]")));
+        assertThrows(IllegalArgumentException.class,
+                () -> MergePatch.of(OBJECT_MAPPER.readTree("{\"age\": \"old\"}")).applyTo(USER, User.class, OBJECT_MAPPER));
+    }
+}
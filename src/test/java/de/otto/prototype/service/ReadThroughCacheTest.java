@@ -0,0 +1,84 @@
+package de.otto.prototype.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ReadThroughCacheTest {
+
+    private final Cache<String, String> cache = CacheBuilder.newBuilder().build();
+
+    private final ReadThroughCache<String> testee = new ReadThroughCache<>(cache);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Optional<String> load(final String id) {
+        loads.incrementAndGet();
+        return Optional.of("loaded " + id);
+    }
+
+    @Test
+    @DisplayName("should load a missing entity once and keep it")
+    void shouldKeepLoadedEntity() {
+        testee.get("a", this::load);
+
+        assertAll(
+                () -> assertThat(testee.get("a", this::load), is(Optional.of("loaded a"))),
+                () -> assertThat(loads.get(), is(1))
+        );
+    }
+
+    @Test
+    @DisplayName("should not keep an entity that does not exist")
+    void shouldNotKeepMissingEntity() {
+        assertAll(
+                () -> assertThat(testee.get("a", id -> Optional.empty()), is(Optional.empty())),
+                () -> assertThat(cache.getIfPresent("a"), is(nullValue()))
+        );
+    }
+
+    @Test
+    @DisplayName("should load an entity again after it is invalidated")
+    void shouldReloadInvalidatedEntity() {
+        testee.get("a", this::load);
+
+        testee.invalidate("a");
+        testee.get("a", this::load);
+
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    @DisplayName("should not keep an entity loaded while it was invalidated")
+    void shouldNotKeepEntityLoadedDuringInvalidation() {
+        final Optional<String> staleEntity = testee.get("a", id -> {
+            testee.invalidate(id);
+            return Optional.of("stale");
+        });
+
+        assertAll(
+                () -> assertThat(staleEntity, is(Optional.of("stale"))),
+                () -> assertThat(cache.getIfPresent("a"), is(nullValue()))
+        );
+    }
+
+    @Test
+    @DisplayName("should not keep an entity loaded while everything was invalidated")
+    void shouldNotKeepEntityLoadedDuringInvalidateAll() {
+        testee.get("a", id -> {
+            testee.invalidateAll();
+            return Optional.of("stale");
+        });
+
+        assertThat(cache.getIfPresent("a"), is(nullValue()));
+    }
+}
@@ -0,0 +1,111 @@
+package de.otto.prototype.service;
+
+import de.otto.prototype.model.Login;
+import de.otto.prototype.model.User;
+import de.otto.prototype.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class UserReplicaTest {
+
+    private static final User FIRST_USER = User.builder().id("a").build();
+    private static final User SECOND_USER = User.builder().id("b").build();
+
+    @Mock
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        given(userRepository.streamAllWithoutPasswords()).willAnswer(invocation -> Stream.of(SECOND_USER, FIRST_USER));
+    }
+
+    @Test
+    @DisplayName("should stay empty and never read the repository if disabled")
+    void shouldNotLoadIfDisabled() {
+        final UserReplica testee = new UserReplica(userRepository, false);
+
+        testee.load();
+        testee.refresh("a");
+
+        assertThat(testee.current(), is(Optional.empty()));
+        then(userRepository).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("should load all users if enabled")
+    void shouldLoadAllUsers() {
+        final UserReplica testee = new UserReplica(userRepository, true);
+
+        testee.load();
+
+        assertThat(testee.current().map(snapshot -> snapshot.stream().collect(toList())), is(Optional.of(List.of(FIRST_USER, SECOND_USER))));
+    }
+
+    @Test
+    @DisplayName("should apply written users and refresh evicted ones from the repository")
+    void shouldApplyChanges() {
+        final UserReplica testee = new UserReplica(userRepository, true);
+        final User changedUser = FIRST_USER.toBuilder().lastName("changed").build();
+        final User newUser = User.builder().id("c").build();
+        given(userRepository.findWithoutPasswordById("a")).willReturn(Optional.of(changedUser));
+        given(userRepository.findWithoutPasswordById("b")).willReturn(Optional.empty());
+        testee.load();
+
+        testee.put(newUser);
+        testee.refresh("a");
+        testee.refresh("b");
+
+        final UserSnapshot snapshot = testee.current().orElseThrow();
+        assertAll(
+                () -> assertThat(snapshot.stream().collect(toList()), is(List.of(changedUser, newUser))),
+                () -> assertThat(snapshot.find("b"), is(Optional.empty()))
+        );
+    }
+
+    @Test
+    @DisplayName("should ignore writes as long as nothing is loaded")
+    void shouldIgnoreWritesBeforeLoad() {
+        final UserReplica testee = new UserReplica(userRepository, true);
+
+        testee.put(FIRST_USER);
+
+        assertThat(testee.current(), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("should apply a batch of written users and hold none of their passwords")
+    void shouldApplyBatchWithoutPasswords() {
+        final UserReplica testee = new UserReplica(userRepository, true);
+        final Login login = Login.builder().mail("max.mustermann@otto.de").password("somePassword").build();
+        final User newUser = User.builder().id("c").login(login).build();
+        final User changedUser = FIRST_USER.toBuilder().lastName("changed").login(login).build();
+        testee.load();
+
+        testee.putAll(List.of(newUser, changedUser));
+        testee.put(SECOND_USER.toBuilder().login(login).build());
+
+        final UserSnapshot snapshot = testee.current().orElseThrow();
+        assertAll(
+                () -> assertThat(snapshot.stream().map(User::getId).collect(toList()), is(List.of("a", "b", "c"))),
+                () -> assertThat(snapshot.find("a").map(User::getLastName), is(Optional.of("changed"))),
+                () -> assertThat(snapshot.stream().map(user -> user.getLogin().getMail()).allMatch("max.mustermann@otto.de"::equals), is(true)),
+                () -> assertThat(snapshot.stream().map(user -> user.getLogin().getPassword()).allMatch(Objects::isNull), is(true))
+        );
+    }
+}
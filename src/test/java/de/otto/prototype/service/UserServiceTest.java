@@ -1,11 +1,26 @@
 package de.otto.prototype.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
 import de.otto.prototype.exceptions.ConcurrentModificationException;
 import de.otto.prototype.exceptions.InvalidUserException;
 import de.otto.prototype.exceptions.NotFoundException;
 import de.otto.prototype.metrics.Counted;
+import de.otto.prototype.model.BulkItem;
+import de.otto.prototype.model.CollectionVersion;
+import de.otto.prototype.model.IdOnly;
+import de.otto.prototype.model.KeysetPage;
 import de.otto.prototype.model.Login;
+import de.otto.prototype.model.Neighbours;
 import de.otto.prototype.model.User;
+import de.otto.prototype.model.UserSummary;
+import de.otto.prototype.model.VersionOnly;
+import de.otto.prototype.model.VipStatus;
+import de.otto.prototype.repository.BulkWriteRepository;
+import de.otto.prototype.repository.CollectionVersionRepository;
+import de.otto.prototype.repository.ConditionalUpdateRepository;
+import de.otto.prototype.repository.ExportRepository;
 import de.otto.prototype.repository.UserRepository;
 import org.hibernate.validator.HibernateValidator;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,28 +28,38 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static de.otto.prototype.model.Versioned.UNKNOWN_VERSION;
 import static java.lang.reflect.Modifier.isPublic;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 class UserServiceTest {
 
@@ -49,17 +74,40 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CollectionVersionRepository collectionVersionRepository;
+
+    @Mock
+    private ConditionalUpdateRepository conditionalUpdateRepository;
+
+    @Mock
+    private Cache<String, User> userCache;
+
+    @Mock
+    private UserReplica userReplica;
+
+    @Mock
+    private IdFilter userIdFilter;
+
+    @Mock
+    private BulkWriteRepository bulkWriteRepository;
+
+    @Mock
+    private ExportRepository exportRepository;
+
     private UserService testee;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
+        given(userIdFilter.mightContain(any())).willReturn(true);
 
         LocalValidatorFactoryBean validatorFactory = new LocalValidatorFactoryBean();
         validatorFactory.setProviderClass(HibernateValidator.class);
         validatorFactory.afterPropertiesSet();
 
-        testee = new UserService(userRepository, validatorFactory);
+        testee = new UserService(userRepository, collectionVersionRepository, conditionalUpdateRepository, validatorFactory, userCache, userReplica, userIdFilter, new ObjectMapper(),
+                bulkWriteRepository, exportRepository);
     }
 
     @Test
@@ -99,6 +147,16 @@ class UserServiceTest {
                     () -> assertThat(sup.get().collect(toList()).get(0), is(VALID_MINIMUM_USER_WITH_ID)));
         }
 
+        @Test
+        @DisplayName("should return a stream of the summaries of all users")
+        void shouldReturnSummariesOfUsersFound() {
+            final UserSummary summary = new UserSummary(VALID_USER_ID, "Max", "Mustermann", 0L);
+            given(userRepository.streamAllSummaries()).willReturn(Stream.of(summary));
+
+            assertThat(testee.findAllSummaries().collect(toList()), is(List.of(summary)));
+            then(userRepository).should(never()).streamAll();
+        }
+
         @Test
         @DisplayName("should return an optional of found user for an id")
         void shouldReturnAUserIfFound() {
@@ -122,6 +180,182 @@ class UserServiceTest {
 
             assertThat(foundUser.isPresent(), is(false));
         }
+
+        @Test
+        @DisplayName("should cache a user found for an id")
+        void shouldCacheFoundUser() {
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
+
+            testee.findOne(VALID_USER_ID);
+
+            then(userCache).should().put(VALID_USER_ID, VALID_MINIMUM_USER_WITH_ID);
+        }
+
+        @Test
+        @DisplayName("should return a cached user without reading it from the repository")
+        void shouldReturnCachedUser() {
+            given(userCache.getIfPresent(VALID_USER_ID)).willReturn(VALID_MINIMUM_USER_WITH_ID);
+
+            assertThat(testee.findOne(VALID_USER_ID), is(Optional.of(VALID_MINIMUM_USER_WITH_ID)));
+            then(userRepository).should(never()).findById(VALID_USER_ID);
+        }
+
+        @Test
+        @DisplayName("should return the stored version of a user as weak etag")
+        void shouldReturnStoredETag() {
+            given(userRepository.findVersionById("someId")).willReturn(Optional.of(new VersionOnly(3L)));
+
+            assertThat(testee.findETag("someId"), is(Optional.of("W/\"3\"")));
+        }
+
+        @Test
+        @DisplayName("should return the initial etag if the user was stored without a version")
+        void shouldReturnInitialETagIfNoVersionStored() {
+            given(userRepository.findVersionById("someId")).willReturn(Optional.of(new VersionOnly(null)));
+
+            assertThat(testee.findETag("someId"), is(Optional.of("W/\"0\"")));
+        }
+
+        @Test
+        @DisplayName("should return the version of the user collection")
+        void shouldReturnCollectionVersion() {
+            final CollectionVersion collectionVersion = new CollectionVersion("user", "someEpoch", 3);
+            given(collectionVersionRepository.find(User.class)).willReturn(collectionVersion);
+
+            assertThat(testee.findCollectionVersion(), is(collectionVersion));
+        }
+    }
+
+    @Nested
+    @DisplayName("when a page of users is requested it")
+    class getUserPage {
+        private final UserSummary first = new UserSummary("first", "Max", "Mustermann", 0L);
+        private final UserSummary second = new UserSummary("second", "Max", "Mustermann", 0L);
+        private final UserSummary third = new UserSummary("third", "Max", "Mustermann", 0L);
+
+        @Test
+        @DisplayName("should fetch one more user than requested to detect a next page")
+        void shouldReturnFirstPageWithNext() {
+            given(userRepository.findSummaryPage(PageRequest.of(0, 3, ASC, "id"))).willReturn(List.of(first, second, third));
+
+            final KeysetPage<UserSummary> page = testee.findPage(null, null, 2);
+
+            assertAll("first page",
+                    () -> assertThat(page.getContent(), is(List.of(first, second))),
+                    () -> assertThat(page.hasPrev(), is(false)),
+                    () -> assertThat(page.hasNext(), is(true)));
+        }
+
+        @Test
+        @DisplayName("should query the users after a given id")
+        void shouldReturnPageAfterCursor() {
+            given(userRepository.findSummariesByIdGreaterThan("first", PageRequest.of(0, 3, ASC, "id"))).willReturn(List.of(second, third));
+
+            final KeysetPage<UserSummary> page = testee.findPage("first", null, 2);
+
+            assertAll("page after cursor",
+                    () -> assertThat(page.getContent(), is(List.of(second, third))),
+                    () -> assertThat(page.hasPrev(), is(true)),
+                    () -> assertThat(page.hasNext(), is(false)));
+            then(userRepository).should(never()).streamAll();
+        }
+
+        @Test
+        @DisplayName("should query the users before a given id and return them in ascending order")
+        void shouldReturnPageBeforeCursor() {
+            given(userRepository.findSummariesByIdLessThan("third", PageRequest.of(0, 2, DESC, "id"))).willReturn(List.of(second, first));
+            given(userRepository.existsByIdGreaterThan("second")).willReturn(true);
+
+            final KeysetPage<UserSummary> page = testee.findPage(null, "third", 1);
+
+            assertAll("page before cursor",
+                    () -> assertThat(page.getContent(), is(List.of(second))),
+                    () -> assertThat(page.hasPrev(), is(true)),
+                    () -> assertThat(page.hasNext(), is(true)));
+        }
+    }
+
+    @Nested
+    @DisplayName("when the vip status of users is requested it")
+    class getVipStatus {
+        @Test
+        @DisplayName("should return the vip flag of every user found by id")
+        void shouldReturnVipStatusOfFoundUsers() {
+            final List<String> userIds = List.of("someVipUserId", "someNonVipUserId", "unknownUserId");
+            given(userRepository.findByIdIn(userIds)).willReturn(List.of(
+                    new VipStatus("someVipUserId", true),
+                    new VipStatus("someNonVipUserId", false)));
+
+            final Map<String, Boolean> vipStatus = testee.findVipStatus(userIds);
+
+            assertThat(vipStatus, is(Map.of("someVipUserId", true, "someNonVipUserId", false)));
+            then(userRepository).should(never()).streamAll();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the summaries of some users are requested it")
+    class getUserSummaries {
+        @Test
+        @DisplayName("should look them up with a single query")
+        void shouldReturnSummariesOfFoundUsers() {
+            final List<String> userIds = List.of("someUserId", "unknownUserId");
+            final List<UserSummary> summaries = List.of(new UserSummary("someUserId", "Max", "Mustermann", 0L));
+            given(userRepository.findSummariesByIdIn(userIds)).willReturn(summaries);
+
+            assertThat(testee.findSummaries(userIds), is(summaries));
+            then(userRepository).should(never()).findAllById(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("when the neighbours of a user are requested it")
+    class getUserNeighbours {
+        private final IdOnly first = new IdOnly("first");
+        private final IdOnly second = new IdOnly("second");
+        private final IdOnly third = new IdOnly("third");
+
+        @Test
+        @DisplayName("should return the surrounding ids and the first id")
+        void shouldReturnNeighboursOfMiddleUser() {
+            given(userRepository.findFirstByIdLessThanOrderByIdDesc("third")).willReturn(Optional.of(second));
+            given(userRepository.findFirstByIdGreaterThanOrderByIdAsc("third")).willReturn(Optional.empty());
+            given(userRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(first));
+
+            assertThat(testee.findNeighbours("third"), is(new Neighbours("first", "second", null)));
+            then(userRepository).should(never()).streamAll();
+        }
+
+        @Test
+        @DisplayName("should use the given id as first id if there is no previous user")
+        void shouldReturnOwnIdAsFirstIfNoPrev() {
+            given(userRepository.findFirstByIdLessThanOrderByIdDesc("first")).willReturn(Optional.empty());
+            given(userRepository.findFirstByIdGreaterThanOrderByIdAsc("first")).willReturn(Optional.of(second));
+
+            assertThat(testee.findNeighbours("first"), is(new Neighbours("first", null, "second")));
+            then(userRepository).should(never()).findFirstByOrderByIdAsc();
+        }
+
+        @Test
+        @DisplayName("should look up the first id only once")
+        void shouldCacheFirstId() {
+            given(userRepository.findFirstByIdLessThanOrderByIdDesc(any())).willReturn(Optional.of(first));
+            given(userRepository.findFirstByIdGreaterThanOrderByIdAsc(any())).willReturn(Optional.empty());
+            given(userRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(first));
+
+            testee.findNeighbours("second");
+            testee.findNeighbours("third");
+
+            then(userRepository).should(times(1)).findFirstByOrderByIdAsc();
+        }
+
+        @Test
+        @DisplayName("should return no first id if there are no users")
+        void shouldReturnNoFirstIdIfEmpty() {
+            given(userRepository.findFirstByOrderByIdAsc()).willReturn(Optional.empty());
+
+            assertThat(testee.findFirstId(), is(Optional.empty()));
+        }
     }
 
     @Nested
@@ -131,7 +365,6 @@ class UserServiceTest {
         @DisplayName("should persist and return the new user")
         void shouldReturnCreatedUser() {
             given(userRepository.save(VALID_MINIMUM_USER)).willReturn(VALID_MINIMUM_USER_WITH_ID);
-            given(userRepository.streamAll()).willReturn(Stream.of());
 
             final User returnedUser = testee.create(VALID_MINIMUM_USER);
 
@@ -153,7 +386,7 @@ class UserServiceTest {
         @Test
         @DisplayName("should throw an invalid user exception if the user with same data already exists ")
         void shouldThrowInvalidUserExceptionOnNewUserIfUserAlreadyExists() {
-            given(userRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_USER));
+            given(userRepository.existsByContentHash(VALID_MINIMUM_USER.getContentHash())).willReturn(true);
             InvalidUserException exception = assertThrows(InvalidUserException.class, () -> testee.create(VALID_MINIMUM_USER));
             assertAll("exception content",
                     () -> assertThat(exception.getUser(), is(VALID_MINIMUM_USER)),
@@ -163,16 +396,78 @@ class UserServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("when the users are exported")
+    class exportUsers {
+        @Test
+        @DisplayName("should stream the users from the database rather than the replica and never read their passwords")
+        void shouldExportUsersWithoutPasswords() {
+            given(exportRepository.streamAll(User.class, VALID_USER_ID, Set.of("firstName"), Set.of("login.password"), 500))
+                    .willReturn(Stream.of(VALID_MINIMUM_USER_WITH_ID));
+
+            assertThat(testee.exportAll(VALID_USER_ID, Set.of("firstName"), 500).collect(toList()), is(List.of(VALID_MINIMUM_USER_WITH_ID)));
+            then(userReplica).shouldHaveNoInteractions();
+        }
+    }
+
+    @Nested
+    @DisplayName("when a batch of users is about to be created")
+    class createUsers {
+        private final User otherUser = VALID_MINIMUM_USER.toBuilder().firstName("Erika").build();
+        private final User otherUserWithId = otherUser.toBuilder().id("otherUserId").build();
+
+        @Test
+        @DisplayName("should insert the valid users with one bulk write and report the others at their position")
+        void shouldInsertValidUsersAndReportInvalidOnes() {
+            final User youngUser = VALID_MINIMUM_USER.toBuilder().age(10).build();
+            final User userWithWrongMail = VALID_MINIMUM_USER.toBuilder().login(VALID_LOGIN.toBuilder().mail("max.mustermann@web.de").build()).build();
+            given(bulkWriteRepository.writeAll(List.of(VALID_MINIMUM_USER, otherUser), User.class)).willReturn(List.of(
+                    BulkItem.succeeded(0, VALID_MINIMUM_USER_WITH_ID), BulkItem.succeeded(1, otherUserWithId)));
+
+            final List<BulkItem<User>> items = testee.createAll(List.of(VALID_MINIMUM_USER, youngUser, userWithWrongMail, otherUser));
+
+            assertAll("bulk items",
+                    () -> assertThat(items.get(0), is(BulkItem.succeeded(0, VALID_MINIMUM_USER_WITH_ID))),
+                    () -> assertThat(items.get(1).getError(), is(instanceOf(ConstraintViolationException.class))),
+                    () -> assertThat(items.get(2).getError().getMessage(), is("only mails by otto allowed")),
+                    () -> assertThat(items.get(3), is(BulkItem.succeeded(3, otherUserWithId))));
+            then(userReplica).should().putAll(List.of(VALID_MINIMUM_USER_WITH_ID, otherUserWithId));
+            then(userIdFilter).should().put("otherUserId");
+            then(userRepository).should(never()).save(any(User.class));
+            then(userRepository).should(never()).existsByContentHash(any());
+        }
+
+        @Test
+        @DisplayName("should reject duplicates within the batch and of stored users found by one query for all content hashes")
+        void shouldRejectDuplicates() {
+            given(userRepository.findWithContentHashIn(Set.of(VALID_MINIMUM_USER.getContentHash(), otherUser.getContentHash())))
+                    .willReturn(List.of(otherUserWithId));
+            given(bulkWriteRepository.writeAll(List.of(VALID_MINIMUM_USER), User.class)).willReturn(List.of(
+                    BulkItem.succeeded(0, VALID_MINIMUM_USER_WITH_ID)));
+
+            final List<BulkItem<User>> items = testee.createAll(List.of(otherUser, VALID_MINIMUM_USER, VALID_MINIMUM_USER));
+
+            assertAll("bulk items",
+                    () -> assertThat(items.get(0).getError().getMessage(), is("this user does already exist")),
+                    () -> assertThat(items.get(1), is(BulkItem.succeeded(1, VALID_MINIMUM_USER_WITH_ID))),
+                    () -> assertThat(items.get(2).getError().getMessage(), is("this user does already exist")));
+            then(userRepository).should(times(1)).findWithContentHashIn(any());
+        }
+    }
+
     @Nested
     @DisplayName("when a user is about be to updated")
     class updateUser {
+        @BeforeEach
+        void setUp() {
+            given(userRepository.existsById(any())).willReturn(true);
+        }
+
         @Test
         @DisplayName("should update the user and return it")
         void shouldReturnUpdatedUser() {
             final User updatedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().lastName("Neumann").build();
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
-            given(userRepository.save(updatedUser)).willReturn(updatedUser);
-            given(userRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_USER_WITH_ID.toBuilder().firstName("Heinz").build()));
+            given(conditionalUpdateRepository.update(updatedUser, null)).willReturn(Optional.of(updatedUser));
 
             final User persistedUser = testee.update(updatedUser, null);
 
@@ -182,78 +477,270 @@ class UserServiceTest {
         }
 
         @Test
-        @DisplayName("should update a user and return it, if the given etag and the users one are equal")
+        @DisplayName("should evict the updated user from the cache")
+        void shouldInvalidateCachedUserOnUpdate() {
+            final User updatedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().lastName("Neumann").build();
+            given(conditionalUpdateRepository.update(updatedUser, null)).willReturn(Optional.of(updatedUser));
+
+            testee.update(updatedUser, null);
+
+            then(userCache).should().invalidate(VALID_USER_ID);
+        }
+
+        @Test
+        @DisplayName("should update a user with a single conditional write, if the given etag and the users one are equal")
         void shouldReturnUpdatedUserIfETagsAreEqual() {
             final User updatedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().lastName("Neumann").build();
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
-            given(userRepository.save(updatedUser)).willReturn(updatedUser);
-            given(userRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_USER_WITH_ID.toBuilder().firstName("Heinz").build()));
+            given(conditionalUpdateRepository.update(updatedUser, 0L)).willReturn(Optional.of(updatedUser));
 
             final User persistedUser = testee.update(updatedUser, VALID_MINIMUM_USER_WITH_ID.getETag());
 
             assertAll("user",
                     () -> assertThat(persistedUser.getLastName(), is("Neumann")),
                     () -> assertThat(persistedUser.getId(), is(VALID_USER_ID)));
+            then(userRepository).should(never()).findById(VALID_USER_ID);
+            then(userRepository).should(never()).existsById(any());
+            then(userRepository).should(never()).save(any(User.class));
+        }
+
+        @Test
+        @DisplayName("should expect the version the given weak, strong or unquoted etag was derived from")
+        void shouldExpectVersionOfETag() {
+            final User updatedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().lastName("Neumann").build();
+            given(conditionalUpdateRepository.update(updatedUser, 3L)).willReturn(Optional.of(updatedUser));
+
+            assertAll(
+                    () -> assertThat(testee.update(updatedUser, "W/\"3\""), is(updatedUser)),
+                    () -> assertThat(testee.update(updatedUser, "\"3\""), is(updatedUser)),
+                    () -> assertThat(testee.update(updatedUser, "3"), is(updatedUser))
+            );
         }
 
         @Test
         @DisplayName("should throw an concurrent modification exception if etags aren´t equal")
         void shouldThrowConcurrentModificationExceptionIfETagsUnequal() {
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
+            given(conditionalUpdateRepository.update(VALID_MINIMUM_USER_WITH_ID, UNKNOWN_VERSION)).willReturn(Optional.empty());
+            given(userRepository.existsById(VALID_USER_ID)).willReturn(true);
             ConcurrentModificationException exception =
                     assertThrows(ConcurrentModificationException.class, () -> testee.update(VALID_MINIMUM_USER_WITH_ID, "someDifferentEtag"));
             assertThat(exception.getMessage(), is("etags aren´t equal"));
-            then(userRepository).should(never()).save(any(User.class));
+            then(userCache).should(never()).invalidate(VALID_USER_ID);
         }
 
         @Test
         @DisplayName("should throw an constraint violation exception if updated user is invalid")
         void shouldThrowConstraintViolationExceptionIfInvalidExistingUser() {
             User invalidUserToUpdate = VALID_MINIMUM_USER_WITH_ID.toBuilder().firstName("a").build();
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(invalidUserToUpdate));
             ConstraintViolationException exception =
                     assertThrows(ConstraintViolationException.class, () -> testee.update(invalidUserToUpdate, null));
             String msgCode = exception.getConstraintViolations().stream().map(ConstraintViolation::getMessage).findFirst().orElse("");
             assertThat(msgCode, is("error.name.range"));
-            then(userRepository).should(never()).save(any(User.class));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any());
         }
 
         @Test
         @DisplayName("should throw an invalid user exception if updated user has invalid mail")
         void shouldThrowInvalidUserExceptionOnExistingUserWithWrongMail() {
             User invalidUserToUpdate = VALID_MINIMUM_USER_WITH_ID.toBuilder().login(VALID_LOGIN.toBuilder().mail("max.mustermann@web.de").build()).build();
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(invalidUserToUpdate));
             InvalidUserException exception =
                     assertThrows(InvalidUserException.class, () -> testee.update(invalidUserToUpdate, null));
             assertAll("exception content",
                     () -> assertThat(exception.getUser(), is(invalidUserToUpdate)),
                     () -> assertThat(exception.getErrorMsg(), is("only mails by otto allowed")),
                     () -> assertThat(exception.getErrorCause(), is("business")));
-            then(userRepository).should(never()).save(any(User.class));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any());
         }
 
         @Test
         @DisplayName("should throw an invalid user exception if user with same data already exists")
         void shouldThrowInvalidUserExceptionOnExistingUserIfUserAlreadyExists() {
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
-            given(userRepository.streamAll()).willReturn(Stream.of(VALID_MINIMUM_USER_WITH_ID));
+            given(userRepository.existsByContentHash(VALID_MINIMUM_USER_WITH_ID.getContentHash())).willReturn(true);
             InvalidUserException exception =
                     assertThrows(InvalidUserException.class, () -> testee.update(VALID_MINIMUM_USER_WITH_ID, null));
             assertAll("exception content",
                     () -> assertThat(exception.getUser(), is(VALID_MINIMUM_USER_WITH_ID)),
                     () -> assertThat(exception.getErrorMsg(), is("this user does already exist")),
                     () -> assertThat(exception.getErrorCause(), is("business")));
-            then(userRepository).should(never()).save(any(User.class));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any());
         }
 
         @Test
         @DisplayName("should return a not found exception if no user for given id is found")
         void shouldReturnNotFoundExceptionIfIdUnknown() {
-            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.empty());
+            given(userRepository.existsById(VALID_USER_ID)).willReturn(false);
             NotFoundException exception =
                     assertThrows(NotFoundException.class, () -> testee.update(VALID_MINIMUM_USER.toBuilder().id(VALID_USER_ID).build(), null));
             assertThat(exception.getMessage(), is("user not found"));
-            then(userRepository).should(never()).save(any(User.class));
+            then(userCache).should(never()).invalidate(VALID_USER_ID);
+        }
+
+        @Test
+        @DisplayName("should return a not found exception for an unknown id, even if the user is invalid")
+        void shouldReturnNotFoundExceptionForInvalidUserWithUnknownId() {
+            given(userRepository.existsById(VALID_USER_ID)).willReturn(false);
+            final User invalidUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().firstName("a").build();
+
+            NotFoundException exception = assertThrows(NotFoundException.class, () -> testee.update(invalidUser, null));
+
+            assertThat(exception.getMessage(), is("user not found"));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("when a user is about to be patched")
+    class patchUser {
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        @BeforeEach
+        void setUp() {
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID));
+            given(conditionalUpdateRepository.update(any(User.class), any(), any()))
+                    .willAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+        }
+
+        @Test
+        @DisplayName("should write only the touched properties of the patched user and return it")
+        void shouldWriteOnlyTouchedProperties() throws Exception {
+            final User patchedUser = testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40, \"bio\": \"some text\"}"), null);
+
+            assertAll("user",
+                    () -> assertThat(patchedUser, is(VALID_MINIMUM_USER_WITH_ID.toBuilder().age(40).bio("some text").build())));
+            then(conditionalUpdateRepository).should().update(patchedUser, null, ImmutableSet.of("age", "bio"));
+            then(userReplica).should().put(patchedUser);
+            then(userCache).should().invalidate(VALID_USER_ID);
+        }
+
+        @Test
+        @DisplayName("should remove properties set to null and merge nested objects")
+        void shouldMergeNestedObjectsAndRemoveNulls() throws Exception {
+            final User storedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().secondName("Joachim").build();
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(storedUser));
+
+            final User patchedUser = testee.patch(VALID_USER_ID,
+                    objectMapper.readTree("{\"secondName\": null, \"login\": {\"mail\": \"erika.mustermann@otto.de\"}}"), null);
+
+            assertAll("user",
+                    () -> assertThat(patchedUser.getSecondName(), is((String) null)),
+                    () -> assertThat(patchedUser.getLogin().getMail(), is("erika.mustermann@otto.de")),
+                    () -> assertThat(patchedUser.getLogin().getPassword(), is(VALID_LOGIN.getPassword())));
+        }
+
+        @Test
+        @DisplayName("should neither patch the id nor write anything for an empty patch")
+        void shouldNotPatchId() throws Exception {
+            final User patchedUser = testee.patch(VALID_USER_ID, objectMapper.readTree("{\"id\": \"someOtherId\"}"), null);
+
+            assertThat(patchedUser, is(VALID_MINIMUM_USER_WITH_ID));
+            then(conditionalUpdateRepository).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should only check the constraints of the touched properties")
+        void shouldValidateOnlyTouchedProperties() throws Exception {
+            final User storedUser = VALID_MINIMUM_USER_WITH_ID.toBuilder().firstName("a").build();
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(storedUser));
+
+            final User patchedUser = testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), null);
+
+            assertThat(patchedUser.getAge(), is(40));
+        }
+
+        @Test
+        @DisplayName("should throw an constraint violation exception if a touched property is invalid")
+        void shouldThrowConstraintViolationExceptionIfTouchedPropertyInvalid() throws Exception {
+            ConstraintViolationException exception = assertThrows(ConstraintViolationException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"login\": {\"mail\": \"noMail\"}}"), null));
+            String msgCode = exception.getConstraintViolations().stream().map(ConstraintViolation::getMessage).findFirst().orElse("");
+            assertThat(msgCode, is("error.mail.invalid"));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any(), any());
+        }
+
+        @Test
+        @DisplayName("should throw an invalid user exception if the patched mail is invalid")
+        void shouldThrowInvalidUserExceptionOnWrongMail() throws Exception {
+            InvalidUserException exception = assertThrows(InvalidUserException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"login\": {\"mail\": \"max.mustermann@web.de\"}}"), null));
+            assertThat(exception.getErrorMsg(), is("only mails by otto allowed"));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any(), any());
+        }
+
+        @Test
+        @DisplayName("should throw an invalid user exception if a user with the patched data already exists")
+        void shouldThrowInvalidUserExceptionIfUserAlreadyExists() throws Exception {
+            given(userRepository.existsByContentHash(VALID_MINIMUM_USER_WITH_ID.toBuilder().age(40).build().getContentHash())).willReturn(true);
+            InvalidUserException exception = assertThrows(InvalidUserException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), null));
+            assertThat(exception.getErrorMsg(), is("this user does already exist"));
+        }
+
+        @Test
+        @DisplayName("should throw an invalid user exception if the patch does not fit a user")
+        void shouldThrowInvalidUserExceptionIfPatchUnreadable() throws Exception {
+            InvalidUserException exception = assertThrows(InvalidUserException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": \"old\"}"), null));
+            assertThat(exception.getErrorCause(), is("patch"));
+        }
+
+        @Test
+        @DisplayName("should throw an concurrent modification exception without writing if etags aren´t equal")
+        void shouldThrowConcurrentModificationExceptionIfETagsUnequal() throws Exception {
+            assertThrows(ConcurrentModificationException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), "W/\"3\""));
+            then(conditionalUpdateRepository).should(never()).update(any(User.class), any(), any());
+        }
+
+        @Test
+        @DisplayName("should throw an concurrent modification exception if the user changed after it was read for a given etag")
+        void shouldThrowConcurrentModificationExceptionIfChangedMeanwhile() throws Exception {
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID), Optional.of(userWithVersion(1L)));
+            given(conditionalUpdateRepository.update(any(User.class), any(), any())).willReturn(Optional.empty());
+
+            assertThrows(ConcurrentModificationException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), VALID_MINIMUM_USER_WITH_ID.getETag()));
+        }
+
+        @Test
+        @DisplayName("should apply the patch again to the changed user if no etag is given")
+        void shouldRetryIfChangedMeanwhile() throws Exception {
+            final User changedUser = userWithVersion(1L);
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(VALID_MINIMUM_USER_WITH_ID), Optional.of(changedUser));
+            given(conditionalUpdateRepository.update(any(User.class), any(), any()))
+                    .willReturn(Optional.empty())
+                    .willAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+
+            testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), null);
+
+            then(conditionalUpdateRepository).should().update(any(User.class), eq(null), any());
+            then(conditionalUpdateRepository).should().update(any(User.class), eq(1L), any());
+        }
+
+        @Test
+        @DisplayName("should throw an concurrent modification exception if the user keeps changing while no etag is given")
+        void shouldGiveUpRetryingAfterThreeAttempts() throws Exception {
+            given(conditionalUpdateRepository.update(any(User.class), any(), any())).willReturn(Optional.empty());
+
+            ConcurrentModificationException exception = assertThrows(ConcurrentModificationException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), null));
+
+            assertThat(exception.getMessage(), is("the user was changed concurrently"));
+            then(conditionalUpdateRepository).should(times(3)).update(any(User.class), any(), any());
+            then(userReplica).should(never()).put(any());
+        }
+
+        @Test
+        @DisplayName("should return a not found exception if no user for given id is found")
+        void shouldReturnNotFoundExceptionIfIdUnknown() {
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.empty());
+            NotFoundException exception = assertThrows(NotFoundException.class,
+                    () -> testee.patch(VALID_USER_ID, objectMapper.readTree("{\"age\": 40}"), null));
+            assertThat(exception.getMessage(), is("user not found"));
+        }
+
+        private User userWithVersion(final Long version) {
+            final User user = VALID_MINIMUM_USER_WITH_ID.toBuilder().build();
+            ReflectionTestUtils.setField(user, "version", version);
+            return user;
         }
     }
 
@@ -270,6 +757,17 @@ class UserServiceTest {
             then(userRepository).should(inOrder(userRepository)).deleteById(VALID_USER_ID);
         }
 
+        @Test
+        @DisplayName("should evict the deleted user from the cache")
+        void shouldInvalidateCachedUserOnDelete() {
+            given(userRepository.findById(VALID_USER_ID)).willReturn(Optional.of(User.builder().build()));
+
+            testee.delete(VALID_USER_ID);
+
+            then(userCache).should().invalidate(VALID_USER_ID);
+            then(userIdFilter).should(never()).put(any());
+        }
+
         @Test
         @DisplayName("should throw a not found exception if no user for given is found")
         void shouldThrowNotFoundExceptionForUnkownUserId() {
@@ -279,4 +777,133 @@ class UserServiceTest {
             then(userRepository).should(never()).deleteById(VALID_USER_ID);
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("when cached users are evicted it")
+    class evictUsers {
+        @Test
+        @DisplayName("should forget the cached first id if that user is evicted")
+        void shouldForgetFirstIdOnEvict() {
+            given(userRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(new IdOnly("first")));
+            testee.findFirstId();
+
+            testee.evict("first");
+            testee.findFirstId();
+
+            then(userCache).should().invalidate("first");
+            then(userRepository).should(times(2)).findFirstByOrderByIdAsc();
+        }
+
+        @Test
+        @DisplayName("should drop the whole cache and the first id if everything is evicted")
+        void shouldForgetEverythingOnEvictAll() {
+            given(userRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(new IdOnly("first")));
+            testee.findFirstId();
+
+            testee.evictAll();
+            testee.findFirstId();
+
+            then(userCache).should().invalidateAll();
+            then(userRepository).should(times(2)).findFirstByOrderByIdAsc();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the user replica is loaded it")
+    class readFromReplica {
+        private final User firstUser = VALID_MINIMUM_USER.toBuilder().id("a").build();
+        private final User secondUser = VALID_MINIMUM_USER.toBuilder().id("b").build();
+        private final User thirdUser = VALID_MINIMUM_USER.toBuilder().id("c").build();
+
+        @BeforeEach
+        void setUp() {
+            given(userReplica.current()).willReturn(Optional.of(UserSnapshot.of(List.of(thirdUser, firstUser, secondUser))));
+        }
+
+        @Test
+        @DisplayName("should return all users without asking the repository")
+        void shouldReturnAllUsersFromReplica() {
+            assertAll(
+                    () -> assertThat(testee.findAll().collect(toList()), is(List.of(firstUser, secondUser, thirdUser))),
+                    () -> assertThat(testee.findAllSummaries().map(UserSummary::getId).collect(toList()), is(List.of("a", "b", "c"))),
+                    () -> assertThat(testee.count(), is(3L)),
+                    () -> assertThat(testee.findFirstId(), is(Optional.of("a"))),
+                    () -> assertThat(testee.findSummaries(List.of("c", "x")), is(List.of(UserSummary.summaryOf(thirdUser))))
+            );
+            then(userRepository).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should return a single user, its etag and neighbours without asking the repository or cache")
+        void shouldReturnOneUserFromReplica() {
+            assertAll(
+                    () -> assertThat(testee.findOne("b"), is(Optional.of(secondUser))),
+                    () -> assertThat(testee.findOne("x"), is(Optional.empty())),
+                    () -> assertThat(testee.findETag("b"), is(Optional.of(secondUser.getETag()))),
+                    () -> assertThat(testee.findNeighbours("b"), is(new Neighbours("a", "a", "c")))
+            );
+            then(userRepository).shouldHaveNoInteractions();
+            then(userCache).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should cut pages out of the replica")
+        void shouldReturnPagesFromReplica() {
+            assertAll(
+                    () -> assertThat(testee.findPage(null, null, 2), is(KeysetPage.forward(List.of(UserSummary.summaryOf(firstUser), UserSummary.summaryOf(secondUser), UserSummary.summaryOf(thirdUser)), 2, false))),
+                    () -> assertThat(testee.findPage("a", null, 2), is(KeysetPage.forward(List.of(UserSummary.summaryOf(secondUser), UserSummary.summaryOf(thirdUser)), 2, true))),
+                    () -> assertThat(testee.findPage(null, "c", 1), is(KeysetPage.backward(List.of(UserSummary.summaryOf(secondUser), UserSummary.summaryOf(firstUser)), 1, lastId -> true))),
+                    () -> assertThat(testee.findPage(null, "d", 1).hasNext(), is(false))
+            );
+            then(userRepository).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should apply created users and refresh evicted ones")
+        void shouldKeepReplicaUpToDate() {
+            given(userRepository.save(VALID_MINIMUM_USER)).willReturn(VALID_MINIMUM_USER_WITH_ID);
+
+            testee.create(VALID_MINIMUM_USER);
+            testee.evict("b");
+            testee.evictAll();
+
+            then(userReplica).should().put(VALID_MINIMUM_USER_WITH_ID);
+            then(userReplica).should().refresh("b");
+            then(userReplica).should().load();
+        }
+    }
+
+    @Nested
+    @DisplayName("when the id filter rules out a user id it")
+    class filterUnknownUserIds {
+        @BeforeEach
+        void setUp() {
+            given(userIdFilter.mightContain("unknown")).willReturn(false);
+        }
+
+        @Test
+        @DisplayName("should return no user and no etag without asking the repository or cache")
+        void shouldNotLookUpFilteredIds() {
+            assertAll(
+                    () -> assertThat(testee.findOne("unknown"), is(Optional.empty())),
+                    () -> assertThat(testee.findETag("unknown"), is(Optional.empty()))
+            );
+            then(userRepository).shouldHaveNoInteractions();
+            then(userCache).shouldHaveNoInteractions();
+        }
+
+        @Test
+        @DisplayName("should add created and evicted ids and rebuild the filter if everything is evicted")
+        void shouldKeepFilterUpToDate() {
+            given(userRepository.save(VALID_MINIMUM_USER)).willReturn(VALID_MINIMUM_USER_WITH_ID);
+
+            testee.create(VALID_MINIMUM_USER);
+            testee.evict("changed");
+            testee.evictAll();
+
+            then(userIdFilter).should().put(VALID_USER_ID);
+            then(userIdFilter).should().put("changed");
+            then(userIdFilter).should().rebuild();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.otto.prototype.service;
+
+import de.otto.prototype.model.Neighbours;
+import de.otto.prototype.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+class UserSnapshotTest {
+
+    private static final User FIRST_USER = User.builder().id("a").lastName("first").build();
+    private static final User SECOND_USER = User.builder().id("c").lastName("second").build();
+    private static final User THIRD_USER = User.builder().id("e").lastName("third").build();
+
+    private final UserSnapshot testee = UserSnapshot.of(List.of(THIRD_USER, FIRST_USER, SECOND_USER));
+
+    @Test
+    @DisplayName("should sort the users by id")
+    void shouldSortUsersById() {
+        assertAll(
+                () -> assertThat(testee.stream().collect(toList()), is(List.of(FIRST_USER, SECOND_USER, THIRD_USER))),
+                () -> assertThat(testee.size(), is(3)),
+                () -> assertThat(testee.firstId(), is(Optional.of("a"))),
+                () -> assertThat(testee.find("c"), is(Optional.of(SECOND_USER))),
+                () -> assertThat(testee.find("b"), is(Optional.empty()))
+        );
+    }
+
+    @Test
+    @DisplayName("should insert new users at their position and replace known ones without touching the original")
+    void shouldInsertAndReplaceUsers() {
+        final User newUser = User.builder().id("b").build();
+        final User changedUser = SECOND_USER.toBuilder().lastName("changed").build();
+
+        final UserSnapshot changedSnapshot = testee.with(newUser).with(changedUser);
+
+        assertAll(
+                () -> assertThat(changedSnapshot.stream().collect(toList()), is(List.of(FIRST_USER, newUser, changedUser, THIRD_USER))),
+                () -> assertThat(changedSnapshot.find("c"), is(Optional.of(changedUser))),
+                () -> assertThat(testee.stream().collect(toList()), is(List.of(FIRST_USER, SECOND_USER, THIRD_USER)))
+        );
+    }
+
+    @Test
+    @DisplayName("should remove known users and ignore unknown ones")
+    void shouldRemoveUsers() {
+        final UserSnapshot changedSnapshot = testee.without("a").without("x");
+
+        assertAll(
+                () -> assertThat(changedSnapshot.stream().collect(toList()), is(List.of(SECOND_USER, THIRD_USER))),
+                () -> assertThat(changedSnapshot.find("a"), is(Optional.empty())),
+                () -> assertThat(changedSnapshot.firstId(), is(Optional.of("c"))),
+                () -> assertThat(UserSnapshot.EMPTY.firstId(), is(Optional.empty()))
+        );
+    }
+
+    @Test
+    @DisplayName("should return the users after an id in ascending order")
+    void shouldReturnUsersAfterId() {
+        assertAll(
+                () -> assertThat(testee.after(null, 2), is(List.of(FIRST_USER, SECOND_USER))),
+                () -> assertThat(testee.after("a", 5), is(List.of(SECOND_USER, THIRD_USER))),
+                () -> assertThat(testee.after("b", 1), is(List.of(SECOND_USER))),
+                () -> assertThat(testee.after("e", 1), is(List.of()))
+        );
+    }
+
+    @Test
+    @DisplayName("should return the users before an id in descending order")
+    void shouldReturnUsersBeforeId() {
+        assertAll(
+                () -> assertThat(testee.before("e", 5), is(List.of(SECOND_USER, FIRST_USER))),
+                () -> assertThat(testee.before("d", 1), is(List.of(SECOND_USER))),
+                () -> assertThat(testee.before("a", 1), is(List.of()))
+        );
+    }
+
+    @Test
+    @DisplayName("should return the neighbours of an id")
+    void shouldReturnNeighbours() {
+        assertAll(
+                () -> assertThat(testee.neighbours("a"), is(new Neighbours("a", null, "c"))),
+                () -> assertThat(testee.neighbours("c"), is(new Neighbours("a", "a", "e"))),
+                () -> assertThat(testee.neighbours("e"), is(new Neighbours("a", "c", null)))
+        );
+    }
+
+    @Test
+    @DisplayName("should replace a user only by the same or a newer version of it")
+    void shouldNotReplaceNewerUsers() {
+        final User storedUser = versioned(SECOND_USER.toBuilder().build(), 2L);
+        final UserSnapshot snapshot = UserSnapshot.of(List.of(FIRST_USER, storedUser));
+        final User olderUser = versioned(SECOND_USER.toBuilder().lastName("older").build(), 1L);
+        final User sameUser = versioned(SECOND_USER.toBuilder().lastName("same").build(), 2L);
+        final User newerUser = versioned(SECOND_USER.toBuilder().lastName("newer").build(), 3L);
+
+        assertAll(
+                () -> assertThat(snapshot.with(olderUser), is(snapshot)),
+                () -> assertThat(snapshot.with(sameUser).find("c"), is(Optional.of(sameUser))),
+                () -> assertThat(snapshot.with(newerUser).find("c"), is(Optional.of(newerUser))),
+                () -> assertThat(snapshot.withAll(List.of(olderUser, THIRD_USER)).stream().collect(toList()), is(List.of(FIRST_USER, storedUser, THIRD_USER))),
+                () -> assertThat(snapshot.withAll(List.of(newerUser, THIRD_USER)).stream().collect(toList()), is(List.of(FIRST_USER, newerUser, THIRD_USER)))
+        );
+    }
+
+    @Test
+    @DisplayName("should apply a batch of new and changed users at once")
+    void shouldApplyBatchOfUsers() {
+        final User newUser = User.builder().id("b").build();
+        final User lastUser = User.builder().id("f").build();
+        final User changedUser = SECOND_USER.toBuilder().lastName("changed").build();
+
+        final UserSnapshot changedSnapshot = testee.withAll(List.of(lastUser, changedUser, newUser));
+
+        assertAll(
+                () -> assertThat(changedSnapshot.stream().collect(toList()), is(List.of(FIRST_USER, newUser, changedUser, THIRD_USER, lastUser))),
+                () -> assertThat(changedSnapshot.find("c"), is(Optional.of(changedUser))),
+                () -> assertThat(testee.withAll(List.of()), is(testee)),
+                () -> assertThat(testee.stream().collect(toList()), is(List.of(FIRST_USER, SECOND_USER, THIRD_USER)))
+        );
+    }
+
+    @Test
+    @DisplayName("should keep the order and lookups across chunks while users are added and removed one by one")
+    void shouldSpanSeveralChunks() {
+        final int count = 3 * UserSnapshot.CHUNK_SIZE;
+        final List<User> users = IntStream.range(0, count)
+                .mapToObj(i -> User.builder().id(String.format("%05d", i)).build())
+                .collect(toList());
+        UserSnapshot snapshot = UserSnapshot.EMPTY;
+        for (int i = count - 1; i >= 0; i -= 2)
+            snapshot = snapshot.with(users.get(i));
+        for (int i = 0; i < count; i += 2)
+            snapshot = snapshot.with(users.get(i));
+        for (int i = 0; i < UserSnapshot.CHUNK_SIZE; i++)
+            snapshot = snapshot.without(users.get(i).getId());
+
+        final UserSnapshot chunkedSnapshot = snapshot;
+        final List<User> remainingUsers = users.subList(UserSnapshot.CHUNK_SIZE, count);
+        assertAll(
+                () -> assertThat(chunkedSnapshot.stream().collect(toList()), is(remainingUsers)),
+                () -> assertThat(chunkedSnapshot.size(), is(remainingUsers.size())),
+                () -> assertThat(chunkedSnapshot.firstId(), is(Optional.of(remainingUsers.get(0).getId()))),
+                () -> assertThat(chunkedSnapshot.find("01000"), is(Optional.of(users.get(1000)))),
+                () -> assertThat(chunkedSnapshot.find("00000"), is(Optional.empty())),
+                () -> assertThat(chunkedSnapshot.after("01022", 3), is(users.subList(1023, 1026))),
+                () -> assertThat(chunkedSnapshot.before("01025", 2), is(List.of(users.get(1024), users.get(1023)))),
+                () -> assertThat(chunkedSnapshot.neighbours("01024"), is(new Neighbours(remainingUsers.get(0).getId(), "01023", "01025")))
+        );
+    }
+
+    private static User versioned(final User user, final long version) {
+        setField(user, "version", version);
+        return user;
+    }
+}